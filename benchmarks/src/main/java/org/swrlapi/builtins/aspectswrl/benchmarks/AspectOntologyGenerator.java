@@ -0,0 +1,130 @@
+package org.swrlapi.builtins.aspectswrl.benchmarks;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.formats.FunctionalSyntaxDocumentFormat;
+import org.semanticweb.owlapi.model.*;
+import org.swrlapi.builtins.aspectswrl.AspectManagerProviders;
+import org.swrlapi.builtins.aspectswrl.AspectStore;
+import org.swrlapi.builtins.aspectswrl.SWRLBuiltInLibraryImpl;
+
+import java.util.*;
+
+/**
+ * Seeded generator for synthetic AspectOWL ontologies.
+ *
+ * The generated ontology contains
+ * - individuals I0 ... In-1, each the subject of a fixed number of r assertions to randomly chosen individuals,
+ * - a fixed number of aspects (drawn from the aspect classes A0 ... Am-1) per r assertion,
+ * - an enumeration class Code ≡ {I0, ..., Ik-1} over the first individuals,
+ * - a chain T0 before T1 before ... Tl-1 of time instants, with after declared as the inverse of before.
+ *
+ * All entities live in the namespace {@link #NAMESPACE}, which is also the default prefix of the ontology, so rules
+ * can refer to them by their short names.
+ *
+ * @author ralph
+ */
+public class AspectOntologyGenerator {
+
+    public static final String ONTOLOGY_IRI = "http://ontology.aspectowl.xyz/benchmarks/generated";
+
+    public static final String NAMESPACE = ONTOLOGY_IRI + "#";
+
+    private static final int MAX_ENUMERATION_SIZE = 1000;
+
+    private final long seed;
+    private final int individuals;
+    private final int opasPerIndividual;
+    private final int aspectsPerAxiom;
+    private final int temporalChainLength;
+
+    public AspectOntologyGenerator(long seed, int individuals, int opasPerIndividual, int aspectsPerAxiom, int temporalChainLength) {
+        this.seed = seed;
+        this.individuals = individuals;
+        this.opasPerIndividual = opasPerIndividual;
+        this.aspectsPerAxiom = aspectsPerAxiom;
+        this.temporalChainLength = temporalChainLength;
+    }
+
+    /**
+     * Generates a new ontology in a new ontology manager. The same parameters always yield the same ontology.
+     */
+    public OWLOntology generate() throws OWLOntologyCreationException {
+        Random random = new Random(seed);
+        OWLOntologyManager man = OWLManager.createOWLOntologyManager();
+        OWLDataFactory df = man.getOWLDataFactory();
+        OWLOntology onto = man.createOntology(IRI.create(ONTOLOGY_IRI));
+
+        FunctionalSyntaxDocumentFormat format = new FunctionalSyntaxDocumentFormat();
+        format.setDefaultPrefix(NAMESPACE);
+        format.setPrefix(SWRLBuiltInLibraryImpl.PREFIX + ":", SWRLBuiltInLibraryImpl.NAMESPACE);
+        man.setOntologyFormat(onto, format);
+
+        List<OWLAxiom> axioms = new ArrayList<>();
+
+        OWLObjectProperty r = df.getOWLObjectProperty(IRI.create(NAMESPACE + "r"));
+        axioms.add(df.getOWLDeclarationAxiom(r));
+
+        OWLNamedIndividual[] inds = new OWLNamedIndividual[individuals];
+        for (int i = 0; i < individuals; i++) {
+            inds[i] = individual(i);
+            axioms.add(df.getOWLDeclarationAxiom(inds[i]));
+        }
+
+        int aspectCount = Math.max(1, aspectsPerAxiom * 4);
+        OWLClass[] aspects = new OWLClass[aspectCount];
+        for (int i = 0; i < aspectCount; i++) {
+            aspects[i] = aspect(i);
+            axioms.add(df.getOWLDeclarationAxiom(aspects[i]));
+        }
+
+        Map<OWLObjectPropertyAssertionAxiom, Set<OWLClass>> aspectAssertions = new LinkedHashMap<>();
+        for (int i = 0; i < individuals; i++) {
+            for (int j = 0; j < opasPerIndividual; j++) {
+                var opa = df.getOWLObjectPropertyAssertionAxiom(r, inds[i], inds[random.nextInt(individuals)]);
+                axioms.add(opa);
+                Set<OWLClass> opaAspects = aspectAssertions.computeIfAbsent(opa, ax -> new LinkedHashSet<>());
+                for (int k = 0; k < aspectsPerAxiom; k++) {
+                    opaAspects.add(aspects[random.nextInt(aspectCount)]);
+                }
+            }
+        }
+
+        OWLClass code = df.getOWLClass(IRI.create(NAMESPACE + "Code"));
+        axioms.add(df.getOWLDeclarationAxiom(code));
+        Set<OWLNamedIndividual> codeMembers = new HashSet<>(Arrays.asList(inds).subList(0, Math.min(individuals, MAX_ENUMERATION_SIZE)));
+        if (!codeMembers.isEmpty()) {
+            axioms.add(df.getOWLEquivalentClassesAxiom(code, df.getOWLObjectOneOf(codeMembers)));
+        }
+
+        OWLObjectProperty before = df.getOWLObjectProperty(IRI.create(NAMESPACE + "before"));
+        OWLObjectProperty after = df.getOWLObjectProperty(IRI.create(NAMESPACE + "after"));
+        axioms.add(df.getOWLDeclarationAxiom(before));
+        axioms.add(df.getOWLDeclarationAxiom(after));
+        axioms.add(df.getOWLInverseObjectPropertiesAxiom(after, before));
+        for (int i = 0; i < temporalChainLength; i++) {
+            axioms.add(df.getOWLDeclarationAxiom(instant(i)));
+            if (i > 0) {
+                axioms.add(df.getOWLObjectPropertyAssertionAxiom(before, instant(i - 1), instant(i)));
+            }
+        }
+
+        man.addAxioms(onto, new HashSet<>(axioms));
+
+        AspectStore aspectStore = AspectManagerProviders.getAspectStore(man);
+        aspectAssertions.forEach((opa, opaAspects) -> opaAspects.forEach(aspect -> aspectStore.addAspect(onto, opa, aspect)));
+
+        return onto;
+    }
+
+    public static OWLNamedIndividual individual(int i) {
+        return OWLManager.getOWLDataFactory().getOWLNamedIndividual(IRI.create(NAMESPACE + "I" + i));
+    }
+
+    public static OWLClass aspect(int i) {
+        return OWLManager.getOWLDataFactory().getOWLClass(IRI.create(NAMESPACE + "A" + i));
+    }
+
+    public static OWLNamedIndividual instant(int i) {
+        return OWLManager.getOWLDataFactory().getOWLNamedIndividual(IRI.create(NAMESPACE + "T" + i));
+    }
+}
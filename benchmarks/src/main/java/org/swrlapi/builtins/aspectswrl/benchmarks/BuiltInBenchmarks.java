@@ -0,0 +1,117 @@
+package org.swrlapi.builtins.aspectswrl.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.*;
+import org.swrlapi.builtins.aspectswrl.SWRLBuiltInLibraryImpl;
+import org.swrlapi.exceptions.SWRLBuiltInException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Direct invocations of the AspectSWRL built-ins on a generated ontology.
+ *
+ * @author ralph
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuiltInBenchmarks {
+
+    private static final int SAMPLES = 1024;
+
+    @Param({ "1000", "10000" })
+    public int individuals;
+
+    @Param({ "10" })
+    public int opasPerIndividual;
+
+    @Param({ "2" })
+    public int aspectsPerAxiom;
+
+    @Param({ "100" })
+    public int temporalChainLength;
+
+    private OWLOntology onto;
+
+    private BuiltInInvoker invoker;
+
+    private OWLObjectProperty r;
+
+    private OWLObjectProperty before;
+
+    private final List<OWLObjectPropertyAssertionAxiom> samples = new ArrayList<>();
+
+    private int next = 0;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws OWLOntologyCreationException {
+        onto = new AspectOntologyGenerator(42, individuals, opasPerIndividual, aspectsPerAxiom, temporalChainLength).generate();
+        invoker = new BuiltInInvoker(new SWRLBuiltInLibraryImpl(), onto);
+        OWLDataFactory df = onto.getOWLOntologyManager().getOWLDataFactory();
+        r = df.getOWLObjectProperty(IRI.create(AspectOntologyGenerator.NAMESPACE + "r"));
+        before = df.getOWLObjectProperty(IRI.create(AspectOntologyGenerator.NAMESPACE + "before"));
+
+        samples.clear();
+        List<OWLObjectPropertyAssertionAxiom> opas = new ArrayList<>(onto.getAxioms(AxiomType.OBJECT_PROPERTY_ASSERTION));
+        opas.removeIf(ax -> !ax.getProperty().equals(r));
+        Random random = new Random(4711);
+        for (int i = 0; i < SAMPLES; i++) {
+            samples.add(opas.get(random.nextInt(opas.size())));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        invoker.reset();
+        SWRLBuiltInLibraryImpl.release(onto);
+    }
+
+    private OWLObjectPropertyAssertionAxiom nextSample() {
+        next = (next + 1) % SAMPLES;
+        return samples.get(next);
+    }
+
+    @Benchmark
+    public boolean opaBound() throws SWRLBuiltInException {
+        var opa = nextSample();
+        return invoker.invoke("opa", Arrays.asList(invoker.argument(AspectOntologyGenerator.aspect(next % aspectsPerAxiom)), invoker.argument(r), invoker.argument(opa.getSubject().asOWLNamedIndividual()), invoker.argument(opa.getObject().asOWLNamedIndividual())));
+    }
+
+    @Benchmark
+    public boolean opaUnbound() throws SWRLBuiltInException {
+        var opa = nextSample();
+        return invoker.invoke("opa", Arrays.asList(invoker.unbound(), invoker.argument(r), invoker.argument(opa.getSubject().asOWLNamedIndividual()), invoker.argument(opa.getObject().asOWLNamedIndividual())));
+    }
+
+    @Benchmark
+    public boolean ooo() throws SWRLBuiltInException {
+        var opa = nextSample();
+        OWLClass code = onto.getOWLOntologyManager().getOWLDataFactory().getOWLClass(IRI.create(AspectOntologyGenerator.NAMESPACE + "Code"));
+        return invoker.invoke("ooo", Arrays.asList(invoker.argument(opa.getSubject().asOWLNamedIndividual()), invoker.argument(code)));
+    }
+
+    @Benchmark
+    public boolean createOPA() throws SWRLBuiltInException {
+        var opa = nextSample();
+        return invoker.invoke("createOPA", Arrays.asList(invoker.argument(r), invoker.argument(opa.getSubject().asOWLNamedIndividual()), invoker.argument(opa.getObject().asOWLNamedIndividual()), invoker.unbound()));
+    }
+
+    @Benchmark
+    public boolean createNegativeOPA() throws SWRLBuiltInException {
+        var opa = nextSample();
+        return invoker.invoke("createNegativeOPA", Arrays.asList(invoker.argument(r), invoker.argument(opa.getSubject().asOWLNamedIndividual()), invoker.argument(opa.getObject().asOWLNamedIndividual()), invoker.unbound()));
+    }
+
+    @Benchmark
+    public boolean temporal() throws SWRLBuiltInException {
+        int i = nextSample().hashCode() & Integer.MAX_VALUE;
+        return invoker.invoke("temporal", Arrays.asList(invoker.unbound(), invoker.argument(before), invoker.argument(AspectOntologyGenerator.instant(i % temporalChainLength)), invoker.argument(i % 2 == 0)));
+    }
+}
@@ -0,0 +1,98 @@
+package org.swrlapi.builtins.aspectswrl.benchmarks;
+
+import org.semanticweb.owlapi.model.*;
+import org.swrlapi.bridge.SWRLBuiltInBridge;
+import org.swrlapi.builtins.SWRLBuiltInLibrary;
+import org.swrlapi.builtins.arguments.SWRLBuiltInArgument;
+import org.swrlapi.builtins.arguments.SWRLBuiltInArgumentFactory;
+import org.swrlapi.builtins.aspectswrl.SWRLBuiltInLibraryImpl;
+import org.swrlapi.exceptions.SWRLBuiltInException;
+import org.swrlapi.factory.SWRLAPIFactory;
+import org.swrlapi.factory.SWRLAPIInternalFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Invokes the built-ins of a {@link SWRLBuiltInLibraryImpl} directly, i.e. the way the rule engine does, but without
+ * a rule engine. The built-in bridge handed to the library only provides the ontology and the argument factory.
+ *
+ * @author ralph
+ */
+public class BuiltInInvoker {
+
+    private final SWRLBuiltInLibraryImpl library;
+
+    private final SWRLBuiltInBridge bridge;
+
+    private final SWRLBuiltInArgumentFactory argumentFactory;
+
+    private final Map<String, Method> methods = new HashMap<>();
+
+    private int variableCount = 0;
+
+    public BuiltInInvoker(SWRLBuiltInLibraryImpl library, OWLOntology onto) {
+        this.library = library;
+        this.argumentFactory = SWRLAPIInternalFactory.createSWRLBuiltInArgumentFactory(SWRLAPIFactory.createIRIResolver(AspectOntologyGenerator.NAMESPACE));
+        this.bridge = createBridge(onto, argumentFactory);
+    }
+
+    public boolean invoke(String builtInName, List<SWRLBuiltInArgument> arguments) throws SWRLBuiltInException {
+        Method method = methods.computeIfAbsent(builtInName, name -> {
+            try {
+                return SWRLBuiltInLibraryImpl.class.getMethod(name, List.class);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("No such built-in: " + name, e);
+            }
+        });
+        return library.invokeBuiltInMethod(method, bridge, "benchmark", SWRLBuiltInLibraryImpl.PREFIX, builtInName, 0, false, arguments);
+    }
+
+    public void reset() {
+        library.invokeResetMethod(bridge);
+    }
+
+    public SWRLBuiltInArgument unbound() {
+        return argumentFactory.getUnboundVariableBuiltInArgument(IRI.create(AspectOntologyGenerator.NAMESPACE + "v" + variableCount++));
+    }
+
+    public SWRLBuiltInArgument argument(OWLClass cls) {
+        return argumentFactory.getClassBuiltInArgument(cls);
+    }
+
+    public SWRLBuiltInArgument argument(OWLClassExpression ce) {
+        return argumentFactory.getClassExpressionBuiltInArgument(ce);
+    }
+
+    public SWRLBuiltInArgument argument(OWLObjectProperty op) {
+        return argumentFactory.getObjectPropertyBuiltInArgument(op);
+    }
+
+    public SWRLBuiltInArgument argument(OWLNamedIndividual individual) {
+        return argumentFactory.getNamedIndividualBuiltInArgument(individual);
+    }
+
+    public SWRLBuiltInArgument argument(boolean b) {
+        return argumentFactory.getLiteralBuiltInArgument(b);
+    }
+
+    private static SWRLBuiltInBridge createBridge(OWLOntology onto, SWRLBuiltInArgumentFactory argumentFactory) {
+        return (SWRLBuiltInBridge) Proxy.newProxyInstance(SWRLBuiltInLibrary.class.getClassLoader(), new Class<?>[] { SWRLBuiltInBridge.class }, (proxy, method, args) -> {
+            if (method.getReturnType() == OWLOntology.class) {
+                return onto;
+            } else if (method.getReturnType() == SWRLBuiltInArgumentFactory.class) {
+                return argumentFactory;
+            } else if (method.getName().equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (method.getName().equals("equals")) {
+                return proxy == args[0];
+            } else if (method.getName().equals("toString")) {
+                return "benchmark built-in bridge";
+            }
+            throw new UnsupportedOperationException("Not available in benchmarks: " + method.getName());
+        });
+    }
+}
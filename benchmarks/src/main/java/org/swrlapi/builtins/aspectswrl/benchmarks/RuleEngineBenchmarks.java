@@ -0,0 +1,72 @@
+package org.swrlapi.builtins.aspectswrl.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.swrlapi.builtins.aspectswrl.SWRLBuiltInLibraryImpl;
+import org.swrlapi.core.SWRLRuleEngine;
+import org.swrlapi.exceptions.SWRLBuiltInException;
+import org.swrlapi.factory.SWRLAPIFactory;
+import org.swrlapi.parser.SWRLParseException;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end evaluation of rules using the AspectSWRL built-ins with the Drools rule engine. Each invocation runs the
+ * rule engine once over a freshly generated ontology containing a single rule.
+ *
+ * @author ralph
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RuleEngineBenchmarks {
+
+    private static final Map<String, String> RULES = Map.of(
+            "opaBound", "r(?i1, ?i2) ^ aspectswrl:opa(A0, r, ?i1, ?i2) -> ",
+            "opaUnbound", "r(?i1, ?i2) ^ aspectswrl:opa(?a, r, ?i1, ?i2) -> ",
+            "ooo", "r(?i1, ?i2) ^ aspectswrl:ooo(?i1, Code) -> ",
+            "createOPA", "r(?i1, ?i2) ^ aspectswrl:createOPA(r, ?i1, ?i2, ?a) -> ",
+            "createNegativeOPA", "r(?i1, ?i2) ^ aspectswrl:createNegativeOPA(r, ?i2, ?i1, ?a) -> ",
+            "temporal", "before(?t1, ?t2) ^ aspectswrl:temporal(?a, before, ?t1, true) -> ");
+
+    @Param({ "opaBound", "opaUnbound", "ooo", "createOPA", "createNegativeOPA", "temporal" })
+    public String rule;
+
+    @Param({ "1000" })
+    public int individuals;
+
+    @Param({ "5" })
+    public int opasPerIndividual;
+
+    @Param({ "2" })
+    public int aspectsPerAxiom;
+
+    @Param({ "100" })
+    public int temporalChainLength;
+
+    private OWLOntology onto;
+
+    private SWRLRuleEngine ruleEngine;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws OWLOntologyCreationException, SWRLParseException, SWRLBuiltInException {
+        onto = new AspectOntologyGenerator(42, individuals, opasPerIndividual, aspectsPerAxiom, temporalChainLength).generate();
+        ruleEngine = SWRLAPIFactory.createSWRLRuleEngine(onto);
+        ruleEngine.createSWRLRule(rule, RULES.get(rule));
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        SWRLBuiltInLibraryImpl.release(onto);
+    }
+
+    @Benchmark
+    public void infer() {
+        ruleEngine.infer();
+    }
+}
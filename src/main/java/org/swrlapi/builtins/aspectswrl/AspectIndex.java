@@ -0,0 +1,239 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the named aspects asserted for the join point axioms of a single ontology (join point axiom → aspects)
+ * together with the reverse mapping (aspect → join point axioms).
+ *
+ * The forward mapping is filled lazily, one join point axiom at a time. The reverse mapping is only built once
+ * {@link #getJoinPoints(OWLClass)} is called, which loads the aspects of all indexed object property assertions, and
+ * maintained from then on. Aspects added through the library are registered via {@link #addAspect(OWLAxiom, OWLClass)};
+ * changes to a join point axiom itself invalidate its entry. Aspect assertions made by other means are picked up
+ * through the {@link AspectStoreListener} of the index if the aspect store reports its changes; otherwise they
+ * require a call to {@link #invalidate()} (see {@link SWRLBuiltInLibraryImpl#invalidateAspects(OWLOntology)}).
+ *
+ * The aspects of object property assertions between named individuals are held in a {@link PackedAspectTable} as
+ * ids and only turned into classes when they are returned; those of other join point axioms in an ordinary map. If
+ * the aspect store indexes its assertions itself (see {@link AspectStore#isIndexed()}), as the headless store does,
+ * the forward mapping is not cached at all: lookups go to the store, so its assertions are only held once.
+ *
+ * Lookups of cached entries return immutable snapshots; loading and updating entries synchronizes on the index.
+ *
+ * @author ralph
+ */
+class AspectIndex implements OWLOntologyChangeListener {
+
+    private final OWLOntology onto;
+
+    private final OWLOntologyManager man;
+
+    private final AspectStore aspectStore;
+
+    private final JoinPointIndex joinPointIndex;
+
+    private final boolean storeIndexed;
+
+    private final PackedAspectTable opaAspects;
+
+    private final Map<OWLAxiom, Set<OWLClass>> aspectsByJoinPoint = new ConcurrentHashMap<>();
+
+    private final Map<OWLClass, Set<OWLAxiom>> joinPointsByAspect = new ConcurrentHashMap<>();
+
+    private volatile boolean reverseComplete = false;
+
+    private final AspectStoreListener storeListener = new AspectStoreListener() {
+        @Override
+        public void aspectAdded(OWLOntology o, OWLAxiom joinPointAxiom, List<OWLClass> aspectPath, OWLClass aspect) {
+            if (o == onto && aspectPath.isEmpty()) {
+                addAspect(joinPointAxiom, aspect);
+            }
+        }
+
+        @Override
+        public void aspectsChanged(OWLOntology o) {
+            if (o == onto) {
+                invalidate();
+            }
+        }
+    };
+
+    AspectIndex(OWLOntology onto, AspectStore aspectStore, JoinPointIndex joinPointIndex, IriDictionary properties, IriDictionary individuals, IriDictionary classes) {
+        this.onto = onto;
+        this.man = onto.getOWLOntologyManager();
+        this.aspectStore = aspectStore;
+        this.joinPointIndex = joinPointIndex;
+        this.storeIndexed = aspectStore.isIndexed();
+        this.opaAspects = new PackedAspectTable(properties, individuals, classes);
+        man.addOntologyChangeListener(this);
+        aspectStore.addListener(storeListener);
+    }
+
+    /**
+     * @return the named aspects asserted for the given join point axiom
+     */
+    Set<OWLClass> getAspects(OWLAxiom joinPointAxiom) {
+        if (storeIndexed) {
+            return aspectStore.getAssertedAspects(onto, joinPointAxiom);
+        }
+        if (PackedAspectTable.isPackable(joinPointAxiom)) {
+            int[] ids = opaAspects.get(joinPointAxiom);
+            return ids != null ? opaAspects.toClasses(ids) : load(joinPointAxiom);
+        }
+        var aspects = aspectsByJoinPoint.get(joinPointAxiom);
+        return aspects != null ? aspects : load(joinPointAxiom);
+    }
+
+    /**
+     * @return true iff the given aspect is asserted for the given join point axiom
+     */
+    boolean hasAspect(OWLAxiom joinPointAxiom, OWLClass aspect) {
+        if (storeIndexed) {
+            return aspectStore.hasAspect(onto, joinPointAxiom, aspect);
+        }
+        if (PackedAspectTable.isPackable(joinPointAxiom)) {
+            int[] ids = opaAspects.get(joinPointAxiom);
+            if (ids != null) {
+                int id = opaAspects.findAspect(aspect);
+                return id >= 0 && PackedAspectTable.contains(ids, id);
+            }
+        }
+        return getAspects(joinPointAxiom).contains(aspect);
+    }
+
+    /**
+     * @return the join point axioms for which the given aspect is asserted
+     */
+    Set<OWLAxiom> getJoinPoints(OWLClass aspect) {
+        if (!reverseComplete) {
+            synchronized (this) {
+                if (!reverseComplete) {
+                    // the reverse mapping is only maintained once it has been asked for, so it costs nothing before
+                    for (OWLObjectPropertyAssertionAxiom ax : joinPointIndex.getObjectPropertyAssertions()) {
+                        addJoinPoint(ax, getAspects(ax));
+                    }
+                    aspectsByJoinPoint.forEach(this::addJoinPoint);
+                    reverseComplete = true;
+                }
+            }
+        }
+        var joinPoints = joinPointsByAspect.get(aspect);
+        return joinPoints != null ? Collections.unmodifiableSet(joinPoints) : Collections.emptySet();
+    }
+
+    /**
+     * Registers an aspect that has been (or is about to be) asserted for the given join point axiom.
+     */
+    synchronized void addAspect(OWLAxiom joinPointAxiom, OWLClass aspect) {
+        if (storeIndexed) {
+            if (reverseComplete) {
+                addJoinPoint(joinPointAxiom, Collections.singleton(aspect));
+            }
+            return;
+        }
+        // make sure the aspects already asserted for this axiom are loaded before adding to them
+        var aspects = getAspects(joinPointAxiom);
+        if (PackedAspectTable.isPackable(joinPointAxiom)) {
+            opaAspects.put(joinPointAxiom, PackedAspectTable.with(opaAspects.get(joinPointAxiom), opaAspects.internAspect(aspect)));
+        } else {
+            Set<OWLClass> added = new HashSet<>(aspects);
+            added.add(aspect);
+            aspectsByJoinPoint.put(joinPointAxiom, Set.copyOf(added));
+        }
+        if (reverseComplete) {
+            addJoinPoint(joinPointAxiom, Collections.singleton(aspect));
+        }
+    }
+
+    /**
+     * Registers the given aspects (join point axiom → aspect) at once, see {@link #addAspect(OWLAxiom, OWLClass)}.
+     */
+    synchronized void addAspects(Map<? extends OWLAxiom, OWLClass> aspects) {
+        aspects.forEach(this::addAspect);
+    }
+
+    /**
+     * Drops the cached aspects of the given join point axiom. They will be reloaded from the aspect store.
+     */
+    synchronized void invalidate(OWLAxiom joinPointAxiom) {
+        if (storeIndexed) {
+            // the store keeps the aspects of a join point axiom regardless of changes to the axiom itself
+            return;
+        }
+        Set<OWLClass> aspects;
+        if (PackedAspectTable.isPackable(joinPointAxiom)) {
+            int[] ids = opaAspects.remove(joinPointAxiom);
+            aspects = ids != null ? opaAspects.toClasses(ids) : null;
+        } else {
+            aspects = aspectsByJoinPoint.remove(joinPointAxiom);
+        }
+        if (aspects == null || !reverseComplete) {
+            return;
+        }
+        for (OWLClass aspect : aspects) {
+            var joinPoints = joinPointsByAspect.get(aspect);
+            if (joinPoints != null) {
+                joinPoints.remove(joinPointAxiom);
+            }
+        }
+        load(joinPointAxiom);
+    }
+
+    /**
+     * Drops all cached aspects.
+     */
+    synchronized void invalidate() {
+        reverseComplete = false;
+        opaAspects.clear();
+        aspectsByJoinPoint.clear();
+        joinPointsByAspect.clear();
+    }
+
+    void dispose() {
+        man.removeOntologyChangeListener(this);
+        aspectStore.removeListener(storeListener);
+    }
+
+    private synchronized Set<OWLClass> load(OWLAxiom joinPointAxiom) {
+        boolean packable = PackedAspectTable.isPackable(joinPointAxiom);
+        if (packable) {
+            int[] loaded = opaAspects.get(joinPointAxiom);
+            if (loaded != null) {
+                return opaAspects.toClasses(loaded);
+            }
+        } else {
+            var loaded = aspectsByJoinPoint.get(joinPointAxiom);
+            if (loaded != null) {
+                return loaded;
+            }
+        }
+        Set<OWLClass> aspects = Set.copyOf(aspectStore.getAssertedAspects(onto, joinPointAxiom));
+        if (packable) {
+            opaAspects.put(joinPointAxiom, opaAspects.toIds(aspects));
+        } else {
+            aspectsByJoinPoint.put(joinPointAxiom, aspects);
+        }
+        if (reverseComplete) {
+            addJoinPoint(joinPointAxiom, aspects);
+        }
+        return aspects;
+    }
+
+    private void addJoinPoint(OWLAxiom joinPointAxiom, Set<OWLClass> aspects) {
+        for (OWLClass aspect : aspects) {
+            joinPointsByAspect.computeIfAbsent(aspect, a -> ConcurrentHashMap.newKeySet()).add(joinPointAxiom);
+        }
+    }
+
+    @Override
+    public void ontologiesChanged(List<? extends OWLOntologyChange> changes) {
+        for (OWLOntologyChange change : changes) {
+            if (change.isAxiomChange() && change.getOntology() == onto) {
+                invalidate(change.getAxiom());
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+/**
+ * Service provider interface for the aspect stores used by the built-ins. Implementations are discovered through
+ * {@link java.util.ServiceLoader}; see {@link AspectManagerProviders}.
+ *
+ * @author ralph
+ */
+public interface AspectManagerProvider {
+
+    /**
+     * @return true iff this provider can be used in the current runtime (e.g. its dependencies are on the class path)
+     */
+    boolean isAvailable();
+
+    /**
+     * @return the priority of this provider; among the available providers, the one with the highest priority wins
+     */
+    int getPriority();
+
+    /**
+     * @return the aspect store for the ontologies of the given manager, or null if this provider cannot serve it
+     */
+    AspectStore getAspectStore(OWLOntologyManager man);
+}
@@ -0,0 +1,70 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Resolves the {@link AspectManagerProvider}s once and hands out aspect stores from them.
+ *
+ * Unless a provider has been set explicitly with {@link #setProvider(AspectManagerProvider)}, the available
+ * providers registered in META-INF/services are tried in order of descending priority. The library ships with
+ * {@link ProtegeAspectManagerProvider} (used if the AspectOWL Protégé plugin is present and has an aspect manager for
+ * the ontology manager) and {@link HeadlessAspectManagerProvider} (always available, lowest priority).
+ *
+ * @author ralph
+ */
+public final class AspectManagerProviders {
+
+    private static final Logger log = LoggerFactory.getLogger(AspectManagerProviders.class);
+
+    private static volatile List<AspectManagerProvider> providers;
+
+    private AspectManagerProviders() {
+    }
+
+    /**
+     * Uses the given provider exclusively, or reverts to service discovery if null.
+     */
+    public static void setProvider(AspectManagerProvider provider) {
+        providers = provider == null ? null : List.of(provider);
+    }
+
+    /**
+     * @return the aspect store for the given ontology manager from the first provider that can serve it
+     */
+    public static AspectStore getAspectStore(OWLOntologyManager man) {
+        for (AspectManagerProvider provider : getProviders()) {
+            AspectStore store = provider.getAspectStore(man);
+            if (store != null) {
+                return store;
+            }
+        }
+        throw new IllegalStateException("No aspect manager provider available for " + man);
+    }
+
+    private static List<AspectManagerProvider> getProviders() {
+        var resolved = providers;
+        if (resolved == null) {
+            List<AspectManagerProvider> available = new ArrayList<>();
+            for (AspectManagerProvider provider : ServiceLoader.load(AspectManagerProvider.class, AspectManagerProvider.class.getClassLoader())) {
+                if (provider.isAvailable()) {
+                    available.add(provider);
+                }
+            }
+            if (available.isEmpty()) {
+                available.add(new HeadlessAspectManagerProvider());
+            }
+            available.sort(Comparator.comparingInt(AspectManagerProvider::getPriority).reversed());
+            log.debug("Aspect manager providers: {}", available);
+            resolved = List.copyOf(available);
+            providers = resolved;
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,62 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLOntology;
+import xyz.aspectowl.owlapi.model.AspectOWLJoinPointAxiomPointcut;
+import xyz.aspectowl.owlapi.model.OWLAspectAssertionAxiom;
+import xyz.aspectowl.owlapi.model.OWLAspectManager;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Aspect store backed by an AspectOWL {@link OWLAspectManager}. The aspect manager does not report its changes, so
+ * aspect assertions edited in Protégé have to be announced with
+ * {@link SWRLBuiltInLibraryImpl#invalidateAspects(OWLOntology)}.
+ *
+ * @author ralph
+ */
+class AspectOWLAspectStore implements AspectStore {
+
+    private final OWLAspectManager aspectManager;
+
+    AspectOWLAspectStore(OWLAspectManager aspectManager) {
+        this.aspectManager = aspectManager;
+    }
+
+    @Override
+    public Set<OWLClass> getAssertedAspects(OWLOntology onto, OWLAxiom joinPointAxiom) {
+        return getNamedAspects(onto, joinPointAxiom);
+    }
+
+    @Override
+    public void addAspect(OWLOntology onto, OWLAxiom joinPointAxiom, OWLClass aspect) {
+        aspectManager.addAspect(onto, aspectAssertion(onto, joinPointAxiom, aspect));
+    }
+
+    @Override
+    public Set<OWLClass> getNestedAspects(OWLOntology onto, OWLAxiom joinPointAxiom, List<OWLClass> aspectPath) {
+        OWLAxiom axiom = joinPointAxiom;
+        for (OWLClass aspect : aspectPath) {
+            axiom = aspectAssertion(onto, axiom, aspect);
+        }
+        return getNamedAspects(onto, axiom);
+    }
+
+    private OWLAspectAssertionAxiom aspectAssertion(OWLOntology onto, OWLAxiom joinPointAxiom, OWLClass aspect) {
+        return aspectManager.getAspectAssertionAxiom(onto, new AspectOWLJoinPointAxiomPointcut(joinPointAxiom), aspectManager.getAspect(aspect, Collections.EMPTY_SET, Collections.EMPTY_SET));
+    }
+
+    private Set<OWLClass> getNamedAspects(OWLOntology onto, OWLAxiom axiom) {
+        Set<OWLClass> aspects = new HashSet<>();
+        for (var aspect : aspectManager.getAssertedAspects(onto, axiom)) {
+            if (!aspect.isAnonymous()) {
+                aspects.add(aspect.asClassExpression().asOWLClass());
+            }
+        }
+        return aspects;
+    }
+}
@@ -0,0 +1,73 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The aspect operations the built-ins need from an AspectOWL aspect manager.
+ *
+ * @author ralph
+ */
+public interface AspectStore {
+
+    /**
+     * @return the named aspects asserted for the given join point axiom in the given ontology
+     */
+    Set<OWLClass> getAssertedAspects(OWLOntology onto, OWLAxiom joinPointAxiom);
+
+    /**
+     * @return true iff the given aspect is asserted for the given join point axiom in the given ontology
+     */
+    default boolean hasAspect(OWLOntology onto, OWLAxiom joinPointAxiom, OWLClass aspect) {
+        return getAssertedAspects(onto, joinPointAxiom).contains(aspect);
+    }
+
+    /**
+     * Asserts the given aspect for the given join point axiom in the given ontology.
+     */
+    void addAspect(OWLOntology onto, OWLAxiom joinPointAxiom, OWLClass aspect);
+
+    /**
+     * @return true iff the store keeps its aspect assertions in an index of its own that answers
+     * {@link #getAssertedAspects(OWLOntology, OWLAxiom)} and {@link #hasAspect(OWLOntology, OWLAxiom, OWLClass)} as
+     * cheaply as a cache would, and reports all its changes to its listeners. The built-ins then query the store
+     * directly instead of caching a copy of its assertions.
+     */
+    default boolean isIndexed() {
+        return false;
+    }
+
+    /**
+     * Returns the named aspects asserted for a nested aspect assertion: for the aspect path [A1, ..., An], the
+     * assertion of An for the assertion of A(n-1) ... for the assertion of A1 for the join point axiom.
+     *
+     * Stores that do not support nested aspects return an empty set.
+     */
+    default Set<OWLClass> getNestedAspects(OWLOntology onto, OWLAxiom joinPointAxiom, List<OWLClass> aspectPath) {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Registers a listener to be notified of all changes of the aspect assertions in this store.
+     *
+     * Stores that cannot report their changes ignore listeners. Aspect assertions made in them by other means than
+     * the built-ins have to be announced with {@link SWRLBuiltInLibraryImpl#invalidateAspects(OWLOntology)}.
+     */
+    default void addListener(AspectStoreListener listener) {
+    }
+
+    default void removeListener(AspectStoreListener listener) {
+    }
+
+    /**
+     * Called once the given ontology has been removed from its manager and its indexes have been disposed. Stores
+     * keeping the aspect assertions of ontologies themselves drop those of the given one.
+     */
+    default void ontologyRemoved(OWLOntology onto) {
+    }
+}
@@ -0,0 +1,28 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+import java.util.List;
+
+/**
+ * Listener for changes of the aspect assertions held by an {@link AspectStore}, whoever makes them.
+ *
+ * @author ralph
+ */
+public interface AspectStoreListener {
+
+    /**
+     * Called after the given aspect has been asserted for a join point axiom of the given ontology, or for a nested
+     * aspect assertion of it if the aspect path is not empty (see
+     * {@link AspectStore#getNestedAspects(OWLOntology, OWLAxiom, List)}).
+     */
+    void aspectAdded(OWLOntology onto, OWLAxiom joinPointAxiom, List<OWLClass> aspectPath, OWLClass aspect);
+
+    /**
+     * Called after any number of aspect assertions of the given ontology have changed in a way that is not reported
+     * assertion by assertion, e.g. when they have been removed.
+     */
+    void aspectsChanged(OWLOntology onto);
+}
@@ -0,0 +1,137 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JVM-wide metrics of the AspectSWRL built-ins, tagged by built-in name and invoking rule. Recording only touches
+ * {@link LongAdder}s, so it is lock-free and cheap enough to stay enabled.
+ *
+ * The metrics are published as MXBean {@value #OBJECT_NAME} and are available programmatically via
+ * {@link #getSnapshots()}.
+ *
+ * @author ralph
+ */
+public class BuiltInMetrics implements BuiltInMetricsMXBean {
+
+    public static final String OBJECT_NAME = "xyz.aspectowl.aspectswrl:type=BuiltInMetrics";
+
+    private static final Logger log = LoggerFactory.getLogger(BuiltInMetrics.class);
+
+    private static final BuiltInMetrics INSTANCE = new BuiltInMetrics();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException e) {
+            log.warn("Could not register built-in metrics MBean {}", OBJECT_NAME, e);
+        }
+    }
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Recorder>> recorders = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled = true;
+
+    private BuiltInMetrics() {
+    }
+
+    public static BuiltInMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public List<BuiltInMetricsSnapshot> getSnapshots() {
+        List<BuiltInMetricsSnapshot> snapshots = new ArrayList<>();
+        recorders.forEach((builtIn, byRule) -> byRule.forEach((rule, recorder) -> snapshots.add(recorder.snapshot(builtIn, rule))));
+        return snapshots;
+    }
+
+    @Override
+    public long getTotalInvocations() {
+        long total = 0;
+        for (var byRule : recorders.values()) {
+            for (Recorder recorder : byRule.values()) {
+                total += recorder.invocations.sum();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void reset() {
+        recorders.values().forEach(byRule -> byRule.values().forEach(Recorder::reset));
+    }
+
+    Recorder getRecorder(String builtIn, String rule) {
+        return recorders.computeIfAbsent(builtIn, b -> new ConcurrentHashMap<>()).computeIfAbsent(rule, r -> new Recorder());
+    }
+
+    /**
+     * Metrics of one built-in invoked from one rule.
+     */
+    static final class Recorder {
+
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder satisfied = new LongAdder();
+        private final LongAdder unsatisfied = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder axiomsWritten = new LongAdder();
+        private final LongAdder aspectsWritten = new LongAdder();
+        private final Histogram latency = new Histogram();
+        private final Histogram multiValueResultSize = new Histogram();
+
+        void invoked(long latencyNanos, boolean result) {
+            invocations.increment();
+            (result ? satisfied : unsatisfied).increment();
+            latency.record(latencyNanos);
+        }
+
+        void failed(long latencyNanos) {
+            invocations.increment();
+            errors.increment();
+            latency.record(latencyNanos);
+        }
+
+        void written(int axioms, int aspects) {
+            axiomsWritten.add(axioms);
+            aspectsWritten.add(aspects);
+        }
+
+        void multiValueResult(int size) {
+            multiValueResultSize.record(size);
+        }
+
+        void reset() {
+            invocations.reset();
+            satisfied.reset();
+            unsatisfied.reset();
+            errors.reset();
+            axiomsWritten.reset();
+            aspectsWritten.reset();
+            latency.reset();
+            multiValueResultSize.reset();
+        }
+
+        BuiltInMetricsSnapshot snapshot(String builtIn, String rule) {
+            return new BuiltInMetricsSnapshot(builtIn, rule, invocations.sum(), satisfied.sum(), unsatisfied.sum(), errors.sum(), axiomsWritten.sum(), aspectsWritten.sum(), latency.getSum(), latency.getCounts(), multiValueResultSize.getSum(), multiValueResultSize.getCounts());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import java.util.List;
+
+/**
+ * JMX view of {@link BuiltInMetrics}.
+ *
+ * @author ralph
+ */
+public interface BuiltInMetricsMXBean {
+
+    List<BuiltInMetricsSnapshot> getSnapshots();
+
+    long getTotalInvocations();
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    void reset();
+}
@@ -0,0 +1,129 @@
+package org.swrlapi.builtins.aspectswrl;
+
+/**
+ * Point-in-time copy of the metrics recorded for one built-in invoked from one rule.
+ *
+ * Latencies are in nanoseconds. Histograms are given as bucket counts, where bucket 0 counts the value 0 and bucket
+ * i > 0 counts values in [2^(i-1), 2^i).
+ *
+ * @author ralph
+ */
+public final class BuiltInMetricsSnapshot {
+
+    private final String builtIn;
+    private final String rule;
+    private final long invocations;
+    private final long satisfied;
+    private final long unsatisfied;
+    private final long errors;
+    private final long axiomsWritten;
+    private final long aspectsWritten;
+    private final long totalLatencyNanos;
+    private final long[] latencyHistogram;
+    private final long totalMultiValueResultSize;
+    private final long[] multiValueResultSizeHistogram;
+
+    BuiltInMetricsSnapshot(String builtIn, String rule, long invocations, long satisfied, long unsatisfied, long errors, long axiomsWritten, long aspectsWritten, long totalLatencyNanos, long[] latencyHistogram, long totalMultiValueResultSize, long[] multiValueResultSizeHistogram) {
+        this.builtIn = builtIn;
+        this.rule = rule;
+        this.invocations = invocations;
+        this.satisfied = satisfied;
+        this.unsatisfied = unsatisfied;
+        this.errors = errors;
+        this.axiomsWritten = axiomsWritten;
+        this.aspectsWritten = aspectsWritten;
+        this.totalLatencyNanos = totalLatencyNanos;
+        this.latencyHistogram = latencyHistogram;
+        this.totalMultiValueResultSize = totalMultiValueResultSize;
+        this.multiValueResultSizeHistogram = multiValueResultSizeHistogram;
+    }
+
+    /**
+     * @return the built-in name (without prefix)
+     */
+    public String getBuiltIn() {
+        return builtIn;
+    }
+
+    /**
+     * @return the name of the invoking rule
+     */
+    public String getRule() {
+        return rule;
+    }
+
+    public long getInvocations() {
+        return invocations;
+    }
+
+    /**
+     * @return the number of invocations that returned true
+     */
+    public long getSatisfied() {
+        return satisfied;
+    }
+
+    /**
+     * @return the number of invocations that returned false
+     */
+    public long getUnsatisfied() {
+        return unsatisfied;
+    }
+
+    /**
+     * @return the number of invocations that threw an exception
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getAxiomsWritten() {
+        return axiomsWritten;
+    }
+
+    public long getAspectsWritten() {
+        return aspectsWritten;
+    }
+
+    public long getTotalLatencyNanos() {
+        return totalLatencyNanos;
+    }
+
+    public long getMeanLatencyNanos() {
+        return invocations == 0 ? 0 : totalLatencyNanos / invocations;
+    }
+
+    /**
+     * @return an upper bound of the median latency
+     */
+    public long getLatencyP50Nanos() {
+        return Histogram.quantileUpperBound(latencyHistogram, 0.5);
+    }
+
+    /**
+     * @return an upper bound of the 99th percentile latency
+     */
+    public long getLatencyP99Nanos() {
+        return Histogram.quantileUpperBound(latencyHistogram, 0.99);
+    }
+
+    public long[] getLatencyHistogram() {
+        return latencyHistogram.clone();
+    }
+
+    /**
+     * @return the total number of values bound to multi-value result arguments
+     */
+    public long getTotalMultiValueResultSize() {
+        return totalMultiValueResultSize;
+    }
+
+    public long[] getMultiValueResultSizeHistogram() {
+        return multiValueResultSizeHistogram.clone();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s@%s: %d invocations (%d satisfied, %d unsatisfied, %d errors), mean %d ns, p99 <= %d ns, %d axioms and %d aspects written", builtIn, rule, invocations, satisfied, unsatisfied, errors, getMeanLatencyNanos(), getLatencyP99Nanos(), axiomsWritten, aspectsWritten);
+    }
+}
@@ -0,0 +1,178 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Evaluates the opa and createOPA built-ins over all object property assertions matching a
+ * {@link MaterializationPattern}, without going through a rule engine.
+ *
+ * The matching assertions are evaluated by a parallel stream on the given fork-join pool. The evaluation only reads
+ * the indexes; each task collects its results on its own, and the per-task results are merged once at the end. For
+ * createOPA, the merged writes (declarations of minted aspects and aspect assertions) are then applied as a single
+ * batch directly to the ontology. Writes the built-in library has queued in buffered write mode stay queued. The
+ * minted aspects are the same as those of the createOPA built-in, so createOPA may run while rules are being
+ * evaluated on the same ontology; an assertion contextualized by both is only contextualized once.
+ *
+ * Like the built-ins, the object property assertions and aspect assertions of the imports closure are taken into
+ * account unless imports have been excluded for the ontology with
+ * {@link SWRLBuiltInLibraryImpl#setImports(OWLOntology, org.semanticweb.owlapi.model.parameters.Imports)}. New axioms
+ * and aspect assertions are only added to the ontology itself.
+ *
+ * @author ralph
+ */
+public class BulkMaterializer {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkMaterializer.class);
+
+    private final OWLOntology onto;
+
+    private final ForkJoinPool pool;
+
+    public BulkMaterializer(OWLOntology onto) {
+        this(onto, ForkJoinPool.commonPool());
+    }
+
+    public BulkMaterializer(OWLOntology onto, ForkJoinPool pool) {
+        this.onto = onto;
+        this.pool = pool;
+    }
+
+    /**
+     * Finds the aspects of all assertions matching the pattern, as the opa built-in does for a single one.
+     */
+    public MaterializationResult opa(MaterializationPattern pattern) {
+        OntologyContext context = OntologyContext.get(onto);
+        Imports imports = context.getImports();
+        OWLClass boundAspect = pattern.getAspectPolicy().getAspect();
+
+        long start = System.nanoTime();
+        var candidates = inPool(() -> matching(context, pattern));
+        Map<OWLObjectPropertyAssertionAxiom, Set<OWLClass>> contextualizations = inPool(() -> candidates.parallelStream()
+                .map(ax -> {
+                    if (boundAspect != null) {
+                        return context.hasAspect(ax, boundAspect, imports) ? Map.entry(ax, Collections.singleton(boundAspect)) : null;
+                    }
+                    var aspects = context.getAspects(ax, imports);
+                    return aspects.isEmpty() ? null : Map.entry(ax, aspects);
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+        long evaluationNanos = System.nanoTime() - start;
+
+        var result = new MaterializationResult(contextualizations, candidates.size(), 0, 0, 0, evaluationNanos, 0, pool.getParallelism());
+        log.debug("Bulk opa for {}: {}", pattern.getProperty(), result);
+        return result;
+    }
+
+    /**
+     * Contextualizes all assertions matching the pattern, as the createOPA built-in does for a single one, and applies
+     * the resulting writes as one batch.
+     */
+    public MaterializationResult createOPA(MaterializationPattern pattern) {
+        OntologyContext context = OntologyContext.get(onto);
+        Imports imports = context.getImports();
+        OWLClass boundAspect = pattern.getAspectPolicy().getAspect();
+        EntityMinter minter = context.getEntityMinter();
+
+        long start = System.nanoTime();
+        var candidates = inPool(() -> matching(context, pattern));
+        List<Contextualization> evaluated = inPool(() -> candidates.parallelStream()
+                .map(ax -> {
+                    if (boundAspect != null) {
+                        return new Contextualization(ax, boundAspect, false, context.hasAspect(ax, boundAspect, imports));
+                    }
+                    var minted = minter.mint(EntityType.CLASS, "createOPA", ax.getProperty(), ax.getSubject(), ax.getObject());
+                    OWLClass aspectClass = minted.getEntity();
+                    return new Contextualization(ax, aspectClass, minted.isFresh(), !minted.isFresh() && context.hasAspect(ax, aspectClass, imports));
+                })
+                .collect(Collectors.toList()));
+        long evaluationNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        OWLDataFactory df = onto.getOWLOntologyManager().getOWLDataFactory();
+        Map<OWLObjectPropertyAssertionAxiom, Set<OWLClass>> contextualizations = new HashMap<>(evaluated.size() * 2);
+        List<OWLAxiomChange> changes = new ArrayList<>();
+        Map<OWLAxiom, OWLClass> aspects = new LinkedHashMap<>();
+        long suppressed = 0;
+        for (Contextualization c : evaluated) {
+            contextualizations.put(c.joinPointAxiom, Collections.singleton(c.aspect));
+            if (c.existing) {
+                minter.suppressed();
+                suppressed++;
+                continue;
+            }
+            if (c.fresh) {
+                changes.add(new AddAxiom(onto, df.getOWLDeclarationAxiom(c.aspect)));
+            }
+            aspects.put(c.joinPointAxiom, c.aspect);
+        }
+        context.applyBatch(changes, aspects);
+        long commitNanos = System.nanoTime() - start;
+
+        var result = new MaterializationResult(contextualizations, candidates.size(), changes.size(), aspects.size(), suppressed, evaluationNanos, commitNanos, pool.getParallelism());
+        log.debug("Bulk createOPA for {}: {}", pattern.getProperty(), result);
+        return result;
+    }
+
+    /**
+     * @return the assertions matching the pattern, one per (property, subject, object) triple across the imports
+     * closure
+     */
+    private static List<OWLObjectPropertyAssertionAxiom> matching(OntologyContext context, MaterializationPattern pattern) {
+        var shards = context.getShards(context.getImports());
+        Map<JoinPointKey, OWLObjectPropertyAssertionAxiom> matching = new LinkedHashMap<>();
+        for (OntologyContext shard : shards) {
+            var shardMatching = shard.getJoinPointIndex().getObjectPropertyAssertions().parallelStream()
+                    .filter(ax -> ax.getProperty().equals(pattern.getProperty()) && pattern.matches(ax.getSubject(), ax.getObject()))
+                    .collect(Collectors.toList());
+            if (shards.size() == 1) {
+                return shardMatching;
+            }
+            shardMatching.forEach(ax -> matching.putIfAbsent(JoinPointKey.of(ax), ax));
+        }
+        return new ArrayList<>(matching.values());
+    }
+
+    /**
+     * Runs the task on the pool, so that the parallel streams it creates use the pool's workers.
+     */
+    private <T> T inPool(Supplier<T> task) {
+        return pool.submit(task::get).join();
+    }
+
+    /**
+     * Result of evaluating createOPA for a single assertion.
+     */
+    private static final class Contextualization {
+
+        private final OWLObjectPropertyAssertionAxiom joinPointAxiom;
+
+        private final OWLClass aspect;
+
+        /**
+         * true iff the aspect has been minted for this assertion and has to be declared
+         */
+        private final boolean fresh;
+
+        /**
+         * true iff the assertion already holds in the aspect
+         */
+        private final boolean existing;
+
+        Contextualization(OWLObjectPropertyAssertionAxiom joinPointAxiom, OWLClass aspect, boolean fresh, boolean existing) {
+            this.joinPointAxiom = joinPointAxiom;
+            this.aspect = aspect;
+            this.fresh = fresh;
+            this.existing = existing;
+        }
+    }
+}
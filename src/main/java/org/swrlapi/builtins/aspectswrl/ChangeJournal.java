@@ -0,0 +1,402 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal of the axioms and aspect assertions written by the built-ins (createOPA, createNegativeOPA,
+ * temporal) to a single ontology, so that they can be persisted without re-serializing the ontology.
+ *
+ * Each write is appended as one line:
+ * <pre>
+ * C class                                  declaration of a minted aspect
+ * I individual                             declaration of a minted individual
+ * P op subject object                      object property assertion
+ * N op subject object                      negative object property assertion
+ * T aspect op instant inclusive            temporal aspect definition aspect ≡ op.{instant} (⊔ {instant})
+ * A P|N op subject object aspect           aspect assertion for a (negative) object property assertion
+ * </pre>
+ * where all entities are given by their full IRIs. Records are collected in a buffer and written through a file
+ * channel. The channel is forced to disk (group commit) every commit interval and on {@link #commit()} and
+ * {@link #close()}, so many records share one fsync. Records written after the last commit may be lost on a crash;
+ * an incomplete last line is skipped on {@link #replay(Path, OWLOntology)} and cut off when the journal is opened
+ * again, so that new records are not appended to it.
+ *
+ * A journal is attached to an ontology with {@link SWRLBuiltInLibraryImpl#setJournal(OWLOntology, ChangeJournal)}.
+ * On startup, the journal is replayed onto the base ontology before it is attached again; replaying onto an ontology
+ * with an attached journal is rejected, since the replayed records would be appended to that journal once more.
+ *
+ * @author ralph
+ */
+public class ChangeJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeJournal.class);
+
+    public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 100;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private final ScheduledExecutorService committer;
+
+    /**
+     * true iff records have been written to the channel since it was last forced
+     */
+    private boolean dirty = false;
+
+    private ChangeJournal(Path file, long commitIntervalMillis) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            truncateIncompleteRecord();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "aspectswrl-journal-" + file.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        committer.scheduleWithFixedDelay(() -> {
+            try {
+                commit();
+            } catch (IOException | UncheckedIOException e) {
+                log.error("Could not commit journal {}", file, e);
+            }
+        }, commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the given journal file for appending, creating it if necessary. An incomplete last record is cut off.
+     */
+    public static ChangeJournal open(Path file) throws IOException {
+        return open(file, DEFAULT_COMMIT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens the given journal file for appending, creating it if necessary. An incomplete last record is cut off.
+     *
+     * @param commitIntervalMillis interval of the group commits
+     */
+    public static ChangeJournal open(Path file, long commitIntervalMillis) throws IOException {
+        return new ChangeJournal(file, commitIntervalMillis);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Cuts off an incomplete last record (left by a torn write) and positions the channel at the end of the file.
+     */
+    private void truncateIncompleteRecord() throws IOException {
+        long size = channel.size();
+        long end = size;
+        ByteBuffer chunk = ByteBuffer.allocate(4096);
+        search:
+        while (end > 0) {
+            int length = (int) Math.min(chunk.capacity(), end);
+            long start = end - length;
+            chunk.clear().limit(length);
+            while (chunk.hasRemaining()) {
+                if (channel.read(chunk, start + chunk.position()) < 0) {
+                    throw new IOException(String.format("Journal %s shrank while being opened", file));
+                }
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                if (chunk.get(i) == '\n') {
+                    end = start + i + 1;
+                    break search;
+                }
+            }
+            end = start;
+        }
+        if (end < size) {
+            log.warn("Cutting off incomplete last record of journal {} ({} bytes)", file, size - end);
+            channel.truncate(end);
+            channel.force(false);
+        }
+        channel.position(end);
+    }
+
+    /**
+     * Appends the records of the axioms added by the given changes. Axioms the built-ins do not write are skipped.
+     */
+    void append(List<? extends OWLAxiomChange> changes) {
+        StringBuilder records = new StringBuilder();
+        for (OWLAxiomChange change : changes) {
+            if (change.isAddAxiom()) {
+                String record = record(change.getAxiom());
+                if (record != null) {
+                    records.append(record).append('\n');
+                } else {
+                    log.debug("Axiom not journaled: {}", change.getAxiom());
+                }
+            }
+        }
+        write(records);
+    }
+
+    /**
+     * Appends the record of the aspect assertion of the given aspect for the given join point axiom.
+     */
+    void appendAspect(OWLAxiom joinPointAxiom, OWLClass aspect) {
+        String joinPoint = record(joinPointAxiom);
+        if (joinPoint == null || joinPoint.charAt(0) != 'P' && joinPoint.charAt(0) != 'N') {
+            log.debug("Aspect assertion not journaled: {} for {}", aspect, joinPointAxiom);
+            return;
+        }
+        write(new StringBuilder("A ").append(joinPoint).append(' ').append(aspect.getIRI()).append('\n'));
+    }
+
+    /**
+     * Writes all buffered records to the file and forces them to disk.
+     */
+    public void commit() throws IOException {
+        synchronized (this) {
+            drain();
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+        }
+        // outside the lock, so appends are not held up by the fsync
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        committer.shutdown();
+        try {
+            committer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        commit();
+        channel.close();
+    }
+
+    private synchronized void write(CharSequence records) {
+        if (records.length() == 0) {
+            return;
+        }
+        byte[] bytes = records.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            if (bytes.length > buffer.remaining()) {
+                drain();
+            }
+            if (bytes.length > buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(bytes));
+            } else {
+                buffer.put(bytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write to journal %s", file), e);
+        }
+    }
+
+    /**
+     * Writes the buffered records to the channel. Must be called holding the lock.
+     */
+    private void drain() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        dirty = true;
+    }
+
+    /**
+     * @return the record of the given axiom (without the line break), or null if it is not journaled
+     */
+    private static String record(OWLAxiom axiom) {
+        if (axiom.getAxiomType() == AxiomType.DECLARATION) {
+            OWLEntity entity = ((OWLDeclarationAxiom) axiom).getEntity();
+            if (entity.isOWLClass()) {
+                return "C " + entity.getIRI();
+            } else if (entity.isOWLNamedIndividual()) {
+                return "I " + entity.getIRI();
+            }
+        } else if (axiom.getAxiomType() == AxiomType.OBJECT_PROPERTY_ASSERTION) {
+            var ax = (OWLObjectPropertyAssertionAxiom) axiom;
+            return assertion("P", ax.getProperty(), ax.getSubject(), ax.getObject());
+        } else if (axiom.getAxiomType() == AxiomType.NEGATIVE_OBJECT_PROPERTY_ASSERTION) {
+            var ax = (OWLNegativeObjectPropertyAssertionAxiom) axiom;
+            return assertion("N", ax.getProperty(), ax.getSubject(), ax.getObject());
+        } else if (axiom.getAxiomType() == AxiomType.EQUIVALENT_CLASSES) {
+            var ax = (OWLEquivalentClassesAxiom) axiom;
+            var named = ax.getNamedClasses();
+            if (named.size() != 1 || ax.getClassExpressions().size() != 2) {
+                return null;
+            }
+            OWLClass aspect = named.iterator().next();
+            for (OWLClassExpression ce : ax.getClassExpressions()) {
+                var def = TemporalIndex.TemporalDefinition.parse(ce);
+                if (def != null && !def.getProperty().isAnonymous() && def.getInstant().isNamed()) {
+                    return "T " + aspect.getIRI() + " " + def.getProperty().asOWLObjectProperty().getIRI() + " " + def.getInstant().asOWLNamedIndividual().getIRI() + " " + def.isInclusive();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String assertion(String kind, OWLObjectPropertyExpression op, OWLIndividual subject, OWLIndividual object) {
+        if (op.isAnonymous() || !subject.isNamed() || !object.isNamed()) {
+            return null;
+        }
+        return kind + " " + op.asOWLObjectProperty().getIRI() + " " + subject.asOWLNamedIndividual().getIRI() + " " + object.asOWLNamedIndividual().getIRI();
+    }
+
+    /**
+     * Applies the records of the given journal to the given ontology: all axioms as a single batch of changes,
+     * followed by the aspect assertions. The journal is read line by line, so only the parsed changes are held in
+     * memory. Must be called before the journal is attached to the ontology, since the replayed writes are not
+     * journaled again.
+     *
+     * @return the number of records replayed
+     * @throws IllegalStateException if a journal is attached to the ontology
+     */
+    public static int replay(Path file, OWLOntology onto) throws IOException {
+        OntologyContext context = OntologyContext.get(onto);
+        if (context.getJournal() != null) {
+            throw new IllegalStateException(String.format("Cannot replay journal %s onto an ontology with the attached journal %s", file, context.getJournal().getFile()));
+        }
+        // a last line without line break is a torn write
+        boolean complete = endsWithLineBreak(file);
+
+        OWLDataFactory df = onto.getOWLOntologyManager().getOWLDataFactory();
+        List<OWLAxiomChange> changes = new ArrayList<>();
+        List<OWLAxiom> aspectJoinPoints = new ArrayList<>();
+        List<OWLClass> aspects = new ArrayList<>();
+        int records = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+            String line = reader.readLine();
+            while (line != null) {
+                lineNumber++;
+                String next = reader.readLine();
+                if (next == null && !complete) {
+                    log.warn("Skipping incomplete last record of journal {}", file);
+                    break;
+                }
+                if (!line.isEmpty()) {
+                    parseRecord(file, lineNumber, line, onto, df, changes, aspectJoinPoints, aspects);
+                    records++;
+                }
+                line = next;
+            }
+        }
+
+        context.applyChanges(changes, false);
+        for (int i = 0; i < aspects.size(); i++) {
+            context.addAspect(aspectJoinPoints.get(i), aspects.get(i), false);
+        }
+        log.info("Replayed {} records from journal {}", records, file);
+        return records;
+    }
+
+    /**
+     * @return true iff the given file is empty or its last byte is a line break
+     */
+    private static boolean endsWithLineBreak(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size == 0) {
+                return true;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            while (last.hasRemaining()) {
+                if (in.read(last, size - 1) < 0) {
+                    throw new IOException(String.format("Journal %s shrank while being replayed", file));
+                }
+            }
+            return last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * Adds the change or aspect assertion of the given record to the given lists.
+     */
+    private static void parseRecord(Path file, int lineNumber, String line, OWLOntology onto, OWLDataFactory df, List<OWLAxiomChange> changes, List<OWLAxiom> aspectJoinPoints, List<OWLClass> aspects) throws IOException {
+        String[] fields = line.split(" ");
+        try {
+            switch (fields[0]) {
+                case "C":
+                    changes.add(new AddAxiom(onto, df.getOWLDeclarationAxiom(df.getOWLClass(IRI.create(fields[1])))));
+                    break;
+                case "I":
+                    changes.add(new AddAxiom(onto, df.getOWLDeclarationAxiom(df.getOWLNamedIndividual(IRI.create(fields[1])))));
+                    break;
+                case "P":
+                case "N":
+                    changes.add(new AddAxiom(onto, assertionAxiom(df, fields, 0)));
+                    break;
+                case "T": {
+                    OWLClass aspect = df.getOWLClass(IRI.create(fields[1]));
+                    OWLObjectProperty op = df.getOWLObjectProperty(IRI.create(fields[2]));
+                    OWLNamedIndividual instant = df.getOWLNamedIndividual(IRI.create(fields[3]));
+                    OWLClassExpression hasValueCE = df.getOWLObjectHasValue(op, instant);
+                    OWLClassExpression equivalenceCE = Boolean.parseBoolean(fields[4]) ? df.getOWLObjectUnionOf(df.getOWLObjectOneOf(instant), hasValueCE) : hasValueCE;
+                    changes.add(new AddAxiom(onto, df.getOWLEquivalentClassesAxiom(aspect, equivalenceCE)));
+                    break;
+                }
+                case "A":
+                    aspectJoinPoints.add(assertionAxiom(df, fields, 1));
+                    aspects.add(df.getOWLClass(IRI.create(fields[5])));
+                    break;
+                default:
+                    throw new IOException(String.format("Unknown record type %s in line %d of journal %s", fields[0], lineNumber, file));
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException(String.format("Malformed record in line %d of journal %s: %s", lineNumber, file, line), e);
+        }
+    }
+
+    /**
+     * @return the (negative) object property assertion given by the fields starting at offset: P|N op subject object
+     */
+    private static OWLAxiom assertionAxiom(OWLDataFactory df, String[] fields, int offset) throws IOException {
+        OWLObjectProperty op = df.getOWLObjectProperty(IRI.create(fields[offset + 1]));
+        OWLNamedIndividual subject = df.getOWLNamedIndividual(IRI.create(fields[offset + 2]));
+        OWLNamedIndividual object = df.getOWLNamedIndividual(IRI.create(fields[offset + 3]));
+        switch (fields[offset]) {
+            case "P":
+                return df.getOWLObjectPropertyAssertionAxiom(op, subject, object);
+            case "N":
+                return df.getOWLNegativeObjectPropertyAssertionAxiom(op, subject, object);
+            default:
+                throw new IOException(String.format("Unknown assertion type %s", fields[offset]));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Mints the IRIs of the aspects and individuals created by the built-ins of a single ontology.
+ *
+ * IRIs are derived deterministically from the kind of entity and the inputs it is minted for (a 64 bit FNV-1a hash
+ * appended to the ontology IRI, or to the document IRI of an anonymous ontology), so minting twice for the same inputs
+ * yields the same entity. A bounded memo remembers the IRIs of recently minted entities; it is split into segments,
+ * each of which evicts its least recently used entry when it is full. Whether a minted entity is fresh does not depend
+ * on the memo: it is decided by the ontology's signature and the declarations pending in its write buffer, so an
+ * entity whose declaration has not been applied is minted fresh again. Minting is safe to call concurrently.
+ *
+ * The minter also keeps the count of suppressed duplicates: creations the built-ins have skipped because their
+ * result already existed. Callers record each skipped creation once with {@link #suppressed()}; minting itself does
+ * not count, since re-minting an entity does not mean that the creation it is minted for is skipped.
+ *
+ * @author ralph
+ */
+class EntityMinter {
+
+    static final int DEFAULT_MEMO_CAPACITY = 1 << 16;
+
+    private static final int MEMO_SEGMENTS = 16;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final OWLOntology onto;
+
+    private final OWLDataFactory df;
+
+    /**
+     * Tells whether a declaration axiom is in the ontology or pending to be added to it
+     */
+    private final Predicate<OWLAxiom> declared;
+
+    /**
+     * Namespace of the minted IRIs, determined on first use
+     */
+    private volatile String prefix;
+
+    private final MemoSegment[] memo = new MemoSegment[MEMO_SEGMENTS];
+
+    private final LongAdder suppressedDuplicates = new LongAdder();
+
+    EntityMinter(OWLOntology onto, Predicate<OWLAxiom> declared) {
+        this(onto, declared, DEFAULT_MEMO_CAPACITY);
+    }
+
+    EntityMinter(OWLOntology onto, Predicate<OWLAxiom> declared, int memoCapacity) {
+        this.onto = onto;
+        this.df = onto.getOWLOntologyManager().getOWLDataFactory();
+        this.declared = declared;
+        int segmentCapacity = Math.max(1, memoCapacity / MEMO_SEGMENTS);
+        for (int i = 0; i < MEMO_SEGMENTS; i++) {
+            memo[i] = new MemoSegment(segmentCapacity);
+        }
+    }
+
+    /**
+     * Returns the entity of the given type minted for the given kind and inputs, minting it if necessary.
+     *
+     * @param type   entity type, e.g. {@link EntityType#CLASS}
+     * @param kind   what the entity is minted for, e.g. the name of the built-in
+     * @param inputs the built-in arguments identifying the entity
+     */
+    <E extends OWLEntity> Minted<E> mint(EntityType<E> type, String kind, Object... inputs) {
+        String key = key(kind, inputs);
+        MemoSegment segment = memo[(key.hashCode() & 0x7fffffff) % MEMO_SEGMENTS];
+        IRI iri;
+        synchronized (segment) {
+            iri = segment.get(key);
+        }
+        if (iri == null) {
+            iri = IRI.create(prefix() + kind + "-" + Long.toHexString(hash(key)));
+            synchronized (segment) {
+                segment.put(key, iri);
+            }
+        }
+        E entity = df.getOWLEntity(type, iri);
+        return new Minted<>(entity, !isDeclared(entity));
+    }
+
+    /**
+     * Mints a new entity of the given type for a creation without inputs identifying it. Such entities are not
+     * memoised, so each call yields a different entity.
+     *
+     * @param type entity type, e.g. {@link EntityType#NAMED_INDIVIDUAL}
+     * @param kind what the entity is minted for, e.g. the name of the built-in
+     */
+    <E extends OWLEntity> E mintUnique(EntityType<E> type, String kind) {
+        while (true) {
+            E entity = df.getOWLEntity(type, IRI.create(prefix() + kind + "-" + Long.toHexString(ThreadLocalRandom.current().nextLong())));
+            if (!isDeclared(entity)) {
+                return entity;
+            }
+        }
+    }
+
+    /**
+     * Records a creation that has been skipped because its result already exists.
+     */
+    void suppressed() {
+        suppressedDuplicates.increment();
+    }
+
+    long getSuppressedDuplicates() {
+        return suppressedDuplicates.sum();
+    }
+
+    /**
+     * @return the number of IRIs in the memo
+     */
+    int memoSize() {
+        int size = 0;
+        for (MemoSegment segment : memo) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return true iff the entity is in the signature of the ontology or its declaration is pending
+     */
+    private boolean isDeclared(OWLEntity entity) {
+        return onto.containsEntityInSignature(entity) || declared.test(df.getOWLDeclarationAxiom(entity));
+    }
+
+    private String prefix() {
+        var current = prefix;
+        if (current == null) {
+            var ontologyIRI = onto.getOntologyID().getOntologyIRI();
+            IRI base = ontologyIRI.isPresent() ? ontologyIRI.get() : onto.getOWLOntologyManager().getOntologyDocumentIRI(onto);
+            current = (base != null ? base.toString() : "urn:aspectswrl:anonymous") + "#";
+            prefix = current;
+        }
+        return current;
+    }
+
+    private static String key(String kind, Object... inputs) {
+        StringBuilder sb = new StringBuilder(kind);
+        for (Object input : inputs) {
+            sb.append(' ');
+            sb.append(input instanceof OWLEntity ? ((OWLEntity) input).getIRI().toString() : String.valueOf(input));
+        }
+        return sb.toString();
+    }
+
+    private static long hash(String s) {
+        long h = FNV_OFFSET_BASIS;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * A segment of the memo: IRIs by key in access order, dropping the least recently used one when full. Guarded by
+     * its own monitor.
+     */
+    private static final class MemoSegment extends LinkedHashMap<String, IRI> {
+
+        private final int capacity;
+
+        MemoSegment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, IRI> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * A minted entity; fresh iff it is neither in the signature of the ontology nor declared by a pending change, i.e.
+     * iff its declaration still has to be added.
+     */
+    static final class Minted<E extends OWLEntity> {
+
+        private final E entity;
+
+        private final boolean fresh;
+
+        Minted(E entity, boolean fresh) {
+            this.entity = entity;
+            this.fresh = fresh;
+        }
+
+        E getEntity() {
+            return entity;
+        }
+
+        boolean isFresh() {
+            return fresh;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Provides one {@link InMemoryAspectStore} per ontology manager. Always available; used when the library runs outside
+ * of Protégé.
+ *
+ * @author ralph
+ */
+public class HeadlessAspectManagerProvider implements AspectManagerProvider {
+
+    private final Map<OWLOntologyManager, InMemoryAspectStore> stores = Collections.synchronizedMap(new WeakHashMap<>());
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public int getPriority() {
+        return 0;
+    }
+
+    @Override
+    public AspectStore getAspectStore(OWLOntologyManager man) {
+        return stores.computeIfAbsent(man, m -> new InMemoryAspectStore());
+    }
+
+    @Override
+    public String toString() {
+        return "headless";
+    }
+}
@@ -0,0 +1,453 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.AxiomAnnotations;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Told class hierarchy of an ontology, or of its imports closure, built from the SubClassOf and EquivalentClasses
+ * axioms. Every class
+ * expression used in these axioms gets a dense integer id, its direct told superclasses and subclasses, and the sorted
+ * array of the ids of its (transitive) told superclasses, so deciding whether one class is a told subclass of another
+ * is a binary search. Memory is proportional to the number of told subclass relations, not to the square of the number
+ * of classes. Anonymous expressions are nodes of the hierarchy as well, so that e.g. two aspects defined as equivalent
+ * to the same expression (as written by the temporal built-in) are equivalent.
+ *
+ * An added axiom is merged into the ancestor arrays of the subclass and of those of its descendants that do not have
+ * the new ancestors yet, so adding a leaf (such as a new temporal aspect) costs time proportional to its ancestors
+ * only. Removals cause the index to be rebuilt on next use; the rebuild computes the ancestors of each strongly
+ * connected component (classes made equivalent by a cycle of axioms) once, after those of its superclasses. Queries
+ * hold a read lock, updates the write lock.
+ *
+ * An index over the imports closure follows the axiom changes of all ontologies in the closure; import changes cause
+ * it to be rebuilt, since they may change the closure.
+ *
+ * @author ralph
+ */
+class HierarchyIndex implements OWLOntologyChangeListener {
+
+    private static final int[] NONE = new int[0];
+
+    private final OWLOntology onto;
+
+    private final OWLOntologyManager man;
+
+    private final Imports imports;
+
+    /**
+     * The ontologies whose axioms are indexed, or null if they have to be determined again
+     */
+    private volatile Set<OWLOntology> indexed;
+
+    private final Map<OWLClassExpression, Integer> ids = new HashMap<>();
+
+    private final List<OWLClassExpression> classes = new ArrayList<>();
+
+    private final List<Adjacency> parents = new ArrayList<>();
+
+    private final List<Adjacency> children = new ArrayList<>();
+
+    /**
+     * Sorted ids of the told superclasses of each class; never modified in place
+     */
+    private final List<int[]> ancestors = new ArrayList<>();
+
+    private boolean stale = true;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param imports whether to index the axioms of the imports closure or of the ontology only
+     */
+    HierarchyIndex(OWLOntology onto, Imports imports) {
+        this.onto = onto;
+        this.man = onto.getOWLOntologyManager();
+        this.imports = imports;
+        man.addOntologyChangeListener(this);
+    }
+
+    /**
+     * @return true iff sub is sup or a told subclass of it
+     */
+    boolean isSubClassOf(OWLClassExpression sub, OWLClassExpression sup) {
+        if (sub.equals(sup)) {
+            return true;
+        }
+        lock.readLock().lock();
+        try {
+            if (!stale) {
+                return test(sub, sup);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            rebuildIfStale();
+            return test(sub, sup);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the named told superclasses of the given class (not including itself, unless it lies on a cycle)
+     */
+    Set<OWLClass> getSuperClasses(OWLClassExpression sub) {
+        lock.readLock().lock();
+        try {
+            if (!stale) {
+                return collectSuperClasses(sub);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            rebuildIfStale();
+            return collectSuperClasses(sub);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Merges the given SubClassOf or EquivalentClasses axiom into the index, e.g. ahead of it being added to the
+     * ontology. Adding an axiom that is already indexed has no effect.
+     */
+    void addAxiom(OWLClassAxiom axiom) {
+        lock.writeLock().lock();
+        try {
+            if (stale) {
+                // will be picked up by the rebuild if it is in the ontology by then
+                if (onto.containsAxiom(axiom, imports, AxiomAnnotations.IGNORE_AXIOM_ANNOTATIONS)) {
+                    return;
+                }
+                rebuildIfStale();
+            }
+            forEachEdge(axiom, this::addEdge);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void dispose() {
+        man.removeOntologyChangeListener(this);
+    }
+
+    private boolean test(OWLClassExpression sub, OWLClassExpression sup) {
+        Integer subId = ids.get(sub);
+        Integer supId = ids.get(sup);
+        return subId != null && supId != null && Arrays.binarySearch(ancestors.get(subId), supId) >= 0;
+    }
+
+    private Set<OWLClass> collectSuperClasses(OWLClassExpression sub) {
+        Integer subId = ids.get(sub);
+        if (subId == null) {
+            return Collections.emptySet();
+        }
+        Set<OWLClass> superClasses = new HashSet<>();
+        for (int id : ancestors.get(subId)) {
+            OWLClassExpression ce = classes.get(id);
+            if (!ce.isAnonymous()) {
+                superClasses.add(ce.asOWLClass());
+            }
+        }
+        return superClasses;
+    }
+
+    /**
+     * Rebuilds the index from the ontology. Must be called with the write lock held.
+     */
+    private void rebuildIfStale() {
+        if (!stale) {
+            return;
+        }
+        ids.clear();
+        classes.clear();
+        parents.clear();
+        children.clear();
+        ancestors.clear();
+        for (OWLSubClassOfAxiom ax : onto.getAxioms(AxiomType.SUBCLASS_OF, imports)) {
+            forEachEdge(ax, (sub, sup) -> link(id(sub), id(sup)));
+        }
+        for (OWLEquivalentClassesAxiom ax : onto.getAxioms(AxiomType.EQUIVALENT_CLASSES, imports)) {
+            forEachEdge(ax, (sub, sup) -> link(id(sub), id(sup)));
+        }
+
+        // Tarjan's algorithm along the superclass edges, without recursion. It completes each strongly connected
+        // component after all components reachable from it, i.e. after all its superclasses, so their ancestors can
+        // be merged right away.
+        int n = classes.size();
+        int[] index = new int[n];
+        Arrays.fill(index, -1);
+        int[] lowLink = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int sp = 0;
+        int[] callStack = new int[n];
+        int[] nextParent = new int[n];
+        int csp = 0;
+        int counter = 0;
+        // marks the ids already collected for the current component
+        int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+        int[] collected = new int[16];
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            index[root] = lowLink[root] = counter++;
+            stack[sp++] = root;
+            onStack[root] = true;
+            callStack[csp++] = root;
+            while (csp > 0) {
+                int v = callStack[csp - 1];
+                Adjacency vParents = parents.get(v);
+                if (nextParent[v] < vParents.size) {
+                    int p = vParents.items[nextParent[v]++];
+                    if (index[p] < 0) {
+                        index[p] = lowLink[p] = counter++;
+                        stack[sp++] = p;
+                        onStack[p] = true;
+                        callStack[csp++] = p;
+                    } else if (onStack[p]) {
+                        lowLink[v] = Math.min(lowLink[v], index[p]);
+                    }
+                    continue;
+                }
+                csp--;
+                if (csp > 0) {
+                    int caller = callStack[csp - 1];
+                    lowLink[caller] = Math.min(lowLink[caller], lowLink[v]);
+                }
+                if (lowLink[v] != index[v]) {
+                    continue;
+                }
+                // v is the root of a component, whose members are on the stack from v upwards
+                int first = sp;
+                do {
+                    first--;
+                } while (stack[first] != v);
+                int size = 0;
+                for (int i = first; i < sp; i++) {
+                    Adjacency memberParents = parents.get(stack[i]);
+                    for (int j = 0; j < memberParents.size; j++) {
+                        int p = memberParents.items[j];
+                        if (mark[p] != v) {
+                            mark[p] = v;
+                            collected = append(collected, size++, p);
+                        }
+                        // parents within the component are collected themselves; those of other components are done
+                        if (!onStack[p]) {
+                            for (int a : ancestors.get(p)) {
+                                if (mark[a] != v) {
+                                    mark[a] = v;
+                                    collected = append(collected, size++, a);
+                                }
+                            }
+                        }
+                    }
+                }
+                int[] componentAncestors = size == 0 ? NONE : Arrays.copyOf(collected, size);
+                Arrays.sort(componentAncestors);
+                for (int i = first; i < sp; i++) {
+                    ancestors.set(stack[i], componentAncestors);
+                    onStack[stack[i]] = false;
+                }
+                sp = first;
+            }
+        }
+        stale = false;
+    }
+
+    private static int[] append(int[] array, int size, int value) {
+        if (size == array.length) {
+            array = Arrays.copyOf(array, size * 2);
+        }
+        array[size] = value;
+        return array;
+    }
+
+    /**
+     * Records the direct edge sub → sup.
+     *
+     * @return false if it has been recorded before
+     */
+    private boolean link(int subId, int supId) {
+        if (!parents.get(subId).add(supId)) {
+            return false;
+        }
+        children.get(supId).append(subId);
+        return true;
+    }
+
+    private void addEdge(OWLClassExpression sub, OWLClassExpression sup) {
+        int subId = id(sub);
+        int supId = id(sup);
+        if (!link(subId, supId)) {
+            return;
+        }
+        int[] added = union(ancestors.get(supId), new int[] { supId });
+        // descendants that already have all added ancestors pass them on to their own descendants already
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(subId);
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            int[] current = ancestors.get(v);
+            int[] merged = union(current, added);
+            if (merged == current) {
+                continue;
+            }
+            ancestors.set(v, merged);
+            Adjacency vChildren = children.get(v);
+            for (int i = 0; i < vChildren.size; i++) {
+                queue.add(vChildren.items[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the union of the sorted arrays a and b, or a itself if it contains all of b
+     */
+    static int[] union(int[] a, int[] b) {
+        int missing = 0;
+        for (int i = 0, j = 0; j < b.length; ) {
+            if (i == a.length || a[i] > b[j]) {
+                missing++;
+                j++;
+            } else if (a[i] == b[j]) {
+                i++;
+                j++;
+            } else {
+                i++;
+            }
+        }
+        if (missing == 0) {
+            return a;
+        }
+        int[] merged = new int[a.length + missing];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || i < a.length && a[i] < b[j]) {
+                merged[k++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                merged[k++] = b[j++];
+            } else {
+                merged[k++] = a[i++];
+                j++;
+            }
+        }
+        return merged;
+    }
+
+    private int id(OWLClassExpression ce) {
+        Integer id = ids.get(ce);
+        if (id == null) {
+            id = classes.size();
+            ids.put(ce, id);
+            classes.add(ce);
+            parents.add(new Adjacency());
+            children.add(new Adjacency());
+            ancestors.add(NONE);
+        }
+        return id;
+    }
+
+    /**
+     * Growable list of the ids of the direct superclasses or subclasses of a class.
+     */
+    private static final class Adjacency {
+
+        int[] items = NONE;
+
+        int size = 0;
+
+        /**
+         * @return false if the id is already contained
+         */
+        boolean add(int id) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == id) {
+                    return false;
+                }
+            }
+            append(id);
+            return true;
+        }
+
+        void append(int id) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, Math.max(4, size * 2));
+            }
+            items[size++] = id;
+        }
+    }
+
+    private interface EdgeConsumer {
+        void accept(OWLClassExpression sub, OWLClassExpression sup);
+    }
+
+    private static void forEachEdge(OWLClassAxiom axiom, EdgeConsumer consumer) {
+        if (axiom.getAxiomType() == AxiomType.SUBCLASS_OF) {
+            var ax = (OWLSubClassOfAxiom) axiom;
+            consumer.accept(ax.getSubClass(), ax.getSuperClass());
+        } else if (axiom.getAxiomType() == AxiomType.EQUIVALENT_CLASSES) {
+            var expressions = new ArrayList<>(((OWLEquivalentClassesAxiom) axiom).getClassExpressions());
+            // a cycle through all expressions makes each an ancestor of all others
+            for (int i = 0; i < expressions.size() && expressions.size() > 1; i++) {
+                consumer.accept(expressions.get(i), expressions.get((i + 1) % expressions.size()));
+            }
+        }
+    }
+
+    private Set<OWLOntology> indexed() {
+        var current = indexed;
+        if (current == null) {
+            // by identity, since ontologies with equal IDs may be managed by other managers
+            Set<OWLOntology> closure = Collections.newSetFromMap(new IdentityHashMap<>());
+            closure.addAll(imports == Imports.INCLUDED ? onto.getImportsClosure() : Collections.singleton(onto));
+            current = Collections.unmodifiableSet(closure);
+            indexed = current;
+        }
+        return current;
+    }
+
+    @Override
+    public void ontologiesChanged(List<? extends OWLOntologyChange> changes) {
+        for (OWLOntologyChange change : changes) {
+            if (change.isImportChange() && imports == Imports.INCLUDED) {
+                indexed = null;
+                markStale();
+                continue;
+            }
+            if (!change.isAxiomChange() || !indexed().contains(change.getOntology())) {
+                continue;
+            }
+            OWLAxiom axiom = change.getAxiom();
+            if (axiom.getAxiomType() != AxiomType.SUBCLASS_OF && axiom.getAxiomType() != AxiomType.EQUIVALENT_CLASSES) {
+                continue;
+            }
+            if (change.isAddAxiom()) {
+                addAxiom((OWLClassAxiom) axiom);
+            } else {
+                markStale();
+            }
+        }
+    }
+
+    private void markStale() {
+        lock.writeLock().lock();
+        try {
+            stale = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram with fixed power-of-two buckets: bucket 0 counts the value 0, bucket i > 0 counts values in
+ * [2^(i-1), 2^i).
+ *
+ * @author ralph
+ */
+class Histogram {
+
+    static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+    private final LongAdder sum = new LongAdder();
+
+    Histogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value))].increment();
+        sum.add(value);
+    }
+
+    long[] getCounts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    long getSum() {
+        return sum.sum();
+    }
+
+    void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        sum.reset();
+    }
+
+    /**
+     * @return the upper bound of the bucket containing the given quantile (0..1) of the counted values
+     */
+    static long quantileUpperBound(long[] counts, double quantile) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        // at least the first value, so that quantile 0 is the bucket of the smallest value
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
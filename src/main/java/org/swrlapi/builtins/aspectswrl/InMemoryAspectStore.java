@@ -0,0 +1,149 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLObject;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Aspect store keeping the aspect assertions in memory, without any dependency on AspectOWL or Protégé. It only knows
+ * the aspects asserted through it (by the built-ins or programmatically).
+ *
+ * Plain aspect assertions of object property assertions between named individuals, which make up the bulk of them,
+ * are held as ids in a {@link PackedAspectTable} per ontology, so that the store does not keep an OWL API axiom per
+ * join point. All other aspect assertions are keyed by their path: the join point axiom followed by the aspects of
+ * the enclosing assertions (none for a plain aspect assertion). Registered {@link AspectStoreListener}s are notified
+ * of every change, so the built-ins answer from the store itself instead of caching its assertions (see
+ * {@link #isIndexed()}).
+ *
+ * @author ralph
+ */
+public class InMemoryAspectStore implements AspectStore {
+
+    /**
+     * Aspect assertions by ontology. Ontologies are referenced weakly: the store is kept per ontology manager in a weak
+     * map (see {@link HeadlessAspectManagerProvider}), which it must not keep reachable through its ontologies. They
+     * are compared by identity, so that assertions follow an ontology whose ID is changed.
+     */
+    private final WeakIdentityMap<OWLOntology, OntologyAspects> aspects = new WeakIdentityMap<>();
+
+    private final List<AspectStoreListener> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Set<OWLClass> getAssertedAspects(OWLOntology onto, OWLAxiom joinPointAxiom) {
+        if (PackedAspectTable.isPackable(joinPointAxiom)) {
+            var ontoAspects = aspects.get(onto);
+            int[] ids = ontoAspects == null ? null : ontoAspects.opaAspects.get(joinPointAxiom);
+            return ids == null ? Collections.emptySet() : ontoAspects.opaAspects.toClasses(ids);
+        }
+        return get(onto, Collections.singletonList(joinPointAxiom));
+    }
+
+    @Override
+    public boolean hasAspect(OWLOntology onto, OWLAxiom joinPointAxiom, OWLClass aspect) {
+        if (PackedAspectTable.isPackable(joinPointAxiom)) {
+            var ontoAspects = aspects.get(onto);
+            int[] ids = ontoAspects == null ? null : ontoAspects.opaAspects.get(joinPointAxiom);
+            return ids != null && PackedAspectTable.contains(ids, ontoAspects.opaAspects.findAspect(aspect));
+        }
+        return get(onto, Collections.singletonList(joinPointAxiom)).contains(aspect);
+    }
+
+    @Override
+    public void addAspect(OWLOntology onto, OWLAxiom joinPointAxiom, OWLClass aspect) {
+        boolean added = PackedAspectTable.isPackable(joinPointAxiom)
+                ? aspects.computeIfAbsent(onto, o -> new OntologyAspects()).opaAspects.add(joinPointAxiom, aspect)
+                : add(onto, Collections.singletonList(joinPointAxiom), aspect);
+        if (added) {
+            listeners.forEach(listener -> listener.aspectAdded(onto, joinPointAxiom, Collections.emptyList(), aspect));
+        }
+    }
+
+    @Override
+    public boolean isIndexed() {
+        return true;
+    }
+
+    @Override
+    public Set<OWLClass> getNestedAspects(OWLOntology onto, OWLAxiom joinPointAxiom, List<OWLClass> aspectPath) {
+        return get(onto, path(joinPointAxiom, aspectPath));
+    }
+
+    /**
+     * Asserts the given aspect for a nested aspect assertion (see
+     * {@link #getNestedAspects(OWLOntology, OWLAxiom, List)}).
+     */
+    public void addNestedAspect(OWLOntology onto, OWLAxiom joinPointAxiom, List<OWLClass> aspectPath, OWLClass aspect) {
+        if (add(onto, path(joinPointAxiom, aspectPath), aspect)) {
+            List<OWLClass> path = List.copyOf(aspectPath);
+            listeners.forEach(listener -> listener.aspectAdded(onto, joinPointAxiom, path, aspect));
+        }
+    }
+
+    @Override
+    public void addListener(AspectStoreListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(AspectStoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    private Set<OWLClass> get(OWLOntology onto, List<OWLObject> path) {
+        var ontoAspects = aspects.get(onto);
+        if (ontoAspects == null) {
+            return Collections.emptySet();
+        }
+        var pathAspects = ontoAspects.byPath.get(path);
+        return pathAspects == null ? Collections.emptySet() : Collections.unmodifiableSet(pathAspects);
+    }
+
+    /**
+     * @return true iff the aspect has not been asserted for the path before
+     */
+    private boolean add(OWLOntology onto, List<OWLObject> path, OWLClass aspect) {
+        return aspects.computeIfAbsent(onto, o -> new OntologyAspects()).byPath
+                .computeIfAbsent(path, p -> ConcurrentHashMap.newKeySet())
+                .add(aspect);
+    }
+
+    private static List<OWLObject> path(OWLAxiom joinPointAxiom, List<OWLClass> aspectPath) {
+        List<OWLObject> path = new ArrayList<>(aspectPath.size() + 1);
+        path.add(joinPointAxiom);
+        path.addAll(aspectPath);
+        return path;
+    }
+
+    @Override
+    public void ontologyRemoved(OWLOntology onto) {
+        clear(onto);
+    }
+
+    /**
+     * Drops all aspect assertions of the given ontology.
+     */
+    public void clear(OWLOntology onto) {
+        if (aspects.remove(onto) != null) {
+            listeners.forEach(listener -> listener.aspectsChanged(onto));
+        }
+    }
+
+    /**
+     * The aspect assertions of a single ontology
+     */
+    private static final class OntologyAspects {
+
+        private final PackedAspectTable opaAspects = new PackedAspectTable(new IriDictionary(), new IriDictionary(), new IriDictionary());
+
+        private final Map<List<OWLObject>, Set<OWLClass>> byPath = new ConcurrentHashMap<>();
+    }
+}
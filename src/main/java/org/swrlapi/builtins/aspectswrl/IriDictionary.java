@@ -0,0 +1,69 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.OWLEntity;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns entities as dense int ids, so that indexes can store ids instead of OWL API objects and only turn them back
+ * into entities when a result is returned. Each kind of entity (individuals, properties, classes) is interned in a
+ * dictionary of its own, so that the ids of one kind are not spread out by the number of entities of the others.
+ *
+ * Entities are keyed by type and IRI, so a punned IRI gets one id per entity type. Ids are never reused. Lookups do
+ * not lock; interning a new entity synchronizes on the dictionary.
+ *
+ * @author ralph
+ */
+class IriDictionary {
+
+    private final Map<OWLEntity, Integer> ids = new ConcurrentHashMap<>();
+
+    private volatile OWLEntity[] entities = new OWLEntity[1024];
+
+    private int size = 0;
+
+    /**
+     * @return the id of the given entity, assigning one if it has none yet
+     */
+    int intern(OWLEntity entity) {
+        Integer id = ids.get(entity);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(entity);
+            if (id == null) {
+                if (size == entities.length) {
+                    entities = Arrays.copyOf(entities, size * 2);
+                }
+                entities[size] = entity;
+                id = size++;
+                // published after the entity, so whoever finds the id finds the entity
+                ids.put(entity, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @return the id of the given entity, or -1 if it has none
+     */
+    int find(OWLEntity entity) {
+        Integer id = ids.get(entity);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @return the entity with the given id
+     */
+    @SuppressWarnings("unchecked")
+    <E extends OWLEntity> E get(int id) {
+        return (E) entities[id];
+    }
+
+    int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,100 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * (subject, property, object) → axiom index over the positive and negative object property assertions of a single
+ * ontology. The index is built once and then kept up to date by listening to the changes applied through the
+ * ontology's manager, so join point lookups do not have to scan the assertions of the subject individual. Lookups do
+ * not lock and may run concurrently with updates.
+ *
+ * @author ralph
+ */
+class JoinPointIndex implements OWLOntologyChangeListener {
+
+    private final OWLOntology onto;
+
+    private final OWLOntologyManager man;
+
+    private final Map<JoinPointKey, OWLObjectPropertyAssertionAxiom> positive = new ConcurrentHashMap<>();
+
+    private final Map<JoinPointKey, OWLNegativeObjectPropertyAssertionAxiom> negative = new ConcurrentHashMap<>();
+
+    JoinPointIndex(OWLOntology onto) {
+        this.onto = onto;
+        this.man = onto.getOWLOntologyManager();
+        // listen before scanning, so that assertions added during the scan are not lost
+        man.addOntologyChangeListener(this);
+        for (OWLObjectPropertyAssertionAxiom ax : onto.getAxioms(AxiomType.OBJECT_PROPERTY_ASSERTION)) {
+            positive.putIfAbsent(JoinPointKey.of(ax), ax);
+        }
+        for (OWLNegativeObjectPropertyAssertionAxiom ax : onto.getAxioms(AxiomType.NEGATIVE_OBJECT_PROPERTY_ASSERTION)) {
+            negative.putIfAbsent(JoinPointKey.of(ax), ax);
+        }
+    }
+
+    /**
+     * @return the asserted axiom op(i1, i2) or null if there is none
+     */
+    OWLObjectPropertyAssertionAxiom getObjectPropertyAssertion(OWLObjectPropertyExpression op, OWLIndividual i1, OWLIndividual i2) {
+        return positive.get(new JoinPointKey(op, i1, i2));
+    }
+
+    /**
+     * @return the asserted axiom ¬op(i1, i2) or null if there is none
+     */
+    OWLNegativeObjectPropertyAssertionAxiom getNegativeObjectPropertyAssertion(OWLObjectPropertyExpression op, OWLIndividual i1, OWLIndividual i2) {
+        return negative.get(new JoinPointKey(op, i1, i2));
+    }
+
+    /**
+     * @return all indexed (positive) object property assertions, one per (property, subject, object) triple
+     */
+    Collection<OWLObjectPropertyAssertionAxiom> getObjectPropertyAssertions() {
+        return Collections.unmodifiableCollection(positive.values());
+    }
+
+    /**
+     * Stops listening to changes of the indexed ontology.
+     */
+    void dispose() {
+        man.removeOntologyChangeListener(this);
+    }
+
+    @Override
+    public void ontologiesChanged(List<? extends OWLOntologyChange> changes) {
+        for (OWLOntologyChange change : changes) {
+            if (!change.isAxiomChange() || change.getOntology() != onto) {
+                continue;
+            }
+            OWLAxiom axiom = change.getAxiom();
+            if (axiom.getAxiomType() == AxiomType.OBJECT_PROPERTY_ASSERTION) {
+                var ax = (OWLObjectPropertyAssertionAxiom) axiom;
+                var key = JoinPointKey.of(ax);
+                if (change.isAddAxiom()) {
+                    positive.putIfAbsent(key, ax);
+                } else if (change.isRemoveAxiom() && positive.remove(key, ax)) {
+                    // another (e.g. differently annotated) axiom may still assert the same triple
+                    onto.getObjectPropertyAssertionAxioms(key.getSubject()).stream()
+                            .filter(other -> JoinPointKey.of(other).equals(key))
+                            .findFirst()
+                            .ifPresent(other -> positive.putIfAbsent(key, other));
+                }
+            } else if (axiom.getAxiomType() == AxiomType.NEGATIVE_OBJECT_PROPERTY_ASSERTION) {
+                var ax = (OWLNegativeObjectPropertyAssertionAxiom) axiom;
+                var key = JoinPointKey.of(ax);
+                if (change.isAddAxiom()) {
+                    negative.putIfAbsent(key, ax);
+                } else if (change.isRemoveAxiom() && negative.remove(key, ax)) {
+                    onto.getNegativeObjectPropertyAssertionAxioms(key.getSubject()).stream()
+                            .filter(other -> JoinPointKey.of(other).equals(key))
+                            .findFirst()
+                            .ifPresent(other -> negative.putIfAbsent(key, other));
+                }
+            }
+        }
+    }
+}
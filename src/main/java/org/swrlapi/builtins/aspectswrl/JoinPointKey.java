@@ -0,0 +1,64 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.OWLIndividual;
+import org.semanticweb.owlapi.model.OWLObjectPropertyExpression;
+import org.semanticweb.owlapi.model.OWLPropertyAssertionAxiom;
+
+/**
+ * Lookup key identifying an (object property, subject, object) triple, regardless of whether it is asserted
+ * positively or negatively and regardless of any axiom annotations.
+ *
+ * @author ralph
+ */
+final class JoinPointKey {
+
+    private final OWLObjectPropertyExpression property;
+    private final OWLIndividual subject;
+    private final OWLIndividual object;
+    private final int hash;
+
+    JoinPointKey(OWLObjectPropertyExpression property, OWLIndividual subject, OWLIndividual object) {
+        this.property = property;
+        this.subject = subject;
+        this.object = object;
+        this.hash = 31 * (31 * property.hashCode() + subject.hashCode()) + object.hashCode();
+    }
+
+    static JoinPointKey of(OWLPropertyAssertionAxiom<OWLObjectPropertyExpression, OWLIndividual> axiom) {
+        return new JoinPointKey(axiom.getProperty(), axiom.getSubject(), axiom.getObject());
+    }
+
+    OWLObjectPropertyExpression getProperty() {
+        return property;
+    }
+
+    OWLIndividual getSubject() {
+        return subject;
+    }
+
+    OWLIndividual getObject() {
+        return object;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof JoinPointKey)) {
+            return false;
+        }
+        JoinPointKey other = (JoinPointKey) o;
+        return hash == other.hash && property.equals(other.property) && subject.equals(other.subject) && object.equals(other.object);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return property + "(" + subject + ", " + object + ")";
+    }
+}
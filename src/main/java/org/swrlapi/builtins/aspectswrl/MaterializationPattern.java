@@ -0,0 +1,108 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLIndividual;
+import org.semanticweb.owlapi.model.OWLObjectPropertyExpression;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Selects the object property assertions op(s, o) a {@link BulkMaterializer} works on, and the aspect it evaluates
+ * them against.
+ *
+ * Patterns are immutable; the with* methods return modified copies.
+ *
+ * @author ralph
+ */
+public final class MaterializationPattern {
+
+    private final OWLObjectPropertyExpression property;
+
+    private final Predicate<OWLIndividual> subjectFilter;
+
+    private final Predicate<OWLIndividual> objectFilter;
+
+    private final AspectPolicy aspectPolicy;
+
+    private MaterializationPattern(OWLObjectPropertyExpression property, Predicate<OWLIndividual> subjectFilter, Predicate<OWLIndividual> objectFilter, AspectPolicy aspectPolicy) {
+        this.property = Objects.requireNonNull(property);
+        this.subjectFilter = Objects.requireNonNull(subjectFilter);
+        this.objectFilter = Objects.requireNonNull(objectFilter);
+        this.aspectPolicy = Objects.requireNonNull(aspectPolicy);
+    }
+
+    /**
+     * @return a pattern matching all assertions of the given property, with an unbound aspect
+     */
+    public static MaterializationPattern forProperty(OWLObjectPropertyExpression property) {
+        return new MaterializationPattern(property, s -> true, o -> true, AspectPolicy.unbound());
+    }
+
+    /**
+     * @return a copy of this pattern that only matches assertions whose subject satisfies the given filter
+     */
+    public MaterializationPattern withSubjects(Predicate<OWLIndividual> subjectFilter) {
+        return new MaterializationPattern(property, subjectFilter, objectFilter, aspectPolicy);
+    }
+
+    /**
+     * @return a copy of this pattern that only matches assertions whose object satisfies the given filter
+     */
+    public MaterializationPattern withObjects(Predicate<OWLIndividual> objectFilter) {
+        return new MaterializationPattern(property, subjectFilter, objectFilter, aspectPolicy);
+    }
+
+    public MaterializationPattern withAspect(AspectPolicy aspectPolicy) {
+        return new MaterializationPattern(property, subjectFilter, objectFilter, aspectPolicy);
+    }
+
+    public OWLObjectPropertyExpression getProperty() {
+        return property;
+    }
+
+    public AspectPolicy getAspectPolicy() {
+        return aspectPolicy;
+    }
+
+    boolean matches(OWLIndividual subject, OWLIndividual object) {
+        return subjectFilter.test(subject) && objectFilter.test(object);
+    }
+
+    /**
+     * The aspect argument of the built-in semantics a pattern is evaluated with.
+     *
+     * Unbound: opa finds all aspects of each assertion; createOPA mints one aspect per assertion (the same one the
+     * createOPA built-in mints for it). Bound to A: opa only reports assertions holding in A; createOPA contextualizes
+     * every assertion under A.
+     */
+    public static final class AspectPolicy {
+
+        private static final AspectPolicy UNBOUND = new AspectPolicy(null);
+
+        private final OWLClass aspect;
+
+        private AspectPolicy(OWLClass aspect) {
+            this.aspect = aspect;
+        }
+
+        public static AspectPolicy unbound() {
+            return UNBOUND;
+        }
+
+        public static AspectPolicy bound(OWLClass aspect) {
+            return new AspectPolicy(Objects.requireNonNull(aspect));
+        }
+
+        public boolean isBound() {
+            return aspect != null;
+        }
+
+        /**
+         * @return the bound aspect or null if unbound
+         */
+        public OWLClass getAspect() {
+            return aspect;
+        }
+    }
+}
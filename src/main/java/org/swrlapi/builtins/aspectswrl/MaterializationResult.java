@@ -0,0 +1,107 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLObjectPropertyAssertionAxiom;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Outcome and throughput of one {@link BulkMaterializer} run.
+ *
+ * @author ralph
+ */
+public final class MaterializationResult {
+
+    private final Map<OWLObjectPropertyAssertionAxiom, Set<OWLClass>> contextualizations;
+    private final long matched;
+    private final long axiomsWritten;
+    private final long aspectsWritten;
+    private final long suppressedDuplicates;
+    private final long evaluationNanos;
+    private final long commitNanos;
+    private final int parallelism;
+
+    MaterializationResult(Map<OWLObjectPropertyAssertionAxiom, Set<OWLClass>> contextualizations, long matched, long axiomsWritten, long aspectsWritten, long suppressedDuplicates, long evaluationNanos, long commitNanos, int parallelism) {
+        this.contextualizations = contextualizations;
+        this.matched = matched;
+        this.axiomsWritten = axiomsWritten;
+        this.aspectsWritten = aspectsWritten;
+        this.suppressedDuplicates = suppressedDuplicates;
+        this.evaluationNanos = evaluationNanos;
+        this.commitNanos = commitNanos;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return for opa, the matched assertions that hold in some aspect, with those aspects; for createOPA, the matched
+     * assertions with the aspect each has been contextualized under (whether newly or before)
+     */
+    public Map<OWLObjectPropertyAssertionAxiom, Set<OWLClass>> getContextualizations() {
+        return contextualizations;
+    }
+
+    /**
+     * @return the number of assertions matching the pattern
+     */
+    public long getMatched() {
+        return matched;
+    }
+
+    /**
+     * @return the number of axioms added to the ontology (declarations of minted aspects)
+     */
+    public long getAxiomsWritten() {
+        return axiomsWritten;
+    }
+
+    public long getAspectsWritten() {
+        return aspectsWritten;
+    }
+
+    /**
+     * @return the number of assertions skipped because they already held in their aspect
+     */
+    public long getSuppressedDuplicates() {
+        return suppressedDuplicates;
+    }
+
+    /**
+     * @return the time spent evaluating the pattern in parallel
+     */
+    public long getEvaluationNanos() {
+        return evaluationNanos;
+    }
+
+    /**
+     * @return the time spent applying the batched writes (0 for opa)
+     */
+    public long getCommitNanos() {
+        return commitNanos;
+    }
+
+    public long getElapsedNanos() {
+        return evaluationNanos + commitNanos;
+    }
+
+    /**
+     * @return the number of worker threads the pattern was evaluated with
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return matched assertions per second, including the commit
+     */
+    public double getThroughput() {
+        long elapsed = getElapsedNanos();
+        return elapsed == 0 ? 0 : matched * 1e9 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d matched, %d axioms and %d aspects written, %d suppressed in %.1f ms (%.1f ms commit) on %d threads, %.0f assertions/s",
+                matched, axiomsWritten, aspectsWritten, suppressedDuplicates, evaluationNanos / 1e6, commitNanos / 1e6, parallelism, getThroughput());
+    }
+}
@@ -0,0 +1,229 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Index over the nested aspects of a single ontology. Aspect B is directly nested in aspect A if B is asserted for an
+ * assertion of A (for any join point axiom); it is nested in A at depth n if there is a chain of n such direct
+ * nestings from A to B.
+ *
+ * The index walks all aspect assertions of the ontology once and memoises the transitive nesting closure, together
+ * with the minimal depth of each nesting, so that queries do not touch the ontology or the aspect store. Cycles (an
+ * aspect nested in itself) are detected and logged while building the closure.
+ *
+ * The closure is dropped on changes that may add or remove a nesting, and rebuilt on next use: nested aspect
+ * assertions and aspect assertions that have nested ones reported by the aspect store, and the addition or removal of
+ * logical axioms that are join points of nested aspect assertions (as in AspectOWL, where aspect assertions are axiom
+ * annotations). Other changes, such as the axioms written by the temporal built-in, leave it alone. Nested aspects
+ * asserted by other means in a store that does not report its changes require a call to {@link #invalidate()}.
+ *
+ * @author ralph
+ */
+class NestingIndex implements OWLOntologyChangeListener {
+
+    private static final Logger log = LoggerFactory.getLogger(NestingIndex.class);
+
+    private final OWLOntology onto;
+
+    private final OWLOntologyManager man;
+
+    private final AspectStore aspectStore;
+
+    private volatile Closure closure;
+
+    /**
+     * Incremented on every invalidation, so that a closure built concurrently with one is not memoised
+     */
+    private volatile long version = 0;
+
+    private final AspectStoreListener storeListener = new AspectStoreListener() {
+        @Override
+        public void aspectAdded(OWLOntology o, OWLAxiom joinPointAxiom, List<OWLClass> aspectPath, OWLClass aspect) {
+            if (o == onto && (!aspectPath.isEmpty() || hasNestedAspects(joinPointAxiom, aspect))) {
+                invalidate();
+            }
+        }
+
+        @Override
+        public void aspectsChanged(OWLOntology o) {
+            if (o == onto) {
+                invalidate();
+            }
+        }
+    };
+
+    NestingIndex(OWLOntology onto, AspectStore aspectStore) {
+        this.onto = onto;
+        this.man = onto.getOWLOntologyManager();
+        this.aspectStore = aspectStore;
+        man.addOntologyChangeListener(this);
+        aspectStore.addListener(storeListener);
+    }
+
+    /**
+     * @return the aspects nested in the given aspect, with their minimal nesting depth
+     */
+    Map<OWLClass, Integer> getNested(OWLClass outer) {
+        return getClosure().nested.getOrDefault(outer, Collections.emptyMap());
+    }
+
+    /**
+     * @return the aspects the given aspect is nested in, with its minimal nesting depth
+     */
+    Map<OWLClass, Integer> getNesting(OWLClass inner) {
+        return getClosure().nesting.getOrDefault(inner, Collections.emptyMap());
+    }
+
+    /**
+     * @return the minimal depth at which inner is nested in outer, or 0 if it is not nested in it
+     */
+    int getDepth(OWLClass outer, OWLClass inner) {
+        return getNested(outer).getOrDefault(inner, 0);
+    }
+
+    /**
+     * @return the aspects that are (transitively) nested in themselves
+     */
+    Set<OWLClass> getCyclic() {
+        return getClosure().cyclic;
+    }
+
+    /**
+     * Drops the memoised closure. It will be rebuilt on next use.
+     */
+    void invalidate() {
+        version++;
+        closure = null;
+    }
+
+    void dispose() {
+        man.removeOntologyChangeListener(this);
+        aspectStore.removeListener(storeListener);
+    }
+
+    private Closure getClosure() {
+        var current = closure;
+        if (current == null) {
+            synchronized (this) {
+                current = closure;
+                if (current == null) {
+                    long builtVersion = version;
+                    current = build();
+                    if (version == builtVersion) {
+                        closure = current;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return true iff there are nested aspect assertions for the assertion of the given aspect for the given axiom
+     */
+    private boolean hasNestedAspects(OWLAxiom joinPointAxiom, OWLClass aspect) {
+        return !aspectStore.getNestedAspects(onto, joinPointAxiom, Collections.singletonList(aspect)).isEmpty();
+    }
+
+    private Closure build() {
+        Map<OWLClass, Set<OWLClass>> edges = new HashMap<>();
+        Set<OWLAxiom> joinPoints = new HashSet<>();
+        for (OWLAxiom joinPointAxiom : onto.getLogicalAxioms()) {
+            for (OWLClass aspect : aspectStore.getAssertedAspects(onto, joinPointAxiom)) {
+                if (collectNested(joinPointAxiom, Collections.singletonList(aspect), edges)) {
+                    joinPoints.add(joinPointAxiom);
+                }
+            }
+        }
+
+        // breadth-first search from every aspect yields the minimal depths; the visited set takes care of cycles
+        Map<OWLClass, Map<OWLClass, Integer>> nested = new HashMap<>();
+        Map<OWLClass, Map<OWLClass, Integer>> nesting = new HashMap<>();
+        Set<OWLClass> cyclic = new HashSet<>();
+        for (OWLClass outer : edges.keySet()) {
+            Map<OWLClass, Integer> depths = new HashMap<>();
+            Deque<OWLClass> queue = new ArrayDeque<>();
+            queue.add(outer);
+            int depth = 0;
+            while (!queue.isEmpty()) {
+                depth++;
+                for (int n = queue.size(); n > 0; n--) {
+                    for (OWLClass inner : edges.getOrDefault(queue.poll(), Collections.emptySet())) {
+                        if (depths.putIfAbsent(inner, depth) == null) {
+                            queue.add(inner);
+                        }
+                    }
+                }
+            }
+            if (depths.containsKey(outer)) {
+                cyclic.add(outer);
+            }
+            nested.put(outer, Collections.unmodifiableMap(depths));
+            depths.forEach((inner, d) -> nesting.computeIfAbsent(inner, i -> new HashMap<>()).put(outer, d));
+        }
+        nesting.replaceAll((inner, depths) -> Collections.unmodifiableMap(depths));
+        if (!cyclic.isEmpty()) {
+            log.warn("Aspects nested in themselves: {}", cyclic);
+        }
+        return new Closure(Collections.unmodifiableMap(nested), Collections.unmodifiableMap(nesting), Collections.unmodifiableSet(cyclic), joinPoints);
+    }
+
+    /**
+     * @return true iff there is any nested aspect assertion for the given aspect path
+     */
+    private boolean collectNested(OWLAxiom joinPointAxiom, List<OWLClass> aspectPath, Map<OWLClass, Set<OWLClass>> edges) {
+        OWLClass outer = aspectPath.get(aspectPath.size() - 1);
+        var innerAspects = aspectStore.getNestedAspects(onto, joinPointAxiom, aspectPath);
+        for (OWLClass inner : innerAspects) {
+            edges.computeIfAbsent(outer, o -> new HashSet<>()).add(inner);
+            List<OWLClass> innerPath = new ArrayList<>(aspectPath);
+            innerPath.add(inner);
+            collectNested(joinPointAxiom, innerPath, edges);
+        }
+        return !innerAspects.isEmpty();
+    }
+
+    @Override
+    public void ontologiesChanged(List<? extends OWLOntologyChange> changes) {
+        for (OWLOntologyChange change : changes) {
+            if (!change.isAxiomChange() || change.getOntology() != onto || !change.getAxiom().isLogicalAxiom()) {
+                continue;
+            }
+            OWLAxiom axiom = change.getAxiom();
+            // a removed join point takes its nestings along; an added axiom may come with nested aspect assertions
+            var current = closure;
+            boolean affected = change.isRemoveAxiom() && current != null
+                    ? current.joinPoints.contains(axiom)
+                    : aspectStore.getAssertedAspects(onto, axiom).stream().anyMatch(aspect -> hasNestedAspects(axiom, aspect));
+            if (affected) {
+                invalidate();
+                return;
+            }
+        }
+    }
+
+    private static final class Closure {
+
+        final Map<OWLClass, Map<OWLClass, Integer>> nested;
+
+        final Map<OWLClass, Map<OWLClass, Integer>> nesting;
+
+        final Set<OWLClass> cyclic;
+
+        /**
+         * The join point axioms of all nested aspect assertions
+         */
+        final Set<OWLAxiom> joinPoints;
+
+        Closure(Map<OWLClass, Map<OWLClass, Integer>> nested, Map<OWLClass, Map<OWLClass, Integer>> nesting, Set<OWLClass> cyclic, Set<OWLAxiom> joinPoints) {
+            this.nested = nested;
+            this.nesting = nesting;
+            this.cyclic = cyclic;
+            this.joinPoints = joinPoints;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index over the nominal (enumeration) classes of a single ontology, i.e. named classes C defined by an axiom
+ * EquivalentClasses(C, ObjectOneOf(...)). Maps each such class to its members and each member to its enumeration
+ * classes. The members of anonymous ObjectOneOf expressions used directly as built-in arguments are cached as well.
+ *
+ * Classes and their named members are stored as sorted arrays of {@link IriDictionary} ids, so a membership test is
+ * a binary search and entities are only materialized for results. Lookups do not lock; reindexing a class
+ * synchronizes on the index.
+ *
+ * @author ralph
+ */
+class NominalIndex implements OWLOntologyChangeListener {
+
+    private static final int[] NONE = new int[0];
+
+    private final OWLOntology onto;
+
+    private final OWLOntologyManager man;
+
+    private final IriDictionary individuals;
+
+    private final IriDictionary classes;
+
+    private final Map<Integer, int[]> membersByClass = new ConcurrentHashMap<>();
+
+    private final Map<Integer, int[]> classesByMember = new ConcurrentHashMap<>();
+
+    private final Map<OWLObjectOneOf, Set<OWLIndividual>> membersByExpression = new ConcurrentHashMap<>();
+
+    NominalIndex(OWLOntology onto, IriDictionary individuals, IriDictionary classes) {
+        this.onto = onto;
+        this.man = onto.getOWLOntologyManager();
+        this.individuals = individuals;
+        this.classes = classes;
+        // listen before scanning, so that enumerations changed during the scan are not lost
+        man.addOntologyChangeListener(this);
+        Set<OWLClass> enumerated = new HashSet<>();
+        for (OWLEquivalentClassesAxiom ax : onto.getAxioms(AxiomType.EQUIVALENT_CLASSES)) {
+            if (definesNominal(ax)) {
+                enumerated.addAll(ax.getNamedClasses());
+            }
+        }
+        enumerated.forEach(this::reindex);
+    }
+
+    /**
+     * @return the named members of the given enumeration class, or an empty set if it is not one
+     */
+    Set<OWLIndividual> getMembers(OWLClass cls) {
+        return toEntities(individuals, lookup(membersByClass, classes, cls));
+    }
+
+    /**
+     * @return true iff the given individual is a member of the given enumeration class
+     */
+    boolean isMember(OWLNamedIndividual individual, OWLClass cls) {
+        int id = individuals.find(individual);
+        return id >= 0 && Arrays.binarySearch(lookup(membersByClass, classes, cls), id) >= 0;
+    }
+
+    /**
+     * @return the members of the given ObjectOneOf expression
+     */
+    Set<OWLIndividual> getMembers(OWLObjectOneOf ooo) {
+        return membersByExpression.computeIfAbsent(ooo, ce -> Set.copyOf(ce.getIndividuals()));
+    }
+
+    /**
+     * @return the enumeration classes the given individual is a member of
+     */
+    Set<OWLClass> getClasses(OWLIndividual individual) {
+        return individual.isNamed() ? toEntities(classes, lookup(classesByMember, individuals, individual.asOWLNamedIndividual())) : Collections.emptySet();
+    }
+
+    void dispose() {
+        man.removeOntologyChangeListener(this);
+    }
+
+    private static int[] lookup(Map<Integer, int[]> map, IriDictionary dictionary, OWLEntity key) {
+        int id = dictionary.find(key);
+        return id < 0 ? NONE : map.getOrDefault(id, NONE);
+    }
+
+    private static <E extends OWLEntity> Set<E> toEntities(IriDictionary dictionary, int[] ids) {
+        if (ids.length == 0) {
+            return Collections.emptySet();
+        }
+        Set<E> entities = new HashSet<>(ids.length * 2);
+        for (int id : ids) {
+            entities.add(dictionary.get(id));
+        }
+        return Collections.unmodifiableSet(entities);
+    }
+
+    /**
+     * Recomputes the members of the given class from its equivalence axioms. If it is equivalent to several
+     * enumerations, its members are those of their intersection.
+     */
+    private synchronized void reindex(OWLClass cls) {
+        int classId = classes.intern(cls);
+        var oldMembers = membersByClass.remove(classId);
+        if (oldMembers != null) {
+            for (int member : oldMembers) {
+                classesByMember.computeIfPresent(member, (m, memberClasses) -> {
+                    int[] remaining = Arrays.stream(memberClasses).filter(c -> c != classId).toArray();
+                    return remaining.length == 0 ? null : remaining;
+                });
+            }
+        }
+
+        Set<OWLIndividual> members = null;
+        for (OWLEquivalentClassesAxiom ax : onto.getEquivalentClassesAxioms(cls)) {
+            for (OWLClassExpression ce : ax.getClassExpressions()) {
+                if (ce.getClassExpressionType() != ClassExpressionType.OBJECT_ONE_OF) {
+                    continue;
+                }
+                var individuals = ((OWLObjectOneOf) ce).getIndividuals();
+                if (members == null) {
+                    members = new HashSet<>(individuals);
+                } else {
+                    members.retainAll(individuals);
+                }
+            }
+        }
+        if (members == null) {
+            return;
+        }
+        int[] memberIds = members.stream().filter(OWLIndividual::isNamed).mapToInt(m -> individuals.intern(m.asOWLNamedIndividual())).sorted().toArray();
+        membersByClass.put(classId, memberIds);
+        for (int member : memberIds) {
+            classesByMember.merge(member, new int[] { classId }, (memberClasses, added) -> {
+                int[] merged = Arrays.copyOf(memberClasses, memberClasses.length + 1);
+                merged[memberClasses.length] = classId;
+                Arrays.sort(merged);
+                return merged;
+            });
+        }
+    }
+
+    private static boolean definesNominal(OWLEquivalentClassesAxiom ax) {
+        return ax.getClassExpressions().stream().anyMatch(ce -> ce.getClassExpressionType() == ClassExpressionType.OBJECT_ONE_OF);
+    }
+
+    @Override
+    public void ontologiesChanged(List<? extends OWLOntologyChange> changes) {
+        for (OWLOntologyChange change : changes) {
+            if (!change.isAxiomChange() || change.getOntology() != onto || change.getAxiom().getAxiomType() != AxiomType.EQUIVALENT_CLASSES) {
+                continue;
+            }
+            var ax = (OWLEquivalentClassesAxiom) change.getAxiom();
+            if (definesNominal(ax)) {
+                ax.getNamedClasses().forEach(this::reindex);
+            }
+        }
+    }
+}
@@ -0,0 +1,608 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Per-ontology state (indexes, caches, pending writes) of the AspectSWRL built-in library.
+ *
+ * Contexts are shared by all library instances, so rules can be evaluated by several rule engines over the same or
+ * different ontologies in parallel. The indexes can be read concurrently without locking. The built-ins serialize
+ * their writes per join point through the striped write locks of the context, so that they do not create the same
+ * entities or assertions twice. Since the OWL API ontology implementation is not thread-safe, all changes applied
+ * through the context (directly, on flush or on journal replay) are additionally serialized per ontology by its
+ * mutation lock, which is always acquired last. Changes applied to the ontology by other parties (e.g. the rule
+ * engine or the user) must not run concurrently with rule evaluation.
+ *
+ * For evaluation over an imports closure, the contexts of the imported ontologies serve as index shards: lookups fan
+ * out over the contexts of all ontologies in the closure and merge their results. Each context only listens to changes
+ * of its own ontology, so editing one module only updates that module's indexes. Shards are mostly used for their
+ * join point and aspect indexes, so the other indexes of a context are only built on first use. The told class
+ * hierarchy is the exception to sharding: since subsumption chains may cross modules, it is indexed over the whole
+ * imports closure by the context of the importing ontology.
+ *
+ * Contexts are registered until they are released explicitly ({@link #release(OWLOntology)}). Since the OWL API does
+ * not report removed ontologies, the contexts of ontologies that have been removed from their manager are evicted
+ * whenever a new context is created, so that neither the registry nor the change listeners of the indexes keep them
+ * reachable.
+ *
+ * @author ralph
+ */
+class OntologyContext {
+
+    /**
+     * Contexts by ontology identity: ontologies with the same ID in different managers (e.g. of different tenants) get
+     * contexts of their own, and an ontology keeps its context when its ID is changed
+     */
+    private static final Map<OntologyKey, OntologyContext> contexts = new ConcurrentHashMap<>();
+
+    private final OWLOntology onto;
+
+    private final OWLOntologyManager man;
+
+    private final AspectStore aspectStore;
+
+    private final JoinPointIndex joinPointIndex;
+
+    private final AspectIndex aspectIndex;
+
+    private final WriteBuffer writeBuffer = new WriteBuffer();
+
+    private final IriDictionary properties = new IriDictionary();
+
+    private final IriDictionary individuals = new IriDictionary();
+
+    private final IriDictionary classes = new IriDictionary();
+
+    private final EntityMinter entityMinter;
+
+    private final LazyIndex<TemporalIndex> temporalIndex;
+
+    private final LazyIndex<NominalIndex> nominalIndex;
+
+    private final LazyIndex<NestingIndex> nestingIndex;
+
+    private final LazyIndex<HierarchyIndex> hierarchyIndex;
+
+    private final LazyIndex<HierarchyIndex> closureHierarchyIndex;
+
+    private final StripedLocks writeLocks = new StripedLocks();
+
+    /**
+     * Serializes all changes of the ontology (and of its aspect assertions) applied through this context
+     */
+    private final Lock mutationLock = new ReentrantLock();
+
+    /**
+     * Contexts of the ontologies in the imports closure (this one first), or null if they have to be looked up again
+     */
+    private volatile List<OntologyContext> importsClosure;
+
+    private volatile ChangeJournal journal;
+
+    private volatile boolean bufferedWrites = false;
+
+    private volatile Imports imports = Imports.INCLUDED;
+
+    private volatile boolean disposed = false;
+
+    private final OWLOntologyChangeListener importsListener = changes -> {
+        // an import change anywhere may change the transitive imports of this ontology
+        if (changes.stream().anyMatch(OWLOntologyChange::isImportChange)) {
+            importsClosure = null;
+        }
+    };
+
+    /**
+     * @return the context of the given ontology, creating it on first access
+     */
+    static OntologyContext get(OWLOntology onto) {
+        var key = new OntologyKey(onto);
+        var context = contexts.get(key);
+        if (context == null) {
+            evictRemoved();
+            context = contexts.computeIfAbsent(key, k -> new OntologyContext(onto));
+        }
+        return context;
+    }
+
+    /**
+     * @return the context of the given ontology, or null if it has none
+     */
+    static OntologyContext find(OWLOntology onto) {
+        return contexts.get(new OntologyKey(onto));
+    }
+
+    /**
+     * Disposes the context of the given ontology, if any.
+     */
+    static void release(OWLOntology onto) {
+        var context = contexts.remove(new OntologyKey(onto));
+        if (context != null) {
+            context.dispose();
+            // it may be a shard of other contexts
+            contexts.values().forEach(other -> other.importsClosure = null);
+        }
+    }
+
+    /**
+     * Disposes the contexts of all ontologies that have been removed from their manager, and has their aspect stores
+     * drop their aspect assertions.
+     */
+    static void evictRemoved() {
+        boolean evicted = false;
+        for (OntologyContext context : contexts.values()) {
+            if (context.isRemoved() && contexts.remove(new OntologyKey(context.onto), context)) {
+                context.dispose();
+                context.aspectStore.ontologyRemoved(context.onto);
+                evicted = true;
+            }
+        }
+        if (evicted) {
+            contexts.values().forEach(other -> other.importsClosure = null);
+        }
+    }
+
+    private OntologyContext(OWLOntology onto) {
+        this.onto = onto;
+        this.man = onto.getOWLOntologyManager();
+        this.aspectStore = AspectManagerProviders.getAspectStore(man);
+        this.joinPointIndex = new JoinPointIndex(onto);
+        this.aspectIndex = new AspectIndex(onto, aspectStore, joinPointIndex, properties, individuals, classes);
+        this.entityMinter = new EntityMinter(onto, this::containsAxiom);
+        this.temporalIndex = new LazyIndex<>(() -> new TemporalIndex(onto), TemporalIndex::dispose);
+        this.nominalIndex = new LazyIndex<>(() -> new NominalIndex(onto, individuals, classes), NominalIndex::dispose);
+        this.nestingIndex = new LazyIndex<>(() -> new NestingIndex(onto, aspectStore), NestingIndex::dispose);
+        this.hierarchyIndex = new LazyIndex<>(() -> new HierarchyIndex(onto, Imports.EXCLUDED), HierarchyIndex::dispose);
+        this.closureHierarchyIndex = new LazyIndex<>(() -> new HierarchyIndex(onto, Imports.INCLUDED), HierarchyIndex::dispose);
+        man.addOntologyChangeListener(importsListener);
+    }
+
+    OWLOntology getOntology() {
+        return onto;
+    }
+
+    /**
+     * @return true iff the ontology is no longer managed by the manager it had when the context was created
+     */
+    private boolean isRemoved() {
+        return onto.getOWLOntologyManager() != man || man.getOntology(onto.getOntologyID()) != onto;
+    }
+
+    /**
+     * @return true iff the context has been released or evicted; its indexes no longer follow ontology changes
+     */
+    boolean isDisposed() {
+        return disposed;
+    }
+
+    AspectStore getAspectStore() {
+        return aspectStore;
+    }
+
+    JoinPointIndex getJoinPointIndex() {
+        return joinPointIndex;
+    }
+
+    AspectIndex getAspectIndex() {
+        return aspectIndex;
+    }
+
+    EntityMinter getEntityMinter() {
+        return entityMinter;
+    }
+
+    TemporalIndex getTemporalIndex() {
+        return temporalIndex.get();
+    }
+
+    NominalIndex getNominalIndex() {
+        return nominalIndex.get();
+    }
+
+    NestingIndex getNestingIndex() {
+        return nestingIndex.get();
+    }
+
+    /**
+     * @return the told class hierarchy of the ontology, or of its imports closure if imports are included
+     */
+    HierarchyIndex getHierarchyIndex(Imports imports) {
+        return (imports == Imports.INCLUDED ? closureHierarchyIndex : hierarchyIndex).get();
+    }
+
+    /**
+     * Merges the given SubClassOf or EquivalentClasses axiom into the class hierarchies ahead of it being added to the
+     * ontology: into the one for the current imports setting, and into the other one if it has been built.
+     */
+    void addHierarchyAxiom(OWLClassAxiom axiom) {
+        getHierarchyIndex(imports).addAxiom(axiom);
+        var other = (imports == Imports.INCLUDED ? hierarchyIndex : closureHierarchyIndex).getIfBuilt();
+        if (other != null) {
+            other.addAxiom(axiom);
+        }
+    }
+
+    /**
+     * Switches buffered write mode on or off. Switching it off applies all pending writes.
+     */
+    void setBufferedWrites(boolean bufferedWrites) {
+        boolean wasBuffered = this.bufferedWrites;
+        this.bufferedWrites = bufferedWrites;
+        if (wasBuffered && !bufferedWrites) {
+            flush();
+        }
+    }
+
+    boolean isBufferedWrites() {
+        return bufferedWrites;
+    }
+
+    /**
+     * Sets whether the built-ins evaluate lookups against the imports closure of the ontology or only against the
+     * ontology itself.
+     */
+    void setImports(Imports imports) {
+        this.imports = imports;
+    }
+
+    Imports getImports() {
+        return imports;
+    }
+
+    /**
+     * @return true iff the given axiom is asserted in the ontology or pending in the write buffer
+     */
+    boolean containsAxiom(OWLAxiom axiom) {
+        return onto.containsAxiom(axiom) || writeBuffer.containsAxiom(axiom);
+    }
+
+    /**
+     * @return the lock serializing writes concerning the given key (e.g. a {@link JoinPointKey})
+     */
+    Lock getWriteLock(Object key) {
+        return writeLocks.get(key);
+    }
+
+    /**
+     * @return the asserted or pending axiom op(i1, i2) or null if there is none
+     */
+    OWLObjectPropertyAssertionAxiom getObjectPropertyAssertion(OWLObjectPropertyExpression op, OWLIndividual i1, OWLIndividual i2) {
+        var axiom = joinPointIndex.getObjectPropertyAssertion(op, i1, i2);
+        return axiom != null ? axiom : writeBuffer.getObjectPropertyAssertion(op, i1, i2);
+    }
+
+    /**
+     * @return the asserted or pending axiom ¬op(i1, i2) or null if there is none
+     */
+    OWLNegativeObjectPropertyAssertionAxiom getNegativeObjectPropertyAssertion(OWLObjectPropertyExpression op, OWLIndividual i1, OWLIndividual i2) {
+        var axiom = joinPointIndex.getNegativeObjectPropertyAssertion(op, i1, i2);
+        return axiom != null ? axiom : writeBuffer.getNegativeObjectPropertyAssertion(op, i1, i2);
+    }
+
+    /**
+     * @return the contexts to evaluate lookups against: only this one if imports are excluded, otherwise those of all
+     * ontologies in the imports closure, starting with this one
+     */
+    List<OntologyContext> getShards(Imports imports) {
+        if (imports == Imports.EXCLUDED) {
+            return Collections.singletonList(this);
+        }
+        var closure = importsClosure;
+        if (closure == null) {
+            List<OntologyContext> shards = new ArrayList<>();
+            shards.add(this);
+            for (OWLOntology imported : onto.getImportsClosure()) {
+                if (imported != onto) {
+                    shards.add(get(imported));
+                }
+            }
+            closure = Collections.unmodifiableList(shards);
+            importsClosure = closure;
+        }
+        return closure;
+    }
+
+    /**
+     * @return the asserted or pending axiom op(i1, i2) of the first shard having one, or null if there is none
+     */
+    OWLObjectPropertyAssertionAxiom getObjectPropertyAssertion(OWLObjectPropertyExpression op, OWLIndividual i1, OWLIndividual i2, Imports imports) {
+        for (OntologyContext shard : getShards(imports)) {
+            var axiom = shard.getObjectPropertyAssertion(op, i1, i2);
+            if (axiom != null) {
+                return axiom;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the asserted or pending axiom ¬op(i1, i2) of the first shard having one, or null if there is none
+     */
+    OWLNegativeObjectPropertyAssertionAxiom getNegativeObjectPropertyAssertion(OWLObjectPropertyExpression op, OWLIndividual i1, OWLIndividual i2, Imports imports) {
+        for (OntologyContext shard : getShards(imports)) {
+            var axiom = shard.getNegativeObjectPropertyAssertion(op, i1, i2);
+            if (axiom != null) {
+                return axiom;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the named aspects asserted or pending for the given join point axiom in any shard
+     */
+    Set<OWLClass> getAspects(OWLAxiom joinPointAxiom, Imports imports) {
+        var shards = getShards(imports);
+        if (shards.size() == 1) {
+            return getAspects(joinPointAxiom);
+        }
+        Set<OWLClass> aspects = new HashSet<>();
+        shards.forEach(shard -> aspects.addAll(shard.getAspects(joinPointAxiom)));
+        return aspects;
+    }
+
+    /**
+     * @return true iff the given aspect is asserted or pending for the given join point axiom in any shard
+     */
+    boolean hasAspect(OWLAxiom joinPointAxiom, OWLClass aspect, Imports imports) {
+        for (OntologyContext shard : getShards(imports)) {
+            if (shard.aspectIndex.hasAspect(joinPointAxiom, aspect) || shard.writeBuffer.getAspects(joinPointAxiom).contains(aspect)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the join point axioms for which the given aspect is asserted or pending in any shard
+     */
+    Set<OWLAxiom> getJoinPoints(OWLClass aspect, Imports imports) {
+        var shards = getShards(imports);
+        if (shards.size() == 1) {
+            return getJoinPoints(aspect);
+        }
+        Set<OWLAxiom> joinPoints = new HashSet<>();
+        shards.forEach(shard -> joinPoints.addAll(shard.getJoinPoints(aspect)));
+        return joinPoints;
+    }
+
+    /**
+     * @return the aspects asserted for the given join point axiom in this shard, overlaid with the pending ones, which
+     * the aspect index does not know of if the aspect store is queried directly
+     */
+    private Set<OWLClass> getAspects(OWLAxiom joinPointAxiom) {
+        var asserted = aspectIndex.getAspects(joinPointAxiom);
+        var pending = writeBuffer.getAspects(joinPointAxiom);
+        if (pending.isEmpty()) {
+            return asserted;
+        }
+        Set<OWLClass> aspects = new HashSet<>(asserted);
+        aspects.addAll(pending);
+        return aspects;
+    }
+
+    /**
+     * @return the join point axioms of the given aspect in this shard, overlaid with the pending ones
+     */
+    private Set<OWLAxiom> getJoinPoints(OWLClass aspect) {
+        var asserted = aspectIndex.getJoinPoints(aspect);
+        var pending = writeBuffer.getJoinPoints(aspect);
+        if (pending.isEmpty()) {
+            return asserted;
+        }
+        Set<OWLAxiom> joinPoints = new HashSet<>(asserted);
+        joinPoints.addAll(pending);
+        return joinPoints;
+    }
+
+    /**
+     * Drops all cached aspect assertions, so that they are reloaded from the aspect store.
+     */
+    void invalidateAspects() {
+        aspectIndex.invalidate();
+        var nesting = nestingIndex.getIfBuilt();
+        if (nesting != null) {
+            nesting.invalidate();
+        }
+    }
+
+    /**
+     * Attaches the journal the changes applied through this context are appended to (null to detach it).
+     */
+    void setJournal(ChangeJournal journal) {
+        this.journal = journal;
+    }
+
+    ChangeJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Applies the given changes to the ontology, or queues them if buffered is true.
+     */
+    void applyChanges(List<OWLAxiomChange> changes, boolean buffered) {
+        if (buffered) {
+            writeBuffer.addChanges(changes);
+        } else {
+            mutationLock.lock();
+            try {
+                man.applyChanges(changes);
+                var journal = this.journal;
+                if (journal != null) {
+                    journal.append(changes);
+                }
+            } finally {
+                mutationLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Asserts the given aspect for the given join point axiom, or queues the assertion if buffered is true. Either
+     * way, the assertion is visible through the lookups of the context right away.
+     */
+    void addAspect(OWLAxiom joinPointAxiom, OWLClass aspectClass, boolean buffered) {
+        if (buffered) {
+            writeBuffer.addAspect(joinPointAxiom, aspectClass);
+        } else {
+            mutationLock.lock();
+            try {
+                aspectStore.addAspect(onto, joinPointAxiom, aspectClass);
+                var journal = this.journal;
+                if (journal != null) {
+                    journal.appendAspect(joinPointAxiom, aspectClass);
+                }
+            } finally {
+                mutationLock.unlock();
+            }
+        }
+        aspectIndex.addAspect(joinPointAxiom, aspectClass);
+    }
+
+    /**
+     * Applies the given changes and asserts the given aspects (join point axiom → aspect) as one batch, bypassing the
+     * write buffer, so that writes pending in it stay pending.
+     */
+    void applyBatch(List<OWLAxiomChange> changes, Map<? extends OWLAxiom, OWLClass> aspects) {
+        var journal = this.journal;
+        mutationLock.lock();
+        try {
+            if (!changes.isEmpty()) {
+                man.applyChanges(changes);
+                if (journal != null) {
+                    journal.append(changes);
+                }
+            }
+            aspects.forEach((joinPointAxiom, aspectClass) -> {
+                aspectStore.addAspect(onto, joinPointAxiom, aspectClass);
+                if (journal != null) {
+                    journal.appendAspect(joinPointAxiom, aspectClass);
+                }
+            });
+        } finally {
+            mutationLock.unlock();
+        }
+        aspectIndex.addAspects(aspects);
+    }
+
+    /**
+     * Applies all pending changes as a single batch, followed by the pending aspect assertions.
+     */
+    void flush() {
+        synchronized (writeBuffer) {
+            if (writeBuffer.isEmpty()) {
+                return;
+            }
+            var journal = this.journal;
+            mutationLock.lock();
+            try {
+                man.applyChanges(writeBuffer.getChanges());
+                if (journal != null) {
+                    journal.append(writeBuffer.getChanges());
+                }
+                writeBuffer.getAspects().forEach((joinPointAxiom, aspectClasses) -> aspectClasses.forEach(aspectClass -> {
+                    aspectStore.addAspect(onto, joinPointAxiom, aspectClass);
+                    // the join point axiom may just have been added, which invalidated its entry
+                    aspectIndex.addAspect(joinPointAxiom, aspectClass);
+                    if (journal != null) {
+                        journal.appendAspect(joinPointAxiom, aspectClass);
+                    }
+                }));
+            } finally {
+                mutationLock.unlock();
+            }
+            writeBuffer.clear();
+        }
+    }
+
+    void dispose() {
+        disposed = true;
+        man.removeOntologyChangeListener(importsListener);
+        closureHierarchyIndex.dispose();
+        hierarchyIndex.dispose();
+        nestingIndex.dispose();
+        nominalIndex.dispose();
+        temporalIndex.dispose();
+        aspectIndex.dispose();
+        joinPointIndex.dispose();
+    }
+
+    /**
+     * Index of the context that is built on first use.
+     */
+    private final class LazyIndex<T> {
+
+        private final Supplier<T> factory;
+
+        private final Consumer<T> disposer;
+
+        private volatile T index;
+
+        LazyIndex(Supplier<T> factory, Consumer<T> disposer) {
+            this.factory = factory;
+            this.disposer = disposer;
+        }
+
+        T get() {
+            var current = index;
+            if (current == null) {
+                synchronized (this) {
+                    current = index;
+                    if (current == null) {
+                        current = factory.get();
+                        if (disposed) {
+                            // answer the query at hand, but do not keep listening to the ontology
+                            disposer.accept(current);
+                        } else {
+                            index = current;
+                        }
+                    }
+                }
+            }
+            return current;
+        }
+
+        /**
+         * @return the index, or null if it has not been built
+         */
+        T getIfBuilt() {
+            return index;
+        }
+
+        synchronized void dispose() {
+            if (index != null) {
+                disposer.accept(index);
+            }
+        }
+    }
+
+    /**
+     * Registry key comparing ontologies by identity
+     */
+    private static final class OntologyKey {
+
+        private final OWLOntology onto;
+
+        OntologyKey(OWLOntology onto) {
+            this.onto = onto;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(onto);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof OntologyKey && ((OntologyKey) o).onto == onto;
+        }
+    }
+}
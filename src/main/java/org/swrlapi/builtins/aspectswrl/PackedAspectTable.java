@@ -0,0 +1,414 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Map from object property assertions op(s, o) between named individuals to the ids of their aspects. Properties,
+ * individuals and aspects are interned in a dictionary each, so that every kind has its own dense id space and the
+ * few properties of an ontology get small ids however many individuals it has. Assertions are keyed by their triple,
+ * regardless of axiom annotations.
+ *
+ * The ids are packed into a single long key (16 bits for the property, 24 bits each for subject and object) of an
+ * open addressing hash table, so an entry costs a long and a (usually tiny) int array instead of an axiom, a set and
+ * the map entries referencing them. Triples whose ids do not fit are kept in a concurrent map.
+ *
+ * Updates hold the write lock of a {@link StampedLock}. Lookups do not lock: they probe the slots optimistically and
+ * only take the read lock if an update interfered, which they detect by validating the stamp afterwards.
+ *
+ * @author ralph
+ */
+class PackedAspectTable {
+
+    static final int[] NO_ASPECTS = new int[0];
+
+    private static final int PROPERTY_BITS = 16;
+
+    private static final int INDIVIDUAL_BITS = 24;
+
+    private static final float MAX_LOAD = 0.6f;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Replaced as a whole on resize, so that an optimistic lookup always probes keys and values of the same capacity
+     */
+    private Slots slots = new Slots(INITIAL_CAPACITY);
+
+    private int size = 0;
+
+    private final Map<List<Integer>, int[]> overflow = new ConcurrentHashMap<>();
+
+    private final StampedLock lock = new StampedLock();
+
+    private final IriDictionary properties;
+
+    private final IriDictionary individuals;
+
+    private final IriDictionary aspects;
+
+    PackedAspectTable(IriDictionary properties, IriDictionary individuals, IriDictionary aspects) {
+        this.properties = properties;
+        this.individuals = individuals;
+        this.aspects = aspects;
+    }
+
+    /**
+     * @return true iff the given axiom is an object property assertion the table can hold
+     */
+    static boolean isPackable(OWLAxiom axiom) {
+        if (axiom.getAxiomType() != AxiomType.OBJECT_PROPERTY_ASSERTION) {
+            return false;
+        }
+        var ax = (OWLObjectPropertyAssertionAxiom) axiom;
+        return !ax.getProperty().isAnonymous() && ax.getSubject().isNamed() && ax.getObject().isNamed();
+    }
+
+    /**
+     * @return the aspect ids of the given (packable) assertion, or null if there is no entry for it
+     */
+    int[] get(OWLAxiom joinPointAxiom) {
+        var ax = (OWLObjectPropertyAssertionAxiom) joinPointAxiom;
+        int property = properties.find(ax.getProperty().asOWLObjectProperty());
+        int subject = individuals.find(ax.getSubject().asOWLNamedIndividual());
+        int object = individuals.find(ax.getObject().asOWLNamedIndividual());
+        return property < 0 || subject < 0 || object < 0 ? null : get(property, subject, object);
+    }
+
+    /**
+     * Sets the aspect ids of the given (packable) assertion. The array must not be modified afterwards.
+     */
+    void put(OWLAxiom joinPointAxiom, int[] aspects) {
+        var ax = (OWLObjectPropertyAssertionAxiom) joinPointAxiom;
+        put(properties.intern(ax.getProperty().asOWLObjectProperty()), individuals.intern(ax.getSubject().asOWLNamedIndividual()), individuals.intern(ax.getObject().asOWLNamedIndividual()), aspects);
+    }
+
+    /**
+     * Adds the given aspect to those of the given (packable) assertion.
+     *
+     * @return true iff the aspect was not among them before
+     */
+    boolean add(OWLAxiom joinPointAxiom, OWLClass aspect) {
+        var ax = (OWLObjectPropertyAssertionAxiom) joinPointAxiom;
+        return add(properties.intern(ax.getProperty().asOWLObjectProperty()), individuals.intern(ax.getSubject().asOWLNamedIndividual()), individuals.intern(ax.getObject().asOWLNamedIndividual()), aspects.intern(aspect));
+    }
+
+    /**
+     * @return the removed aspect ids of the given (packable) assertion, or null if there was no entry for it
+     */
+    int[] remove(OWLAxiom joinPointAxiom) {
+        var ax = (OWLObjectPropertyAssertionAxiom) joinPointAxiom;
+        int property = properties.find(ax.getProperty().asOWLObjectProperty());
+        int subject = individuals.find(ax.getSubject().asOWLNamedIndividual());
+        int object = individuals.find(ax.getObject().asOWLNamedIndividual());
+        return property < 0 || subject < 0 || object < 0 ? null : remove(property, subject, object);
+    }
+
+    /**
+     * @return the ids of the given aspects
+     */
+    int[] toIds(Set<OWLClass> classes) {
+        if (classes.isEmpty()) {
+            return NO_ASPECTS;
+        }
+        int[] ids = new int[classes.size()];
+        int i = 0;
+        for (OWLClass aspect : classes) {
+            ids[i++] = aspects.intern(aspect);
+        }
+        return ids;
+    }
+
+    /**
+     * @return the aspects with the given ids
+     */
+    Set<OWLClass> toClasses(int[] ids) {
+        if (ids.length == 0) {
+            return Collections.emptySet();
+        }
+        if (ids.length == 1) {
+            return Collections.singleton(aspects.get(ids[0]));
+        }
+        Set<OWLClass> classes = new HashSet<>(ids.length * 2);
+        for (int id : ids) {
+            classes.add(aspects.get(id));
+        }
+        return Collections.unmodifiableSet(classes);
+    }
+
+    /**
+     * @return the id of the given aspect, or -1 if it has none (and thus is not in the table)
+     */
+    int findAspect(OWLClass aspect) {
+        return aspects.find(aspect);
+    }
+
+    int internAspect(OWLClass aspect) {
+        return aspects.intern(aspect);
+    }
+
+    /**
+     * @return the aspect ids of op(s, o), or null if there is no entry for it
+     */
+    int[] get(int property, int subject, int object) {
+        if (!fits(property, subject, object)) {
+            return overflow.get(List.of(property, subject, object));
+        }
+        long key = pack(property, subject, object);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int[] aspects = find(slots, key);
+            if (lock.validate(stamp)) {
+                return aspects;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return find(slots, key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Sets the aspect ids of op(s, o). The array must not be modified afterwards.
+     */
+    void put(int property, int subject, int object, int[] aspects) {
+        long stamp = lock.writeLock();
+        try {
+            store(property, subject, object, aspects);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds the given aspect id to those of op(s, o).
+     *
+     * @return true iff the id was not among them before
+     */
+    boolean add(int property, int subject, int object, int aspect) {
+        long stamp = lock.writeLock();
+        try {
+            int[] aspects = fits(property, subject, object) ? find(slots, pack(property, subject, object)) : overflow.get(List.of(property, subject, object));
+            int[] added = with(aspects != null ? aspects : NO_ASPECTS, aspect);
+            if (added == aspects) {
+                return false;
+            }
+            store(property, subject, object, added);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the removed aspect ids of op(s, o), or null if there was no entry for it
+     */
+    int[] remove(int property, int subject, int object) {
+        long stamp = lock.writeLock();
+        try {
+            if (!fits(property, subject, object)) {
+                return overflow.remove(List.of(property, subject, object));
+            }
+            long[] keys = slots.keys;
+            int[][] values = slots.values;
+            int mask = keys.length - 1;
+            int i = slot(slots, pack(property, subject, object));
+            if (i < 0) {
+                return null;
+            }
+            int[] removed = values[i];
+            size--;
+            // backward shift deletion: move entries up that would otherwise not be found anymore
+            int j = i;
+            while (true) {
+                values[i] = null;
+                int home;
+                do {
+                    j = (j + 1) & mask;
+                    if (values[j] == null) {
+                        return removed;
+                    }
+                    home = home(keys[j], mask);
+                } while (i <= j ? i < home && home <= j : i < home || home <= j);
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void clear() {
+        long stamp = lock.writeLock();
+        try {
+            slots = new Slots(INITIAL_CAPACITY);
+            size = 0;
+            overflow.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the number of assertions in the table
+     */
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size + overflow.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the number of assertions whose ids do not fit into a packed key
+     */
+    int overflowSize() {
+        return overflow.size();
+    }
+
+    /**
+     * @return the given ids with the given id appended, or the given ids if they already contain it
+     */
+    static int[] with(int[] ids, int id) {
+        for (int existing : ids) {
+            if (existing == id) {
+                return ids;
+            }
+        }
+        int[] result = Arrays.copyOf(ids, ids.length + 1);
+        result[ids.length] = id;
+        return result;
+    }
+
+    /**
+     * @return true iff the given ids contain the given id
+     */
+    static boolean contains(int[] ids, int id) {
+        for (int existing : ids) {
+            if (existing == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the aspect ids of op(s, o). Must be called holding the write lock.
+     */
+    private void store(int property, int subject, int object, int[] aspects) {
+        if (!fits(property, subject, object)) {
+            overflow.put(List.of(property, subject, object), aspects);
+            return;
+        }
+        if (size + 1 > slots.keys.length * MAX_LOAD) {
+            resize(slots.keys.length * 2);
+        }
+        long key = pack(property, subject, object);
+        long[] keys = slots.keys;
+        int[][] values = slots.values;
+        int mask = keys.length - 1;
+        int i = home(key, mask);
+        while (values[i] != null && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (values[i] == null) {
+            size++;
+        }
+        keys[i] = key;
+        values[i] = aspects;
+    }
+
+    /**
+     * @return the slot of the given key, or -1 if it is not in the table. Must be called holding a lock.
+     */
+    private static int slot(Slots slots, long key) {
+        long[] keys = slots.keys;
+        int[][] values = slots.values;
+        int mask = keys.length - 1;
+        for (int i = home(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the aspect ids of the given key, or null if it is not in the table. Safe to call without a lock as long
+     * as the result is only used once the stamp has been validated: the probe is bounded by the capacity, so it ends
+     * even if an update rearranges the slots meanwhile.
+     */
+    private static int[] find(Slots slots, long key) {
+        long[] keys = slots.keys;
+        int[][] values = slots.values;
+        int mask = keys.length - 1;
+        int i = home(key, mask);
+        for (int probes = 0; probes <= mask; probes++) {
+            int[] aspects = values[i];
+            if (aspects == null) {
+                return null;
+            }
+            if (keys[i] == key) {
+                return aspects;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = slots.keys;
+        int[][] oldValues = slots.values;
+        Slots resized = new Slots(capacity);
+        long[] keys = resized.keys;
+        int[][] values = resized.values;
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != null) {
+                int i = home(oldKeys[j], mask);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+        slots = resized;
+    }
+
+    private static boolean fits(int property, int subject, int object) {
+        return property >>> PROPERTY_BITS == 0 && subject >>> INDIVIDUAL_BITS == 0 && object >>> INDIVIDUAL_BITS == 0;
+    }
+
+    private static long pack(int property, int subject, int object) {
+        return ((long) property << (2 * INDIVIDUAL_BITS)) | ((long) subject << INDIVIDUAL_BITS) | object;
+    }
+
+    private static int home(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Keys and aspect ids per slot; a null aspect array marks an empty slot
+     */
+    private static final class Slots {
+
+        private final long[] keys;
+
+        private final int[][] values;
+
+        Slots(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new int[capacity][];
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import xyz.aspectowl.protege.AspectOWLEditorKitHook;
+
+/**
+ * Provides the aspect manager of the AspectOWL Protégé plugin. Only available if the plugin is on the class path,
+ * and only serves ontology managers for which the plugin has set up an aspect manager.
+ *
+ * @author ralph
+ */
+public class ProtegeAspectManagerProvider implements AspectManagerProvider {
+
+    private static final String HOOK_CLASS_NAME = "xyz.aspectowl.protege.AspectOWLEditorKitHook";
+
+    @Override
+    public boolean isAvailable() {
+        try {
+            Class.forName(HOOK_CLASS_NAME, false, ProtegeAspectManagerProvider.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @Override
+    public int getPriority() {
+        return 100;
+    }
+
+    @Override
+    public AspectStore getAspectStore(OWLOntologyManager man) {
+        var aspectManager = AspectOWLEditorKitHook.getAspectManager(man);
+        return aspectManager == null ? null : new AspectOWLAspectStore(aspectManager);
+    }
+
+    @Override
+    public String toString() {
+        return "protege";
+    }
+}
@@ -1,22 +1,22 @@
 package org.swrlapi.builtins.aspectswrl;
 
 import org.semanticweb.owlapi.model.parameters.Imports;
-import xyz.aspectowl.owlapi.model.OWLAspectAssertionAxiom;
-import xyz.aspectowl.owlapi.model.AspectOWLJoinPointAxiomPointcut;
-import xyz.aspectowl.owlapi.model.OWLAspectManager;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.semanticweb.owlapi.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.swrlapi.bridge.SWRLBuiltInBridge;
 import org.swrlapi.builtins.AbstractSWRLBuiltInLibrary;
 import org.swrlapi.builtins.arguments.SWRLBuiltInArgument;
 import org.swrlapi.builtins.arguments.SWRLBuiltInArgumentType;
 import org.swrlapi.builtins.arguments.SWRLMultiValueVariableBuiltInArgument;
 import org.swrlapi.exceptions.SWRLBuiltInException;
 import org.swrlapi.exceptions.SWRLBuiltInLibraryException;
-import xyz.aspectowl.protege.AspectOWLEditorKitHook;
 
+import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 
 import static org.swrlapi.builtins.arguments.SWRLBuiltInArgumentType.*;
 
@@ -33,13 +33,74 @@ public class SWRLBuiltInLibraryImpl extends AbstractSWRLBuiltInLibrary {
 
     public static final String NAMESPACE = "https://ontology.aspectowl.xyz/built-ins/5.2.0/AspectSWRLBuiltinsLibrary.owl#";
 
-    private static final String[] BUILT_IN_NAMES = { "ooo", "opa", "createOPA", "temporal", "deontic" };
+    private static final String[] BUILT_IN_NAMES = { "ooo", "opa", "aspectOPA", "createOPA", "createNegativeOPA", "temporal", "temporalContains", "temporalBetween", "deontic", "nest", "opaSub" };
 
+    /**
+     * The contexts of the ontologies this library instance has worked on. The contexts themselves are shared by all
+     * library instances (see {@link OntologyContext#get(OWLOntology)}).
+     */
+    private final Set<OntologyContext> contexts = ConcurrentHashMap.newKeySet();
+
+    private final BuiltInMetrics metrics = BuiltInMetrics.getInstance();
+
+    /**
+     * Metrics recorder of the built-in currently being invoked on this thread
+     */
+    private final ThreadLocal<BuiltInMetrics.Recorder> currentRecorder = new ThreadLocal<>();
 
     public SWRLBuiltInLibraryImpl() {
         super(PREFIX, NAMESPACE, new HashSet<>(Arrays.asList(BUILT_IN_NAMES)));
     }
 
+    /**
+     * Records invocation count, outcome and latency of every built-in invocation, tagged by built-in and rule name,
+     * in {@link BuiltInMetrics}.
+     */
+    @Override
+    public boolean invokeBuiltInMethod(@NonNull Method method, @NonNull SWRLBuiltInBridge bridge, @NonNull String ruleName, @NonNull String prefix, @NonNull String builtInMethodName, int builtInIndex, boolean isInConsequent, @NonNull List<@NonNull SWRLBuiltInArgument> arguments) throws SWRLBuiltInLibraryException, SWRLBuiltInException {
+        if (!metrics.isEnabled()) {
+            return super.invokeBuiltInMethod(method, bridge, ruleName, prefix, builtInMethodName, builtInIndex, isInConsequent, arguments);
+        }
+        BuiltInMetrics.Recorder recorder = metrics.getRecorder(builtInMethodName, ruleName);
+        currentRecorder.set(recorder);
+        long start = System.nanoTime();
+        try {
+            boolean result = super.invokeBuiltInMethod(method, bridge, ruleName, prefix, builtInMethodName, builtInIndex, isInConsequent, arguments);
+            recorder.invoked(System.nanoTime() - start, result);
+            return result;
+        } catch (Exception e) {
+            recorder.failed(System.nanoTime() - start);
+            log.debug("Built-in {}:{} failed in rule {}", prefix, builtInMethodName, ruleName, e);
+            throw e;
+        } finally {
+            currentRecorder.remove();
+        }
+    }
+
+    /**
+     * @return the JVM-wide metrics of the AspectSWRL built-ins
+     */
+    public BuiltInMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the number of createOPA, createNegativeOPA and temporal invocations (and bulk createOPA assertions) on
+     * the ontologies of this library instance that have been skipped because they had already been carried out
+     */
+    public long getSuppressedDuplicateCount() {
+        contexts.removeIf(OntologyContext::isDisposed);
+        return contexts.stream().mapToLong(context -> context.getEntityMinter().getSuppressedDuplicates()).sum();
+    }
+
+    /**
+     * Applies all writes queued in buffered write mode, as one batch of changes per ontology.
+     */
+    public void flush() {
+        contexts.removeIf(OntologyContext::isDisposed);
+        contexts.forEach(OntologyContext::flush);
+    }
+
     /**
      * Satisfied iff the first argument is an OWL object property r, the second argument is an individual i1, the
      * third argument is an individual i2 connected to i1 by r, and the fourth argument is an AspectOWL aspect name, in
@@ -72,48 +133,190 @@ public class SWRLBuiltInLibraryImpl extends AbstractSWRLBuiltInLibrary {
 
         OWLOntology onto = getBuiltInBridge().getOWLOntology();
 
-        var axiomOptional = onto.getObjectPropertyAssertionAxioms(i1).stream().filter(ax -> ax.getProperty().equals(op) && ax.getObject().equals(i2)).findFirst();
-        if (!axiomOptional.isPresent()) {
+        // the OPA axiom
+        OntologyContext context = getContext(onto);
+        OWLObjectPropertyAssertionAxiom joinPointAxiom = context.getObjectPropertyAssertion(op, i1, i2, context.getImports());
+        if (joinPointAxiom == null) {
             // this axiom does not exist, so there cannot be a contextualized version of it.
             return false;
         }
 
-        // the OPA axiom
-        OWLObjectPropertyAssertionAxiom joinPointAxiom = axiomOptional.get();
-
-        OWLAspectManager aspectManager = AspectOWLEditorKitHook.getAspectManager(onto.getOWLOntologyManager());
-
         if (aspectArg.isVariable() && aspectArg.asVariable().isUnbound()) {
             // aspect variable is unbound, we have to find all aspects for the given axiom
+            Set<OWLClass> aspects = context.getAspects(joinPointAxiom, context.getImports());
 
             final Map<@NonNull Integer, @NonNull SWRLMultiValueVariableBuiltInArgument> outputMultiValueArguments = createOutputMultiValueArguments(arguments);
 
-            aspectManager.getAssertedAspects(onto, joinPointAxiom).stream().filter(aspect -> !aspect.isAnonymous()).forEach(aspect -> outputMultiValueArguments.get(0).addArgument(createClassBuiltInArgument(aspect.asClassExpression().asOWLClass())));
+            aspects.forEach(aspect -> outputMultiValueArguments.get(0).addArgument(createClassBuiltInArgument(aspect)));
 
-            return processResultMultiValueArguments(arguments, outputMultiValueArguments);
+            return bindMultiValueResults(arguments, outputMultiValueArguments);
         } else {
             // aspect is given (directly or via bound variable), we just have to check if the given axiom has the given aspect
             final OWLClass aspect = getOWLClass(arguments, 1);
 
-            return aspectManager.getAssertedAspects(onto, joinPointAxiom).stream().anyMatch(as -> as.asClassExpression().equals(aspect));
+            return context.hasAspect(joinPointAxiom, aspect, context.getImports());
+        }
+    }
+
+    /**
+     * Hierarchy-aware variant of {@link #opa(List)}: satisfied iff the object property assertion r(i1, i2) given by
+     * the second to fourth argument holds in the aspect A given as the first argument or in any told sub-aspect of A
+     * (by SubClassOf and EquivalentClasses axioms, including the definitions written by {@link #temporal(List)}).
+     *
+     * If the aspect variable is unbound, all aspects the OPA holds in, together with their named told super-aspects,
+     * will be bound to it as a multi-value argument.
+     *
+     * Subsumption is answered from the told hierarchy index without invoking a reasoner. Unless imports are excluded,
+     * the hierarchy comprises the SubClassOf and EquivalentClasses axioms of the whole imports closure.
+     *
+     * @param arguments
+     * @return
+     * @throws SWRLBuiltInException
+     */
+    public boolean opaSub(List<SWRLBuiltInArgument> arguments) throws SWRLBuiltInException {
+        // argument 1: aspect a such that aspect(a', op(i1, i2)) for some a' ⊑ a
+        // argument 2: object property op
+        // argument 3: individual i1
+        // argument 4: individual i2
+        checkNumberOfArgumentsEqualTo(4, arguments.size());
+
+        final OWLObjectProperty op = getOWLObjectProperty(arguments, 2);
+        final OWLNamedIndividual i1 = getOWLNamedIndividual(arguments, 3);
+        final OWLNamedIndividual i2 = getOWLNamedIndividual(arguments, 4);
+
+        OntologyContext context = getContext(getBuiltInBridge().getOWLOntology());
+        OWLObjectPropertyAssertionAxiom joinPointAxiom = context.getObjectPropertyAssertion(op, i1, i2, context.getImports());
+        if (joinPointAxiom == null) {
+            return false;
+        }
+
+        Set<OWLClass> aspects = context.getAspects(joinPointAxiom, context.getImports());
+        HierarchyIndex hierarchyIndex = context.getHierarchyIndex(context.getImports());
+
+        if (isUnbound(arguments.get(0))) {
+            Set<OWLClass> superAspects = new HashSet<>(aspects);
+            aspects.forEach(aspect -> superAspects.addAll(hierarchyIndex.getSuperClasses(aspect)));
+
+            final Map<@NonNull Integer, @NonNull SWRLMultiValueVariableBuiltInArgument> outputMultiValueArguments = createOutputMultiValueArguments(arguments);
+            superAspects.forEach(aspect -> outputMultiValueArguments.get(0).addArgument(createClassBuiltInArgument(aspect)));
+            return bindMultiValueResults(arguments, outputMultiValueArguments);
+        } else {
+            final OWLClass aspect = getOWLClass(arguments, 1);
+            return aspects.stream().anyMatch(as -> hierarchyIndex.isSubClassOf(as, aspect));
         }
     }
 
     /**
-     * Satisfied iff the first argument is an instance of the second by nominal class definition (ObjectOneOf)
+     * Reverse of {@link #opa(List)}: satisfied iff the first argument is an AspectOWL aspect name (must be bound) in
+     * which the object property assertion r(i1, i2) holds, where r, i1 and i2 are the second, third and fourth
+     * argument, respectively.
+     *
+     * One of r, i1 and i2 may be unbound, in which case its values in all object property assertions holding in the
+     * given aspect and matching the bound arguments will be bound to it as a multi-value argument. At most one of them
+     * may be unbound, since the rule engine combines the values of several multi-value arguments as a cross product,
+     * which would yield assertions that do not hold in the aspect. To enumerate all assertions of an aspect, bind the
+     * individuals with an object property atom first, e.g. r(?i1, ?i2) ^ aspectOPA(A, r, ?i1, ?i2).
+     *
+     * @param arguments
+     * @return
+     * @throws SWRLBuiltInException
+     */
+    public boolean aspectOPA(List<SWRLBuiltInArgument> arguments) throws SWRLBuiltInException {
+        // argument 1: aspect a (bound)
+        // argument 2: object property op such that aspect(a, op(i1, i2))
+        // argument 3: individual i1
+        // argument 4: individual i2
+        checkNumberOfArgumentsEqualTo(4, arguments.size());
+
+        final OWLClass aspect = getOWLClass(arguments, 1);
+        final OWLObjectProperty op = isUnbound(arguments.get(1)) ? null : getOWLObjectProperty(arguments, 2);
+        final OWLNamedIndividual i1 = isUnbound(arguments.get(2)) ? null : getOWLNamedIndividual(arguments, 3);
+        final OWLNamedIndividual i2 = isUnbound(arguments.get(3)) ? null : getOWLNamedIndividual(arguments, 4);
+        checkAtMostOneUnbound("aspectOPA", op == null, i1 == null, i2 == null);
+
+        OntologyContext context = getContext(getBuiltInBridge().getOWLOntology());
+        Set<OWLAxiom> joinPointAxioms = context.getJoinPoints(aspect, context.getImports());
+
+        // the values of the unbound argument, if any; the same triple may be asserted in several shards
+        Set<OWLEntity> values = new LinkedHashSet<>();
+        boolean found = false;
+
+        for (OWLAxiom axiom : joinPointAxioms) {
+            if (axiom.getAxiomType() != AxiomType.OBJECT_PROPERTY_ASSERTION) {
+                continue;
+            }
+            var opa = (OWLObjectPropertyAssertionAxiom) axiom;
+            if (opa.getProperty().isAnonymous() || opa.getSubject().isAnonymous() || opa.getObject().isAnonymous()) {
+                continue;
+            }
+            if ((op != null && !op.equals(opa.getProperty())) || (i1 != null && !i1.equals(opa.getSubject())) || (i2 != null && !i2.equals(opa.getObject()))) {
+                continue;
+            }
+            found = true;
+            if (op == null) {
+                values.add(opa.getProperty().asOWLObjectProperty());
+            } else if (i1 == null) {
+                values.add(opa.getSubject().asOWLNamedIndividual());
+            } else if (i2 == null) {
+                values.add(opa.getObject().asOWLNamedIndividual());
+            }
+        }
+
+        final Map<@NonNull Integer, @NonNull SWRLMultiValueVariableBuiltInArgument> outputMultiValueArguments = createOutputMultiValueArguments(arguments);
+        if (outputMultiValueArguments.isEmpty()) {
+            return found;
+        }
+        for (OWLEntity value : values) {
+            if (op == null) {
+                outputMultiValueArguments.get(1).addArgument(createObjectPropertyBuiltInArgument(value.asOWLObjectProperty()));
+            } else {
+                outputMultiValueArguments.get(i1 == null ? 2 : 3).addArgument(createNamedIndividualBuiltInArgument(value.asOWLNamedIndividual()));
+            }
+        }
+        return bindMultiValueResults(arguments, outputMultiValueArguments);
+    }
+
+    /**
+     * Satisfied iff the first argument is an instance of the second by nominal class definition (ObjectOneOf). The
+     * second argument is either an ObjectOneOf class expression or a named class C defined by
+     * EquivalentClasses(C, ObjectOneOf(...)).
+     *
+     * If the individual variable is unbound, all members will be bound to it as a multi-value argument. If the class
+     * variable is unbound, all named enumeration classes of the (bound) individual will be bound to it as a
+     * multi-value argument.
+     *
      * @param arguments
      * @return
      * @throws SWRLBuiltInException
      * TODO Move to different built-in (has nothing to do with aspects)
      */
     public boolean ooo(List<SWRLBuiltInArgument> arguments) throws SWRLBuiltInException {
-        OWLClassExpression ce = getOWLClassExpression(arguments, 2);
-        if (!(ce instanceof OWLObjectOneOf)) {
-            return false;
+        checkNumberOfArgumentsEqualTo(2, arguments.size());
+        NominalIndex nominalIndex = getContext(getBuiltInBridge().getOWLOntology()).getNominalIndex();
+
+        if (isUnbound(arguments.get(1))) {
+            // class variable is unbound, find all enumeration classes of the individual
+            final OWLNamedIndividual individual = getOWLNamedIndividual(arguments, 1);
+            final Map<@NonNull Integer, @NonNull SWRLMultiValueVariableBuiltInArgument> outputMultiValueArguments = createOutputMultiValueArguments(arguments);
+            nominalIndex.getClasses(individual).forEach(cls -> outputMultiValueArguments.get(1).addArgument(createClassBuiltInArgument(cls)));
+            return bindMultiValueResults(arguments, outputMultiValueArguments);
         }
 
-        OWLObjectOneOf ooo = (OWLObjectOneOf) ce;
-        var instances = ooo.getIndividuals();
+        Set<OWLIndividual> instances;
+        if (isActualArgumentOfType(arguments, CLASS, 2)) {
+            final OWLClass cls = getOWLClass(arguments, 2);
+            if (!isUnbound(arguments.get(0))) {
+                // answered from the member ids, without materializing the members
+                return nominalIndex.isMember(getOWLNamedIndividual(arguments, 1), cls);
+            }
+            instances = nominalIndex.getMembers(cls);
+        } else {
+            OWLClassExpression ce = getOWLClassExpression(arguments, 2);
+            if (!(ce instanceof OWLObjectOneOf)) {
+                return false;
+            }
+            instances = nominalIndex.getMembers((OWLObjectOneOf) ce);
+        }
 
         if (arguments.get(0).isVariable()) {
             var indVar = arguments.get(0).asVariable();
@@ -121,8 +324,8 @@ public class SWRLBuiltInLibraryImpl extends AbstractSWRLBuiltInLibrary {
                 return instances.contains(getOWLNamedIndividual(arguments, 1));
             } else {
                 final Map<@NonNull Integer, @NonNull SWRLMultiValueVariableBuiltInArgument> outputMultiValueArguments = createOutputMultiValueArguments(arguments);
-                instances.forEach(individual -> outputMultiValueArguments.get(0).addArgument(createNamedIndividualBuiltInArgument(individual.asOWLNamedIndividual())));
-                return processResultMultiValueArguments(arguments, outputMultiValueArguments);
+                instances.stream().filter(individual -> individual.isNamed()).forEach(individual -> outputMultiValueArguments.get(0).addArgument(createNamedIndividualBuiltInArgument(individual.asOWLNamedIndividual())));
+                return bindMultiValueResults(arguments, outputMultiValueArguments);
             }
 
         } else {
@@ -157,22 +360,6 @@ public class SWRLBuiltInLibraryImpl extends AbstractSWRLBuiltInLibrary {
 
         ArrayList<OWLAxiomChange> changes = new ArrayList<>();
 
-        OWLClass aspectClass = null;
-        if (aspectArg.isVariable()) {
-            var aspectVar = aspectArg.asVariable();
-            if (aspectVar.isBound()) {
-                aspectClass = getOWLClass(arguments, 1); // throws exception if not a class
-            } else {
-                // variable arg but not bound - create new and bind to variable
-                aspectClass = df.getOWLClass(IRI.create(onto.getOntologyID().getOntologyIRI().get().toString() + "#" + UUID.randomUUID().toString()));
-                OWLDeclarationAxiom aspectClassDeclarationAxiom = df.getOWLDeclarationAxiom(aspectClass);
-                changes.add(new AddAxiom(onto, aspectClassDeclarationAxiom));
-                aspectVar.setBuiltInResult(createClassBuiltInArgument(aspectClass));
-            }
-        } else {
-            aspectClass = getOWLClass(arguments, 1); // throws exception if not a class
-        }
-
         // opArg can either be variable or concrete value
         // if variable, must be bound
         // either way, value must be an OWLObjectProperty
@@ -180,23 +367,50 @@ public class SWRLBuiltInLibraryImpl extends AbstractSWRLBuiltInLibrary {
         final OWLNamedIndividual i1 = getOWLNamedIndividual(arguments, 2);
         final OWLNamedIndividual i2 = getOWLNamedIndividual(arguments, 3);
 
+        OntologyContext context = getContext(onto);
 
-        var joinPointAxiomOptional = onto.getObjectPropertyAssertionAxioms(i1).stream().filter(ax -> ax.getProperty().equals(op) && ax.getObject().equals(i2)).findFirst();
-        OWLObjectPropertyAssertionAxiom joinPointAxiom = null;
-        if (joinPointAxiomOptional.isPresent()) {
-            joinPointAxiom = joinPointAxiomOptional.get();
-        } else {
-            joinPointAxiom = df.getOWLObjectPropertyAssertionAxiom(op, i1, i2);
-        }
-        changes.add(new AddAxiom(onto, joinPointAxiom));
+        // serialize concurrent creations for the same OPA, so that it is contextualized only once
+        Lock lock = context.getWriteLock(new JoinPointKey(op, i1, i2));
+        lock.lock();
+        try {
+            OWLClass aspectClass = null;
+            if (aspectArg.isVariable()) {
+                var aspectVar = aspectArg.asVariable();
+                if (aspectVar.isBound()) {
+                    aspectClass = getOWLClass(arguments, 4); // throws exception if not a class
+                } else {
+                    // variable arg but not bound - mint aspect for this OPA (or reuse the one minted before) and bind to variable
+                    var minted = context.getEntityMinter().mint(EntityType.CLASS, "createOPA", op, i1, i2);
+                    aspectClass = minted.getEntity();
+                    if (minted.isFresh()) {
+                        changes.add(new AddAxiom(onto, df.getOWLDeclarationAxiom(aspectClass)));
+                    }
+                    aspectVar.setBuiltInResult(createClassBuiltInArgument(aspectClass));
+                }
+            } else {
+                aspectClass = getOWLClass(arguments, 4); // throws exception if not a class
+            }
 
-        man.applyChanges(changes);
+            // an OPA asserted in an imported ontology is contextualized without asserting it again
+            OWLObjectPropertyAssertionAxiom joinPointAxiom = context.getObjectPropertyAssertion(op, i1, i2, context.getImports());
+            if (joinPointAxiom == null) {
+                joinPointAxiom = df.getOWLObjectPropertyAssertionAxiom(op, i1, i2);
+                changes.add(new AddAxiom(onto, joinPointAxiom));
+            } else if (changes.isEmpty() && context.hasAspect(joinPointAxiom, aspectClass, context.getImports())) {
+                // rule re-fired for a contextualized OPA that already exists
+                context.getEntityMinter().suppressed();
+                return true;
+            }
 
-        OWLAspectManager aspectManager = AspectOWLEditorKitHook.getAspectManager(man);
-        OWLAspectAssertionAxiom aspectAssertionAxiom = aspectManager.getAspectAssertionAxiom(onto, new AspectOWLJoinPointAxiomPointcut(joinPointAxiom), aspectManager.getAspect(aspectClass, Collections.EMPTY_SET, Collections.EMPTY_SET));
-        aspectManager.addAspect(onto, aspectAssertionAxiom);
+            boolean buffered = context.isBufferedWrites();
+            context.applyChanges(changes, buffered);
+            context.addAspect(joinPointAxiom, aspectClass, buffered);
+            recordWrites(changes.size(), 1);
 
-        return true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public boolean createNegativeOPA(List<SWRLBuiltInArgument> arguments) throws SWRLBuiltInException {
@@ -216,22 +430,6 @@ public class SWRLBuiltInLibraryImpl extends AbstractSWRLBuiltInLibrary {
 
         ArrayList<OWLAxiomChange> changes = new ArrayList<>();
 
-        OWLClass aspectClass = null;
-        if (aspectArg.isVariable()) {
-            var aspectVar = aspectArg.asVariable();
-            if (aspectVar.isBound()) {
-                aspectClass = getOWLClass(arguments, 1); // throws exception if not a class
-            } else {
-                // variable arg but not bound - create new and bind to variable
-                aspectClass = df.getOWLClass(IRI.create(onto.getOntologyID().getOntologyIRI().get().toString() + "#" + UUID.randomUUID().toString()));
-                OWLDeclarationAxiom aspectClassDeclarationAxiom = df.getOWLDeclarationAxiom(aspectClass);
-                changes.add(new AddAxiom(onto, aspectClassDeclarationAxiom));
-                aspectVar.setBuiltInResult(createClassBuiltInArgument(aspectClass));
-            }
-        } else {
-            aspectClass = getOWLClass(arguments, 1); // throws exception if not a class
-        }
-
         // opArg can either be variable or concrete value
         // if variable, must be bound
         // either way, value must be an OWLObjectProperty
@@ -239,23 +437,50 @@ public class SWRLBuiltInLibraryImpl extends AbstractSWRLBuiltInLibrary {
         final OWLNamedIndividual i1 = getOWLNamedIndividual(arguments, 2);
         final OWLNamedIndividual i2 = getOWLNamedIndividual(arguments, 3);
 
+        OntologyContext context = getContext(onto);
 
-        var joinPointAxiomOptional = onto.getNegativeObjectPropertyAssertionAxioms(i1).stream().filter(ax -> ax.getProperty().equals(op) && ax.getObject().equals(i2)).findFirst();
-        OWLNegativeObjectPropertyAssertionAxiom joinPointAxiom = null;
-        if (joinPointAxiomOptional.isPresent()) {
-            joinPointAxiom = joinPointAxiomOptional.get();
-        } else {
-            joinPointAxiom = df.getOWLNegativeObjectPropertyAssertionAxiom(op, i1, i2);
-        }
-        changes.add(new AddAxiom(onto, joinPointAxiom));
+        // serialize concurrent creations for the same OPA, so that it is contextualized only once
+        Lock lock = context.getWriteLock(new JoinPointKey(op, i1, i2));
+        lock.lock();
+        try {
+            OWLClass aspectClass = null;
+            if (aspectArg.isVariable()) {
+                var aspectVar = aspectArg.asVariable();
+                if (aspectVar.isBound()) {
+                    aspectClass = getOWLClass(arguments, 4); // throws exception if not a class
+                } else {
+                    // variable arg but not bound - mint aspect for this OPA (or reuse the one minted before) and bind to variable
+                    var minted = context.getEntityMinter().mint(EntityType.CLASS, "createNegativeOPA", op, i1, i2);
+                    aspectClass = minted.getEntity();
+                    if (minted.isFresh()) {
+                        changes.add(new AddAxiom(onto, df.getOWLDeclarationAxiom(aspectClass)));
+                    }
+                    aspectVar.setBuiltInResult(createClassBuiltInArgument(aspectClass));
+                }
+            } else {
+                aspectClass = getOWLClass(arguments, 4); // throws exception if not a class
+            }
 
-        man.applyChanges(changes);
+            // an OPA asserted in an imported ontology is contextualized without asserting it again
+            OWLNegativeObjectPropertyAssertionAxiom joinPointAxiom = context.getNegativeObjectPropertyAssertion(op, i1, i2, context.getImports());
+            if (joinPointAxiom == null) {
+                joinPointAxiom = df.getOWLNegativeObjectPropertyAssertionAxiom(op, i1, i2);
+                changes.add(new AddAxiom(onto, joinPointAxiom));
+            } else if (changes.isEmpty() && context.hasAspect(joinPointAxiom, aspectClass, context.getImports())) {
+                // rule re-fired for a contextualized OPA that already exists
+                context.getEntityMinter().suppressed();
+                return true;
+            }
 
-        OWLAspectManager aspectManager = AspectOWLEditorKitHook.getAspectManager(man);
-        OWLAspectAssertionAxiom aspectAssertionAxiom = aspectManager.getAspectAssertionAxiom(onto, new AspectOWLJoinPointAxiomPointcut(joinPointAxiom), aspectManager.getAspect(aspectClass, Collections.EMPTY_SET, Collections.EMPTY_SET));
-        aspectManager.addAspect(onto, aspectAssertionAxiom);
+            boolean buffered = context.isBufferedWrites();
+            context.applyChanges(changes, buffered);
+            context.addAspect(joinPointAxiom, aspectClass, buffered);
+            recordWrites(changes.size(), 1);
 
-        return true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
     /**
      * Satisfied iff
@@ -263,6 +488,10 @@ public class SWRLBuiltInLibraryImpl extends AbstractSWRLBuiltInLibrary {
      * - the second argument is an OP, which serves as one of the temporal ("before" or "after") accessibility relation (must be bound),
      * - the third argument is an individual, which serves as the start/end time instance (if unbound and the 2nd arg is bound, a new one will be created),
      * - the fourth argument is a boolean indicating whether the individual bound to the 3rd arg should be included in the interval (false: A ≡ op.{T1}, true: A ≡ op.{T1} ⊔ {T1}))
+     *
+     * Minted entities are memoised on the bound arguments, so re-firing a rule with the same bindings creates nothing
+     * new: the time instance on (op, A, inclusion), the aspect on (op, T1, inclusion). If both A and T1 are unbound,
+     * nothing identifies the firing, so each invocation mints a new time instance and a new aspect.
      */
     public boolean temporal(List<SWRLBuiltInArgument> arguments) throws SWRLBuiltInException {
         checkNumberOfArgumentsEqualTo(4, arguments.size());
@@ -280,48 +509,136 @@ public class SWRLBuiltInLibraryImpl extends AbstractSWRLBuiltInLibrary {
         ArrayList<OWLAxiomChange> changes = new ArrayList<>();
 
 
-        OWLClass aspectClass = null;
-        if (aspectArg.isVariable()) {
-            var aspectVar = aspectArg.asVariable();
-            if (aspectVar.isBound()) {
-                aspectClass = getOWLClass(arguments, 1); // throws exception if not a class
+        OntologyContext context = getContext(onto);
+        EntityMinter minter = context.getEntityMinter();
+
+        // the time instance is resolved first, so that a minted aspect can be keyed on it
+        OWLClass boundAspectClass = isUnbound(aspectArg) ? null : getOWLClass(arguments, 1); // throws exception if not a class
+
+        // serialize concurrent creations for the same temporal aspect
+        Lock lock = context.getWriteLock(Arrays.asList(op, isUnbound(indArg) ? boundAspectClass : getOWLNamedIndividual(arguments, 3), includeArg));
+        lock.lock();
+        try {
+            OWLNamedIndividual ind = null;
+            if (indArg.isVariable()) {
+                var indVar = indArg.asVariable();
+                if (indVar.isBound()) {
+                    ind = getOWLNamedIndividual(arguments, 3); // throws exception if not a class
+                } else {
+                    // variable arg but not bound - mint individual (or reuse the one minted before for the bound aspect) and bind to variable
+                    if (boundAspectClass != null) {
+                        var minted = minter.mint(EntityType.NAMED_INDIVIDUAL, "temporal-instant", op, boundAspectClass, includeArg);
+                        ind = minted.getEntity();
+                        if (minted.isFresh()) {
+                            changes.add(new AddAxiom(onto, df.getOWLDeclarationAxiom(ind)));
+                        }
+                    } else {
+                        ind = minter.mintUnique(EntityType.NAMED_INDIVIDUAL, "temporal-instant");
+                        changes.add(new AddAxiom(onto, df.getOWLDeclarationAxiom(ind)));
+                    }
+                    indVar.setBuiltInResult(createNamedIndividualBuiltInArgument(ind));
+                }
             } else {
-                // variable arg but not bound - create new and bind to variable
-                aspectClass = df.getOWLClass(IRI.create(onto.getOntologyID().getOntologyIRI().get().toString() + "#" + UUID.randomUUID().toString()));
-                OWLDeclarationAxiom aspectClassDeclarationAxiom = df.getOWLDeclarationAxiom(aspectClass);
-                changes.add(new AddAxiom(onto, aspectClassDeclarationAxiom));
-                aspectVar.setBuiltInResult(createClassBuiltInArgument(aspectClass));
+                ind = getOWLNamedIndividual(arguments, 3); // throws exception if not a class
             }
-        } else {
-            aspectClass = getOWLClass(arguments, 1); // throws exception if not a class
-        }
 
-        OWLNamedIndividual ind = null;
-        if (indArg.isVariable()) {
-            var indVar = indArg.asVariable();
-            if (indVar.isBound()) {
-                ind = getOWLNamedIndividual(arguments, 3); // throws exception if not a class
-            } else {
-                // variable arg but not bound - create new and bind to variable
-                ind = df.getOWLNamedIndividual(IRI.create(onto.getOntologyID().getOntologyIRI().get().toString() + "#" + UUID.randomUUID().toString()));
-                OWLDeclarationAxiom indDeclarationAxiom = df.getOWLDeclarationAxiom(ind);
-                changes.add(new AddAxiom(onto, indDeclarationAxiom));
-                indVar.setBuiltInResult(createNamedIndividualBuiltInArgument(ind));
+            OWLClass aspectClass = boundAspectClass;
+            if (aspectClass == null) {
+                // variable arg but not bound - mint aspect (or reuse the one minted before) and bind to variable
+                var minted = minter.mint(EntityType.CLASS, "temporal", op, ind, includeArg);
+                aspectClass = minted.getEntity();
+                if (minted.isFresh()) {
+                    changes.add(new AddAxiom(onto, df.getOWLDeclarationAxiom(aspectClass)));
+                }
+                aspectArg.asVariable().setBuiltInResult(createClassBuiltInArgument(aspectClass));
             }
-        } else {
-            ind = getOWLNamedIndividual(arguments, 3); // throws exception if not a class
+
+            // A ≡ op.{T1} ⊔ {T1}
+
+            OWLClassExpression hasValueCE = df.getOWLObjectHasValue(op, ind); // op.{T1}
+            OWLClassExpression equivalenceCE = includeArg ? df.getOWLObjectUnionOf(df.getOWLObjectOneOf(ind), hasValueCE) : hasValueCE;
+
+            OWLEquivalentClassesAxiom equivalenceAxiom = df.getOWLEquivalentClassesAxiom(aspectClass, equivalenceCE);
+            if (changes.isEmpty() && context.containsAxiom(equivalenceAxiom)) {
+                // rule re-fired for a temporal aspect that already exists
+                minter.suppressed();
+                return true;
+            }
+            changes.add(new AddAxiom(onto, equivalenceAxiom));
+
+            context.applyChanges(changes, context.isBufferedWrites());
+            context.getTemporalIndex().addDefinition(aspectClass, op, ind, includeArg);
+            context.addHierarchyAxiom(equivalenceAxiom);
+            recordWrites(changes.size(), 0);
+
+            return true;
+        } finally {
+            lock.unlock();
         }
+    }
+
+    /**
+     * Satisfied iff the first argument is a temporal aspect A (as created by {@link #temporal(List)}, must be bound)
+     * and the second argument is a time instance t which lies in the interval(s) defining A, i.e. for each definition
+     * A ≡ op.{T1} (⊔ {T1}), op(t, T1) follows from the transitive closure of the asserted op relation (or t is T1 and
+     * T1 is included).
+     *
+     * If the time instance variable is unbound, all time instances in A will be bound to it as a multi-value argument.
+     *
+     * Membership is answered from the temporal index without invoking a reasoner.
+     *
+     * @param arguments
+     * @return
+     * @throws SWRLBuiltInException
+     */
+    public boolean temporalContains(List<SWRLBuiltInArgument> arguments) throws SWRLBuiltInException {
+        checkNumberOfArgumentsEqualTo(2, arguments.size());
+        final OWLClass aspect = getOWLClass(arguments, 1);
 
-        // A ≡ op.{T1} ⊔ {T1}
+        TemporalIndex temporalIndex = getContext(getBuiltInBridge().getOWLOntology()).getTemporalIndex();
 
-        OWLClassExpression hasValueCE = df.getOWLObjectHasValue(op, ind); // op.{T1}
-        OWLClassExpression equivalenceCE = includeArg ? df.getOWLObjectUnionOf(df.getOWLObjectOneOf(ind), hasValueCE) : hasValueCE;
+        if (isUnbound(arguments.get(1))) {
+            final Map<@NonNull Integer, @NonNull SWRLMultiValueVariableBuiltInArgument> outputMultiValueArguments = createOutputMultiValueArguments(arguments);
+            temporalIndex.getMembers(aspect).stream().filter(t -> t.isNamed()).forEach(t -> outputMultiValueArguments.get(1).addArgument(createNamedIndividualBuiltInArgument(t.asOWLNamedIndividual())));
+            return bindMultiValueResults(arguments, outputMultiValueArguments);
+        } else {
+            return temporalIndex.contains(aspect, getOWLNamedIndividual(arguments, 2));
+        }
+    }
 
-        changes.add(new AddAxiom(onto, df.getOWLEquivalentClassesAxiom(aspectClass, equivalenceCE)));
+    /**
+     * Satisfied iff the first argument is a time instance t which lies strictly between the time instances T1 and T2
+     * given as the second and third argument (both must be bound), i.e. op(T1, t) and op(t, T2) follow from the
+     * transitive closure of the asserted op relation.
+     *
+     * The optional fourth argument is the accessibility relation op. If omitted, any accessibility relation used by a
+     * temporal aspect of the ontology will do.
+     *
+     * If the time instance variable is unbound, all time instances between T1 and T2 will be bound to it as a
+     * multi-value argument.
+     *
+     * @param arguments
+     * @return
+     * @throws SWRLBuiltInException
+     */
+    public boolean temporalBetween(List<SWRLBuiltInArgument> arguments) throws SWRLBuiltInException {
+        checkNumberOfArgumentsInRange(3, 4, arguments.size());
+        final OWLNamedIndividual t1 = getOWLNamedIndividual(arguments, 2);
+        final OWLNamedIndividual t2 = getOWLNamedIndividual(arguments, 3);
 
-        man.applyChanges(changes);
+        TemporalIndex temporalIndex = getContext(getBuiltInBridge().getOWLOntology()).getTemporalIndex();
+        Set<OWLObjectPropertyExpression> properties = arguments.size() == 4 ? Collections.singleton(getOWLObjectProperty(arguments, 4)) : temporalIndex.getAccessibilityProperties();
 
-        return true;
+        if (isUnbound(arguments.get(0))) {
+            Set<OWLIndividual> between = new HashSet<>();
+            properties.forEach(op -> between.addAll(temporalIndex.getBetween(op, t1, t2)));
+            final Map<@NonNull Integer, @NonNull SWRLMultiValueVariableBuiltInArgument> outputMultiValueArguments = createOutputMultiValueArguments(arguments);
+            between.stream().filter(t -> t.isNamed()).forEach(t -> outputMultiValueArguments.get(0).addArgument(createNamedIndividualBuiltInArgument(t.asOWLNamedIndividual())));
+            return bindMultiValueResults(arguments, outputMultiValueArguments);
+        } else {
+            final OWLNamedIndividual t = getOWLNamedIndividual(arguments, 1);
+            return properties.stream().anyMatch(op -> temporalIndex.precedes(op, t1, t) && temporalIndex.precedes(op, t, t2));
+        }
     }
 
     public boolean deontic(List<SWRLBuiltInArgument> arguments) throws SWRLBuiltInException {
@@ -329,9 +646,74 @@ public class SWRLBuiltInLibraryImpl extends AbstractSWRLBuiltInLibrary {
         return false;
     }
 
+    /**
+     * Satisfied iff the second argument is an AspectOWL aspect name B nested in the aspect A given as the first
+     * argument, i.e. B is asserted for an assertion of A, or (transitively) for an assertion of an aspect nested in A.
+     *
+     * The optional third argument is the nesting depth (1 for B asserted directly for an assertion of A). If bound, B
+     * must be nested in A at most that many levels deep; if unbound, the minimal depth is bound to it.
+     *
+     * One of A, B and the depth may be unbound, in which case all matching values will be bound to it as a multi-value
+     * argument. At most one of them may be unbound, since the rule engine combines the values of several multi-value
+     * arguments as a cross product. Nestings are answered from the memoised nesting closure of the ontology.
+     *
+     * @param arguments
+     * @return
+     * @throws SWRLBuiltInException
+     */
     public boolean nest(List<SWRLBuiltInArgument> arguments) throws SWRLBuiltInException {
-        // TODO implement
-        return false;
+        // argument 1: aspect A
+        // argument 2: aspect B nested in A
+        // argument 3 (optional): nesting depth
+        checkNumberOfArgumentsInRange(2, 3, arguments.size());
+
+        final OWLClass outer = isUnbound(arguments.get(0)) ? null : getOWLClass(arguments, 1);
+        final OWLClass inner = isUnbound(arguments.get(1)) ? null : getOWLClass(arguments, 2);
+        final boolean bindDepth = arguments.size() == 3 && isUnbound(arguments.get(2));
+        final int maxDepth = arguments.size() == 3 && !bindDepth ? getInteger(arguments, 3) : Integer.MAX_VALUE;
+        checkAtMostOneUnbound("nest", outer == null, inner == null, bindDepth);
+
+        NestingIndex nestingIndex = getContext(getBuiltInBridge().getOWLOntology()).getNestingIndex();
+
+        if (outer != null && inner != null && !bindDepth) {
+            int depth = nestingIndex.getDepth(outer, inner);
+            return depth > 0 && depth <= maxDepth;
+        }
+
+        final Map<@NonNull Integer, @NonNull SWRLMultiValueVariableBuiltInArgument> outputMultiValueArguments = createOutputMultiValueArguments(arguments);
+        Map<OWLClass, Map<OWLClass, Integer>> candidates;
+        if (outer != null) {
+            candidates = Collections.singletonMap(outer, nestingIndex.getNested(outer));
+        } else {
+            Map<OWLClass, Map<OWLClass, Integer>> nesting = new HashMap<>();
+            nestingIndex.getNesting(inner).forEach((a, depth) -> nesting.put(a, Collections.singletonMap(inner, depth)));
+            candidates = nesting;
+        }
+
+        boolean found = false;
+        for (var outerEntry : candidates.entrySet()) {
+            for (var innerEntry : outerEntry.getValue().entrySet()) {
+                int depth = innerEntry.getValue();
+                if ((inner != null && !inner.equals(innerEntry.getKey())) || depth > maxDepth) {
+                    continue;
+                }
+                found = true;
+                if (outer == null) {
+                    outputMultiValueArguments.get(0).addArgument(createClassBuiltInArgument(outerEntry.getKey()));
+                }
+                if (inner == null) {
+                    outputMultiValueArguments.get(1).addArgument(createClassBuiltInArgument(innerEntry.getKey()));
+                }
+                if (bindDepth) {
+                    outputMultiValueArguments.get(2).addArgument(createLiteralBuiltInArgument(depth));
+                }
+            }
+        }
+
+        if (outputMultiValueArguments.isEmpty()) {
+            return found;
+        }
+        return bindMultiValueResults(arguments, outputMultiValueArguments);
     }
 
 //    /**
@@ -351,6 +733,145 @@ public class SWRLBuiltInLibraryImpl extends AbstractSWRLBuiltInLibrary {
 //        return true;
 //    }
 
+    /**
+     * Returns the per-ontology indexes, building them on first access.
+     */
+    private OntologyContext getContext(OWLOntology onto) {
+        OntologyContext context = OntologyContext.get(onto);
+        contexts.add(context);
+        return context;
+    }
+
+    /**
+     * Switches buffered write mode on or off for the given ontology (default: off).
+     *
+     * In buffered write mode, the axioms and aspect assertions created by createOPA, createNegativeOPA and temporal
+     * are not applied to the ontology right away but queued until {@link #flush(OWLOntology)} is called, which happens
+     * automatically when the rule engine resets the library. Built-ins evaluated in the meantime see the queued object
+     * property assertions, aspects and axioms. Switching buffered write mode off flushes all queued writes.
+     *
+     * The setting applies to all library instances, so it can be made before rules are evaluated by a rule engine
+     * that instantiates the library itself.
+     *
+     * @param onto
+     * @param bufferedWrites
+     */
+    public static void setBufferedWrites(OWLOntology onto, boolean bufferedWrites) {
+        OntologyContext.get(onto).setBufferedWrites(bufferedWrites);
+    }
+
+    public static boolean isBufferedWrites(OWLOntology onto) {
+        var context = OntologyContext.find(onto);
+        return context != null && context.isBufferedWrites();
+    }
+
+    /**
+     * Sets whether opa, opaSub, aspectOPA, createOPA and createNegativeOPA take the object property assertions and
+     * aspect assertions of the imports closure of the given ontology into account (default: {@link Imports#INCLUDED}).
+     * Either way, new axioms are only added to the ontology itself. The setting applies to all library instances.
+     *
+     * @param onto
+     * @param imports
+     */
+    public static void setImports(OWLOntology onto, Imports imports) {
+        OntologyContext.get(onto).setImports(imports);
+    }
+
+    public static Imports getImports(OWLOntology onto) {
+        var context = OntologyContext.find(onto);
+        return context != null ? context.getImports() : Imports.INCLUDED;
+    }
+
+    /**
+     * Applies all writes queued for the given ontology in buffered write mode as one batch of changes.
+     *
+     * @param onto
+     */
+    public static void flush(OWLOntology onto) {
+        var context = OntologyContext.find(onto);
+        if (context != null) {
+            context.flush();
+        }
+    }
+
+    /**
+     * Drops the indexes and caches of the given ontology, which will be rebuilt if it is used again. Writes queued
+     * for it in buffered write mode are discarded.
+     *
+     * Ontologies that have been removed from their manager are released automatically the next time the built-ins
+     * are used on a new ontology. Ontologies that stay in their manager have to be released explicitly once they are
+     * no longer evaluated, otherwise their indexes keep following their changes.
+     *
+     * @param onto
+     */
+    public static void release(OWLOntology onto) {
+        OntologyContext.release(onto);
+    }
+
+    /**
+     * Drops the cached aspect assertions of the given ontology, so that the built-ins reload them from the aspect
+     * store. Has to be called after aspect assertions have been edited directly in an aspect store that does not
+     * report its changes to {@link AspectStoreListener}s, such as the aspect manager of the AspectOWL Protégé plugin.
+     *
+     * @param onto
+     */
+    public static void invalidateAspects(OWLOntology onto) {
+        var context = OntologyContext.find(onto);
+        if (context != null) {
+            context.invalidateAspects();
+        }
+    }
+
+    /**
+     * Attaches a journal to the given ontology, to which the axioms and aspect assertions the built-ins write to it
+     * are appended once they are applied (see {@link ChangeJournal}). Passing null detaches the current journal.
+     * Closing the journal is up to the caller.
+     *
+     * @param onto
+     * @param journal
+     */
+    public static void setJournal(OWLOntology onto, ChangeJournal journal) {
+        OntologyContext.get(onto).setJournal(journal);
+    }
+
+    /**
+     * Binds the multi-value results like {@link #processResultMultiValueArguments(List, Map)}, recording their size.
+     */
+    private boolean bindMultiValueResults(List<SWRLBuiltInArgument> arguments, Map<@NonNull Integer, @NonNull SWRLMultiValueVariableBuiltInArgument> outputMultiValueArguments) throws SWRLBuiltInException {
+        var recorder = currentRecorder.get();
+        if (recorder != null && !outputMultiValueArguments.isEmpty()) {
+            recorder.multiValueResult(outputMultiValueArguments.values().iterator().next().getArguments().size());
+        }
+        return processResultMultiValueArguments(arguments, outputMultiValueArguments);
+    }
+
+    private void recordWrites(int axioms, int aspects) {
+        var recorder = currentRecorder.get();
+        if (recorder != null) {
+            recorder.written(axioms, aspects);
+        }
+    }
+
+    /**
+     * Throws an exception if more than one of the given output arguments is unbound. The rule engine binds the values
+     * of several multi-value results as their cross product, so built-ins returning tuples may only bind one of them.
+     */
+    private void checkAtMostOneUnbound(String builtInName, boolean... unbound) throws SWRLBuiltInException {
+        int count = 0;
+        for (boolean u : unbound) {
+            if (u) {
+                count++;
+            }
+        }
+        if (count > 1) {
+            throw new SWRLBuiltInException(String.format("Built-in %s%s in rule %s: At most one output argument may be unbound, but %d are.", NAMESPACE, builtInName, getInvokingRuleName(), count));
+        }
+    }
+
+    private static boolean isUnbound(SWRLBuiltInArgument arg) {
+        return arg.isVariable() && arg.asVariable().isUnbound();
+    }
+
     private OWLNamedIndividual getOWLNamedIndividual(List<SWRLBuiltInArgument> arguments, int argPos) throws SWRLBuiltInException {
         return checkAndGetActualArgument(arguments, NAMED_INDIVIDUAL, argPos).asSWRLNamedIndividualBuiltInArgument().getOWLNamedIndividual();
     }
@@ -359,6 +880,15 @@ public class SWRLBuiltInLibraryImpl extends AbstractSWRLBuiltInLibrary {
         return checkAndGetActualArgument(arguments, CLASS, argPos).asSWRLClassBuiltInArgument().getOWLClass();
     }
 
+    private int getInteger(List<SWRLBuiltInArgument> arguments, int argPos) throws SWRLBuiltInException {
+        OWLLiteral literal = checkAndGetActualArgument(arguments, LITERAL, argPos).asSWRLLiteralBuiltInArgument().getLiteral();
+        try {
+            return literal.parseInteger();
+        } catch (NumberFormatException e) {
+            throw new SWRLBuiltInException(String.format("Could not parse integer from argument %d (argument type is %s, argument value is %s)", argPos, literal.getDatatype(), literal.getLiteral()));
+        }
+    }
+
     private OWLClassExpression getOWLClassExpression(List<SWRLBuiltInArgument> arguments, int argPos) throws SWRLBuiltInException {
         return checkAndGetActualArgument(arguments, CLASS_EXPRESSION, argPos).asSWRLClassExpressionBuiltInArgument().getOWLClassExpression();
     }
@@ -376,6 +906,19 @@ public class SWRLBuiltInLibraryImpl extends AbstractSWRLBuiltInLibrary {
         }
     }
 
+    /**
+     * argPos: natural argument position (count starts from 1)!
+     * @return true iff the argument (or the value of the bound variable) is of the expected type
+     */
+    private boolean isActualArgumentOfType(List<SWRLBuiltInArgument> arguments, SWRLBuiltInArgumentType expectedType, int argPos) {
+        SWRLBuiltInArgument arg = arguments.get(argPos - 1);
+        if (arg.isVariable()) {
+            var builtInResult = arg.asVariable().getBuiltInResult();
+            return builtInResult.isPresent() && builtInResult.get().getSWRLBuiltInArgumentType() == expectedType;
+        }
+        return arg.getSWRLBuiltInArgumentType() == expectedType;
+    }
+
     /**
      * argPos: natural argument position (count starts from 1)!
      * @param arguments
@@ -406,7 +949,7 @@ public class SWRLBuiltInLibraryImpl extends AbstractSWRLBuiltInLibrary {
 
     @Override
     public void reset() throws SWRLBuiltInLibraryException {
-
+        flush();
     }
 
 
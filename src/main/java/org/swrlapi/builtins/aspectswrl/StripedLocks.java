@@ -0,0 +1,40 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks, one of which is picked per key by its hash code. Keys with the same hash code always get the
+ * same lock; different keys may share one.
+ *
+ * @author ralph
+ */
+class StripedLocks {
+
+    static final int DEFAULT_STRIPES = 64;
+
+    private final Lock[] locks;
+
+    private final int mask;
+
+    StripedLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes number of locks, rounded up to the next power of two
+     */
+    StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    Lock get(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return locks[(h ^ (h >>> 16)) & mask];
+    }
+}
@@ -0,0 +1,622 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Index over the temporal aspects of a single ontology, i.e. aspects defined (by the temporal built-in or by hand) as
+ * A ≡ op.{T1} or A ≡ op.{T1} ⊔ {T1}, together with the transitive order of each accessibility property op.
+ *
+ * The order of a property is computed from its told assertions (and the reversed assertions of its told inverses)
+ * on first use. Orders that are plain chains, such as a sequence of successive time instants, are stored as chain
+ * positions, all others as reachability bitsets, so that deciding whether one time instant precedes another along
+ * op is a constant time operation. Added assertions are merged into the existing orders where possible; removals
+ * cause the affected order to be recomputed on next use.
+ *
+ * Queries against an order hold a read lock, so they run concurrently; building, extending and dropping orders
+ * holds the write lock.
+ *
+ * @author ralph
+ */
+class TemporalIndex implements OWLOntologyChangeListener {
+
+    private static final Logger log = LoggerFactory.getLogger(TemporalIndex.class);
+
+    private final OWLOntology onto;
+
+    private final OWLOntologyManager man;
+
+    private final Map<OWLClass, Set<TemporalDefinition>> definitions = new ConcurrentHashMap<>();
+
+    private final Map<OWLObjectPropertyExpression, Order> orders = new HashMap<>();
+
+    private final Map<OWLObjectPropertyExpression, Set<OWLObjectPropertyExpression>> inverses = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    TemporalIndex(OWLOntology onto) {
+        this.onto = onto;
+        this.man = onto.getOWLOntologyManager();
+        // listen before scanning, so that definitions and inverses changed during the scan are not lost
+        man.addOntologyChangeListener(this);
+        for (OWLEquivalentClassesAxiom ax : onto.getAxioms(AxiomType.EQUIVALENT_CLASSES)) {
+            parseDefinitions(ax, true);
+        }
+        lock.writeLock().lock();
+        try {
+            buildInverses();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the temporal definitions of the given aspect (all of which have to be satisfied by its members)
+     */
+    Set<TemporalDefinition> getDefinitions(OWLClass aspect) {
+        return definitions.getOrDefault(aspect, Collections.emptySet());
+    }
+
+    /**
+     * Registers the definition aspect ≡ op.{instant} (⊔ {instant} if inclusive) ahead of the corresponding axiom being
+     * added to the ontology.
+     */
+    void addDefinition(OWLClass aspect, OWLObjectPropertyExpression op, OWLIndividual instant, boolean inclusive) {
+        definitions.computeIfAbsent(aspect, a -> ConcurrentHashMap.newKeySet()).add(new TemporalDefinition(op, instant, inclusive));
+    }
+
+    /**
+     * @return the accessibility properties used by any temporal definition
+     */
+    Set<OWLObjectPropertyExpression> getAccessibilityProperties() {
+        Set<OWLObjectPropertyExpression> properties = new HashSet<>();
+        definitions.values().forEach(defs -> defs.forEach(def -> properties.add(def.getProperty())));
+        return properties;
+    }
+
+    /**
+     * @return true iff t is a (told) member of the temporal aspect
+     */
+    boolean contains(OWLClass aspect, OWLIndividual t) {
+        var defs = getDefinitions(aspect);
+        if (defs.isEmpty()) {
+            return false;
+        }
+        for (TemporalDefinition def : defs) {
+            if (!(def.isInclusive() && def.getInstant().equals(t)) && !precedes(def.getProperty(), t, def.getInstant())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the (told) members of the temporal aspect
+     */
+    Set<OWLIndividual> getMembers(OWLClass aspect) {
+        var defs = getDefinitions(aspect);
+        if (defs.isEmpty()) {
+            return Collections.emptySet();
+        }
+        // candidates from one definition, checked against all of them
+        TemporalDefinition first = defs.iterator().next();
+        Set<OWLIndividual> members = withOrder(first.getProperty(), order -> new HashSet<>(order.predecessors(first.getInstant())));
+        if (first.isInclusive()) {
+            members.add(first.getInstant());
+        }
+        if (defs.size() > 1) {
+            members.removeIf(t -> !contains(aspect, t));
+        }
+        return members;
+    }
+
+    /**
+     * @return true iff op(a, b) follows from the transitive closure of the told op assertions
+     */
+    boolean precedes(OWLObjectPropertyExpression op, OWLIndividual a, OWLIndividual b) {
+        return withOrder(op, order -> order.reaches(a, b));
+    }
+
+    /**
+     * @return all t such that op(t1, t) and op(t, t2) follow from the transitive closure of the told op assertions
+     */
+    Set<OWLIndividual> getBetween(OWLObjectPropertyExpression op, OWLIndividual t1, OWLIndividual t2) {
+        return withOrder(op, order -> {
+            Set<OWLIndividual> between = new HashSet<>();
+            for (OWLIndividual t : order.successors(t1)) {
+                if (order.reaches(t, t2)) {
+                    between.add(t);
+                }
+            }
+            return between;
+        });
+    }
+
+    void dispose() {
+        man.removeOntologyChangeListener(this);
+    }
+
+    /**
+     * Applies the query to the order of op, building the order first if necessary. The query must not retain any view
+     * of the order's internal state.
+     */
+    private <T> T withOrder(OWLObjectPropertyExpression op, Function<Order, T> query) {
+        lock.readLock().lock();
+        try {
+            var order = orders.get(op);
+            if (order != null) {
+                return query.apply(order);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            return query.apply(orders.computeIfAbsent(op, this::buildOrder));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Order buildOrder(OWLObjectPropertyExpression op) {
+        var inv = inverses.getOrDefault(op, Collections.emptySet());
+        List<OWLIndividual[]> edges = new ArrayList<>();
+        for (OWLObjectPropertyAssertionAxiom ax : onto.getAxioms(AxiomType.OBJECT_PROPERTY_ASSERTION)) {
+            if (ax.getProperty().equals(op)) {
+                edges.add(new OWLIndividual[] { ax.getSubject(), ax.getObject() });
+            } else if (inv.contains(ax.getProperty())) {
+                edges.add(new OWLIndividual[] { ax.getObject(), ax.getSubject() });
+            }
+        }
+        Order order = ChainOrder.build(edges);
+        if (order == null) {
+            order = new ClosureOrder(edges);
+        }
+        return order;
+    }
+
+    private void buildInverses() {
+        inverses.clear();
+        for (OWLInverseObjectPropertiesAxiom ax : onto.getAxioms(AxiomType.INVERSE_OBJECT_PROPERTIES)) {
+            inverses.computeIfAbsent(ax.getFirstProperty(), p -> new HashSet<>()).add(ax.getSecondProperty());
+            inverses.computeIfAbsent(ax.getSecondProperty(), p -> new HashSet<>()).add(ax.getFirstProperty());
+        }
+    }
+
+    private void parseDefinitions(OWLEquivalentClassesAxiom ax, boolean add) {
+        for (OWLClass aspect : ax.getNamedClasses()) {
+            // a removed definition is kept while another axiom still asserts it, e.g. an annotated duplicate
+            Set<TemporalDefinition> asserted = add ? Collections.emptySet() : getAssertedDefinitions(aspect);
+            for (OWLClassExpression ce : ax.getClassExpressions()) {
+                TemporalDefinition def = TemporalDefinition.parse(ce);
+                if (def == null) {
+                    continue;
+                }
+                if (add) {
+                    definitions.computeIfAbsent(aspect, a -> ConcurrentHashMap.newKeySet()).add(def);
+                } else if (definitions.containsKey(aspect) && !asserted.contains(def)) {
+                    definitions.get(aspect).remove(def);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the temporal definitions of the given aspect by the equivalent classes axioms in the ontology
+     */
+    private Set<TemporalDefinition> getAssertedDefinitions(OWLClass aspect) {
+        Set<TemporalDefinition> asserted = new HashSet<>();
+        for (OWLEquivalentClassesAxiom ax : onto.getEquivalentClassesAxioms(aspect)) {
+            for (OWLClassExpression ce : ax.getClassExpressions()) {
+                TemporalDefinition def = TemporalDefinition.parse(ce);
+                if (def != null) {
+                    asserted.add(def);
+                }
+            }
+        }
+        return asserted;
+    }
+
+    private void assertionChanged(OWLObjectPropertyAssertionAxiom ax, boolean added) {
+        for (var it = orders.entrySet().iterator(); it.hasNext(); ) {
+            var entry = it.next();
+            OWLObjectPropertyExpression op = entry.getKey();
+            OWLIndividual from;
+            OWLIndividual to;
+            if (ax.getProperty().equals(op)) {
+                from = ax.getSubject();
+                to = ax.getObject();
+            } else if (inverses.getOrDefault(op, Collections.emptySet()).contains(ax.getProperty())) {
+                from = ax.getObject();
+                to = ax.getSubject();
+            } else {
+                continue;
+            }
+            if (!added || !entry.getValue().addEdge(from, to)) {
+                // recompute on next use
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public void ontologiesChanged(List<? extends OWLOntologyChange> changes) {
+        for (OWLOntologyChange change : changes) {
+            if (!change.isAxiomChange() || change.getOntology() != onto) {
+                continue;
+            }
+            OWLAxiom axiom = change.getAxiom();
+            if (axiom.getAxiomType() == AxiomType.OBJECT_PROPERTY_ASSERTION) {
+                lock.writeLock().lock();
+                try {
+                    assertionChanged((OWLObjectPropertyAssertionAxiom) axiom, change.isAddAxiom());
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } else if (axiom.getAxiomType() == AxiomType.EQUIVALENT_CLASSES) {
+                parseDefinitions((OWLEquivalentClassesAxiom) axiom, change.isAddAxiom());
+            } else if (axiom.getAxiomType() == AxiomType.INVERSE_OBJECT_PROPERTIES) {
+                lock.writeLock().lock();
+                try {
+                    buildInverses();
+                    orders.clear();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * A temporal aspect definition A ≡ op.{instant} (⊔ {instant} if inclusive).
+     */
+    static final class TemporalDefinition {
+
+        private final OWLObjectPropertyExpression property;
+
+        private final OWLIndividual instant;
+
+        private final boolean inclusive;
+
+        TemporalDefinition(OWLObjectPropertyExpression property, OWLIndividual instant, boolean inclusive) {
+            this.property = property;
+            this.instant = instant;
+            this.inclusive = inclusive;
+        }
+
+        /**
+         * @return the definition expressed by the given class expression or null if it is not of the form op.{T1}
+         * or op.{T1} ⊔ {T1}
+         */
+        static TemporalDefinition parse(OWLClassExpression ce) {
+            if (ce.getClassExpressionType() == ClassExpressionType.OBJECT_HAS_VALUE) {
+                var hasValue = (OWLObjectHasValue) ce;
+                return new TemporalDefinition(hasValue.getProperty(), hasValue.getFiller(), false);
+            }
+            if (ce.getClassExpressionType() != ClassExpressionType.OBJECT_UNION_OF) {
+                return null;
+            }
+            var operands = ((OWLObjectUnionOf) ce).getOperands();
+            if (operands.size() != 2) {
+                return null;
+            }
+            OWLObjectHasValue hasValue = null;
+            OWLObjectOneOf oneOf = null;
+            for (OWLClassExpression operand : operands) {
+                if (operand.getClassExpressionType() == ClassExpressionType.OBJECT_HAS_VALUE) {
+                    hasValue = (OWLObjectHasValue) operand;
+                } else if (operand.getClassExpressionType() == ClassExpressionType.OBJECT_ONE_OF) {
+                    oneOf = (OWLObjectOneOf) operand;
+                }
+            }
+            if (hasValue == null || oneOf == null || oneOf.getIndividuals().size() != 1 || !oneOf.getIndividuals().contains(hasValue.getFiller())) {
+                return null;
+            }
+            return new TemporalDefinition(hasValue.getProperty(), hasValue.getFiller(), true);
+        }
+
+        OWLObjectPropertyExpression getProperty() {
+            return property;
+        }
+
+        OWLIndividual getInstant() {
+            return instant;
+        }
+
+        boolean isInclusive() {
+            return inclusive;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TemporalDefinition)) {
+                return false;
+            }
+            TemporalDefinition other = (TemporalDefinition) o;
+            return inclusive == other.inclusive && property.equals(other.property) && instant.equals(other.instant);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(property, instant, inclusive);
+        }
+    }
+
+    /**
+     * Transitive order of a single accessibility property.
+     */
+    interface Order {
+
+        /**
+         * @return true iff b is reachable from a
+         */
+        boolean reaches(OWLIndividual a, OWLIndividual b);
+
+        /**
+         * @return all individuals from which b is reachable
+         */
+        Collection<OWLIndividual> predecessors(OWLIndividual b);
+
+        /**
+         * @return all individuals reachable from a
+         */
+        Collection<OWLIndividual> successors(OWLIndividual a);
+
+        /**
+         * Incrementally adds the edge a → b.
+         *
+         * @return false if the edge could not be added incrementally and the order has to be recomputed
+         */
+        boolean addEdge(OWLIndividual a, OWLIndividual b);
+    }
+
+    /**
+     * Order consisting of disjoint chains; each individual is labeled with its chain and its position in it.
+     */
+    static final class ChainOrder implements Order {
+
+        private static final class Label {
+            List<OWLIndividual> chain;
+            int position;
+
+            Label(List<OWLIndividual> chain, int position) {
+                this.chain = chain;
+                this.position = position;
+            }
+        }
+
+        private final Map<OWLIndividual, Label> labels = new HashMap<>();
+
+        /**
+         * @return the chain order for the given edges, or null if they do not form disjoint chains
+         */
+        static ChainOrder build(List<OWLIndividual[]> edges) {
+            Map<OWLIndividual, OWLIndividual> next = new HashMap<>();
+            Set<OWLIndividual> hasPredecessor = new HashSet<>();
+            for (OWLIndividual[] edge : edges) {
+                OWLIndividual previous = next.get(edge[0]);
+                if (edge[1].equals(previous)) {
+                    // same edge, e.g. asserted through both the property and its inverse
+                    continue;
+                }
+                if (edge[0].equals(edge[1]) || previous != null || !hasPredecessor.add(edge[1])) {
+                    return null;
+                }
+                next.put(edge[0], edge[1]);
+            }
+            ChainOrder order = new ChainOrder();
+            for (OWLIndividual head : next.keySet()) {
+                if (hasPredecessor.contains(head)) {
+                    continue;
+                }
+                List<OWLIndividual> chain = new ArrayList<>();
+                for (OWLIndividual t = head; t != null; t = next.get(t)) {
+                    order.labels.put(t, new Label(chain, chain.size()));
+                    chain.add(t);
+                }
+            }
+            Set<OWLIndividual> individuals = new HashSet<>(next.keySet());
+            individuals.addAll(hasPredecessor);
+            if (order.labels.size() != individuals.size()) {
+                // some individuals lie on a cycle (not reachable from any head)
+                return null;
+            }
+            return order;
+        }
+
+        @Override
+        public boolean reaches(OWLIndividual a, OWLIndividual b) {
+            Label la = labels.get(a);
+            Label lb = labels.get(b);
+            return la != null && lb != null && la.chain == lb.chain && la.position < lb.position;
+        }
+
+        @Override
+        public Collection<OWLIndividual> predecessors(OWLIndividual b) {
+            Label lb = labels.get(b);
+            return lb == null ? Collections.emptyList() : lb.chain.subList(0, lb.position);
+        }
+
+        @Override
+        public Collection<OWLIndividual> successors(OWLIndividual a) {
+            Label la = labels.get(a);
+            return la == null ? Collections.emptyList() : la.chain.subList(la.position + 1, la.chain.size());
+        }
+
+        @Override
+        public boolean addEdge(OWLIndividual a, OWLIndividual b) {
+            Label la = labels.get(a);
+            Label lb = labels.get(b);
+            if (a.equals(b)) {
+                return false;
+            }
+            if (la != null && lb != null && la.chain == lb.chain) {
+                // already implied (or a cycle)
+                return la.position < lb.position;
+            }
+            boolean aIsTail = la == null || la.position == la.chain.size() - 1;
+            boolean bIsHead = lb == null || lb.position == 0;
+            if (!aIsTail || !bIsHead) {
+                return false;
+            }
+            List<OWLIndividual> chain = la != null ? la.chain : new ArrayList<>();
+            if (la == null) {
+                labels.put(a, new Label(chain, 0));
+                chain.add(a);
+            }
+            List<OWLIndividual> tail = lb != null ? lb.chain : Collections.singletonList(b);
+            for (OWLIndividual t : tail) {
+                labels.put(t, new Label(chain, chain.size()));
+                chain.add(t);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * General order backed by one reachability bitset per individual.
+     */
+    static final class ClosureOrder implements Order {
+
+        private final Map<OWLIndividual, Integer> ids = new HashMap<>();
+
+        private final List<OWLIndividual> individuals = new ArrayList<>();
+
+        private final List<BitSet> reachable = new ArrayList<>();
+
+        ClosureOrder(List<OWLIndividual[]> edges) {
+            List<List<Integer>> successors = new ArrayList<>();
+            for (OWLIndividual[] edge : edges) {
+                int from = id(edge[0]);
+                int to = id(edge[1]);
+                while (successors.size() < individuals.size()) {
+                    successors.add(new ArrayList<>());
+                }
+                successors.get(from).add(to);
+            }
+            while (successors.size() < individuals.size()) {
+                successors.add(new ArrayList<>());
+            }
+            int n = individuals.size();
+
+            // Kahn's algorithm; the closure of a node is computed after those of all its successors
+            int[] inDegree = new int[n];
+            successors.forEach(succ -> succ.forEach(s -> inDegree[s]++));
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int i = 0; i < n; i++) {
+                if (inDegree[i] == 0) {
+                    queue.add(i);
+                }
+            }
+            List<Integer> topological = new ArrayList<>(n);
+            while (!queue.isEmpty()) {
+                int v = queue.poll();
+                topological.add(v);
+                for (int s : successors.get(v)) {
+                    if (--inDegree[s] == 0) {
+                        queue.add(s);
+                    }
+                }
+            }
+            boolean[] done = new boolean[n];
+            for (int i = topological.size() - 1; i >= 0; i--) {
+                int v = topological.get(i);
+                BitSet closure = reachable.get(v);
+                for (int s : successors.get(v)) {
+                    closure.set(s);
+                    closure.or(reachable.get(s));
+                }
+                done[v] = true;
+            }
+            if (topological.size() < n) {
+                log.warn("Accessibility relation contains cycles; {} of {} time instants lie on or before a cycle", n - topological.size(), n);
+                for (int v = 0; v < n; v++) {
+                    if (!done[v]) {
+                        search(v, successors);
+                    }
+                }
+            }
+        }
+
+        private void search(int start, List<List<Integer>> successors) {
+            BitSet closure = reachable.get(start);
+            Deque<Integer> stack = new ArrayDeque<>(successors.get(start));
+            while (!stack.isEmpty()) {
+                int v = stack.pop();
+                if (!closure.get(v)) {
+                    closure.set(v);
+                    stack.addAll(successors.get(v));
+                }
+            }
+        }
+
+        private int id(OWLIndividual individual) {
+            Integer id = ids.get(individual);
+            if (id == null) {
+                id = individuals.size();
+                ids.put(individual, id);
+                individuals.add(individual);
+                reachable.add(new BitSet());
+            }
+            return id;
+        }
+
+        @Override
+        public boolean reaches(OWLIndividual a, OWLIndividual b) {
+            Integer ia = ids.get(a);
+            Integer ib = ids.get(b);
+            return ia != null && ib != null && reachable.get(ia).get(ib);
+        }
+
+        @Override
+        public Collection<OWLIndividual> predecessors(OWLIndividual b) {
+            Integer ib = ids.get(b);
+            if (ib == null) {
+                return Collections.emptyList();
+            }
+            List<OWLIndividual> predecessors = new ArrayList<>();
+            for (int i = 0; i < individuals.size(); i++) {
+                if (reachable.get(i).get(ib)) {
+                    predecessors.add(individuals.get(i));
+                }
+            }
+            return predecessors;
+        }
+
+        @Override
+        public Collection<OWLIndividual> successors(OWLIndividual a) {
+            Integer ia = ids.get(a);
+            if (ia == null) {
+                return Collections.emptyList();
+            }
+            List<OWLIndividual> successors = new ArrayList<>();
+            reachable.get(ia).stream().forEach(i -> successors.add(individuals.get(i)));
+            return successors;
+        }
+
+        @Override
+        public boolean addEdge(OWLIndividual a, OWLIndividual b) {
+            int ia = id(a);
+            int ib = id(b);
+            BitSet added = (BitSet) reachable.get(ib).clone();
+            added.set(ib);
+            for (int i = 0; i < individuals.size(); i++) {
+                BitSet closure = reachable.get(i);
+                if (i == ia || closure.get(ia)) {
+                    closure.or(added);
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Concurrent map with weakly referenced keys that are compared by identity, for state kept per ontology. OWL API
+ * ontologies are equal iff their ontology IDs are, so an ordinary map would merge the state of ontologies with the
+ * same ID in different managers and lose it when the ID of an ontology is changed.
+ *
+ * Entries are dropped once their key has been garbage collected. Lookups do not lock.
+ *
+ * @author ralph
+ */
+class WeakIdentityMap<K, V> {
+
+    private final Map<Key<K>, V> map = new ConcurrentHashMap<>();
+
+    private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+
+    V get(K key) {
+        expunge();
+        return map.get(new Key<>(key, null));
+    }
+
+    V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        expunge();
+        return map.computeIfAbsent(new Key<>(key, queue), k -> mappingFunction.apply(key));
+    }
+
+    V remove(K key) {
+        expunge();
+        return map.remove(new Key<>(key, null));
+    }
+
+    private void expunge() {
+        Reference<? extends K> cleared;
+        while ((cleared = queue.poll()) != null) {
+            map.remove(cleared);
+        }
+    }
+
+    private static final class Key<K> extends WeakReference<K> {
+
+        private final int hash;
+
+        Key(K referent, ReferenceQueue<K> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Object referent = get();
+            return referent != null && referent == ((Key<?>) o).get();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Queue of pending ontology changes and aspect assertions produced by the built-ins of a single ontology while the
+ * library is in buffered write mode. Pending object property assertions can be looked up by their triple, other
+ * pending axioms as such, and pending aspect assertions by join point axiom or by aspect, so that reads within the same
+ * rule engine run see the writes that have not been flushed yet.
+ *
+ * All mutating methods synchronize on the buffer; callers iterating over the pending changes or aspects (e.g. to
+ * flush them) have to do so as well. Lookups of pending assertions do not lock.
+ *
+ * @author ralph
+ */
+class WriteBuffer {
+
+    private final List<OWLAxiomChange> changes = new ArrayList<>();
+
+    private final Map<JoinPointKey, OWLObjectPropertyAssertionAxiom> pendingPositive = new ConcurrentHashMap<>();
+
+    private final Map<JoinPointKey, OWLNegativeObjectPropertyAssertionAxiom> pendingNegative = new ConcurrentHashMap<>();
+
+    private final Map<OWLAxiom, Set<OWLClass>> pendingAspects = new LinkedHashMap<>();
+
+    private final Set<OWLAxiom> pendingAxioms = ConcurrentHashMap.newKeySet();
+
+    private final Map<OWLAxiom, Set<OWLClass>> pendingAspectsByJoinPoint = new ConcurrentHashMap<>();
+
+    private final Map<OWLClass, Set<OWLAxiom>> pendingJoinPointsByAspect = new ConcurrentHashMap<>();
+
+    synchronized void addChanges(List<OWLAxiomChange> newChanges) {
+        for (OWLAxiomChange change : newChanges) {
+            changes.add(change);
+            if (!change.isAddAxiom()) {
+                continue;
+            }
+            OWLAxiom axiom = change.getAxiom();
+            pendingAxioms.add(axiom);
+            if (axiom.getAxiomType() == AxiomType.OBJECT_PROPERTY_ASSERTION) {
+                var ax = (OWLObjectPropertyAssertionAxiom) axiom;
+                pendingPositive.putIfAbsent(JoinPointKey.of(ax), ax);
+            } else if (axiom.getAxiomType() == AxiomType.NEGATIVE_OBJECT_PROPERTY_ASSERTION) {
+                var ax = (OWLNegativeObjectPropertyAssertionAxiom) axiom;
+                pendingNegative.putIfAbsent(JoinPointKey.of(ax), ax);
+            }
+        }
+    }
+
+    synchronized void addAspect(OWLAxiom joinPointAxiom, OWLClass aspect) {
+        pendingAspects.computeIfAbsent(joinPointAxiom, ax -> new LinkedHashSet<>()).add(aspect);
+        pendingAspectsByJoinPoint.computeIfAbsent(joinPointAxiom, ax -> ConcurrentHashMap.newKeySet()).add(aspect);
+        pendingJoinPointsByAspect.computeIfAbsent(aspect, a -> ConcurrentHashMap.newKeySet()).add(joinPointAxiom);
+    }
+
+    /**
+     * @return the pending axiom op(i1, i2) or null if there is none
+     */
+    OWLObjectPropertyAssertionAxiom getObjectPropertyAssertion(OWLObjectPropertyExpression op, OWLIndividual i1, OWLIndividual i2) {
+        return pendingPositive.isEmpty() ? null : pendingPositive.get(new JoinPointKey(op, i1, i2));
+    }
+
+    /**
+     * @return the pending axiom ¬op(i1, i2) or null if there is none
+     */
+    OWLNegativeObjectPropertyAssertionAxiom getNegativeObjectPropertyAssertion(OWLObjectPropertyExpression op, OWLIndividual i1, OWLIndividual i2) {
+        return pendingNegative.isEmpty() ? null : pendingNegative.get(new JoinPointKey(op, i1, i2));
+    }
+
+    /**
+     * @return true iff the given axiom is added by a pending change
+     */
+    boolean containsAxiom(OWLAxiom axiom) {
+        return !pendingAxioms.isEmpty() && pendingAxioms.contains(axiom);
+    }
+
+    /**
+     * @return the aspects pending for the given join point axiom
+     */
+    Set<OWLClass> getAspects(OWLAxiom joinPointAxiom) {
+        var aspects = pendingAspectsByJoinPoint.isEmpty() ? null : pendingAspectsByJoinPoint.get(joinPointAxiom);
+        return aspects != null ? Collections.unmodifiableSet(aspects) : Collections.emptySet();
+    }
+
+    /**
+     * @return the join point axioms the given aspect is pending for
+     */
+    Set<OWLAxiom> getJoinPoints(OWLClass aspect) {
+        var joinPoints = pendingJoinPointsByAspect.isEmpty() ? null : pendingJoinPointsByAspect.get(aspect);
+        return joinPoints != null ? Collections.unmodifiableSet(joinPoints) : Collections.emptySet();
+    }
+
+    List<OWLAxiomChange> getChanges() {
+        return changes;
+    }
+
+    Map<OWLAxiom, Set<OWLClass>> getAspects() {
+        return pendingAspects;
+    }
+
+    synchronized boolean isEmpty() {
+        return changes.isEmpty() && pendingAspects.isEmpty();
+    }
+
+    synchronized void clear() {
+        changes.clear();
+        pendingAxioms.clear();
+        pendingPositive.clear();
+        pendingNegative.clear();
+        pendingAspects.clear();
+        pendingAspectsByJoinPoint.clear();
+        pendingJoinPointsByAspect.clear();
+    }
+}
@@ -0,0 +1,195 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.swrlapi.builtins.aspectswrl.BuiltInTestInvoker.values;
+
+/**
+ * Tests that the aspects cached by {@link AspectIndex}, and hence the results of aspectOPA, follow the aspect
+ * assertions made outside the built-ins: through the listener of a store that reports its changes, and on
+ * {@link SWRLBuiltInLibraryImpl#invalidateAspects(OWLOntology)} for one that does not.
+ *
+ * @author ralph
+ */
+class AspectIndexTest {
+
+    private static final String NS = "http://example.org/aspects#";
+
+    /**
+     * The stores served to the built-ins; each ontology manager gets a store that does not report its changes
+     */
+    private static final Map<OWLOntologyManager, QuietAspectStore> stores = new ConcurrentHashMap<>();
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    private final OWLObjectProperty r = df.getOWLObjectProperty(IRI.create(NS + "r"));
+
+    private final OWLNamedIndividual a = df.getOWLNamedIndividual(IRI.create(NS + "a"));
+
+    private final OWLNamedIndividual b = df.getOWLNamedIndividual(IRI.create(NS + "b"));
+
+    private final OWLNamedIndividual c = df.getOWLNamedIndividual(IRI.create(NS + "c"));
+
+    private final OWLClass aspect = df.getOWLClass(IRI.create(NS + "A"));
+
+    private final OWLObjectPropertyAssertionAxiom ab = df.getOWLObjectPropertyAssertionAxiom(r, a, b);
+
+    private final OWLObjectPropertyAssertionAxiom ac = df.getOWLObjectPropertyAssertionAxiom(r, a, c);
+
+    private OWLOntologyManager man;
+
+    private OWLOntology onto;
+
+    /**
+     * An aspect store that keeps its assertions in a map and cannot report changes to them.
+     */
+    private static final class QuietAspectStore implements AspectStore {
+
+        private final Map<OWLAxiom, Set<OWLClass>> aspects = new ConcurrentHashMap<>();
+
+        @Override
+        public Set<OWLClass> getAssertedAspects(OWLOntology onto, OWLAxiom joinPointAxiom) {
+            return Set.copyOf(aspects.getOrDefault(joinPointAxiom, Collections.emptySet()));
+        }
+
+        @Override
+        public void addAspect(OWLOntology onto, OWLAxiom joinPointAxiom, OWLClass aspect) {
+            aspects.computeIfAbsent(joinPointAxiom, ax -> ConcurrentHashMap.newKeySet()).add(aspect);
+        }
+    }
+
+    @BeforeAll
+    static void useQuietAspectStore() {
+        AspectManagerProviders.setProvider(new AspectManagerProvider() {
+            @Override
+            public boolean isAvailable() {
+                return true;
+            }
+
+            @Override
+            public int getPriority() {
+                return 0;
+            }
+
+            @Override
+            public AspectStore getAspectStore(OWLOntologyManager man) {
+                return stores.computeIfAbsent(man, m -> new QuietAspectStore());
+            }
+        });
+    }
+
+    @AfterAll
+    static void resetAspectStore() {
+        AspectManagerProviders.setProvider(null);
+        stores.clear();
+    }
+
+    @BeforeEach
+    void createOntology() throws OWLOntologyCreationException {
+        man = OWLManager.createOWLOntologyManager();
+        onto = man.createOntology(IRI.create(NS));
+        man.addAxiom(onto, ab);
+        man.addAxiom(onto, ac);
+    }
+
+    @AfterEach
+    void releaseOntology() {
+        SWRLBuiltInLibraryImpl.release(onto);
+    }
+
+    private AspectIndex newIndex(AspectStore store, JoinPointIndex joinPointIndex) {
+        return new AspectIndex(onto, store, joinPointIndex, new IriDictionary(), new IriDictionary(), new IriDictionary());
+    }
+
+    @Test
+    void keepsCachedAspectsUntilInvalidated() {
+        var store = new QuietAspectStore();
+        store.addAspect(onto, ab, aspect);
+        var joinPointIndex = new JoinPointIndex(onto);
+        var index = newIndex(store, joinPointIndex);
+        try {
+            assertEquals(Set.of(aspect), index.getAspects(ab));
+            assertEquals(Set.of(ab), index.getJoinPoints(aspect));
+
+            // not reported by the store, so not seen before the index is invalidated
+            store.addAspect(onto, ac, aspect);
+            assertFalse(index.hasAspect(ac, aspect));
+            assertEquals(Set.of(ab), index.getJoinPoints(aspect));
+
+            index.invalidate();
+            assertTrue(index.hasAspect(ac, aspect));
+            assertEquals(Set.of(ab, ac), index.getJoinPoints(aspect));
+        } finally {
+            index.dispose();
+            joinPointIndex.dispose();
+        }
+    }
+
+    @Test
+    void registersAspectsAddedThroughTheIndex() {
+        var store = new QuietAspectStore();
+        var joinPointIndex = new JoinPointIndex(onto);
+        var index = newIndex(store, joinPointIndex);
+        try {
+            assertTrue(index.getJoinPoints(aspect).isEmpty());
+            store.addAspect(onto, ab, aspect);
+            index.addAspect(ab, aspect);
+            assertTrue(index.hasAspect(ab, aspect));
+            assertEquals(Set.of(ab), index.getJoinPoints(aspect));
+
+            // a change of the join point axiom drops its entry, which is reloaded from the store
+            man.removeAxiom(onto, ab);
+            assertEquals(Set.of(aspect), index.getAspects(ab));
+        } finally {
+            index.dispose();
+            joinPointIndex.dispose();
+        }
+    }
+
+    @Test
+    void followsReportingStore() {
+        var store = new InMemoryAspectStore();
+        var joinPointIndex = new JoinPointIndex(onto);
+        var index = newIndex(store, joinPointIndex);
+        try {
+            assertTrue(index.getJoinPoints(aspect).isEmpty());
+            store.addAspect(onto, ab, aspect);
+            assertEquals(Set.of(ab), index.getJoinPoints(aspect));
+            store.clear(onto);
+            assertTrue(index.getJoinPoints(aspect).isEmpty());
+            assertFalse(index.hasAspect(ab, aspect));
+        } finally {
+            index.dispose();
+            joinPointIndex.dispose();
+        }
+    }
+
+    @Test
+    void aspectOPASeesAssertionsOnceInvalidated() throws Exception {
+        var invoker = new BuiltInTestInvoker(onto);
+        var store = AspectManagerProviders.getAspectStore(man);
+        store.addAspect(onto, ab, aspect);
+        var objects = invoker.unbound();
+        assertTrue(invoker.invoke("aspectOPA", invoker.argument(aspect), invoker.argument(r), invoker.argument(a), objects));
+        assertEquals(Set.of(b), values(objects));
+
+        store.addAspect(onto, ac, aspect);
+        assertFalse(invoker.invoke("aspectOPA", invoker.argument(aspect), invoker.argument(r), invoker.argument(a), invoker.argument(c)));
+
+        SWRLBuiltInLibraryImpl.invalidateAspects(onto);
+        assertTrue(invoker.invoke("aspectOPA", invoker.argument(aspect), invoker.argument(r), invoker.argument(a), invoker.argument(c)));
+        objects = invoker.unbound();
+        assertTrue(invoker.invoke("aspectOPA", invoker.argument(aspect), invoker.argument(r), invoker.argument(a), objects));
+        assertEquals(Set.of(b, c), values(objects));
+    }
+}
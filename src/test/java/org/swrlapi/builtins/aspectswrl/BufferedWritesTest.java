@@ -0,0 +1,144 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.swrlapi.builtins.aspectswrl.BuiltInTestInvoker.boundClass;
+import static org.swrlapi.builtins.aspectswrl.BuiltInTestInvoker.values;
+
+/**
+ * Tests buffered write mode with the headless aspect store: built-ins evaluated before a flush see the writes queued
+ * by earlier ones, and the queued writes reach the ontology and the store when they are flushed, explicitly or when the
+ * rule engine resets the library.
+ *
+ * @author ralph
+ */
+class BufferedWritesTest {
+
+    private static final String NS = "http://example.org/buffered#";
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    private final OWLObjectProperty r = df.getOWLObjectProperty(IRI.create(NS + "r"));
+
+    private final OWLObjectProperty s = df.getOWLObjectProperty(IRI.create(NS + "s"));
+
+    private final OWLNamedIndividual a = df.getOWLNamedIndividual(IRI.create(NS + "a"));
+
+    private final OWLNamedIndividual b = df.getOWLNamedIndividual(IRI.create(NS + "b"));
+
+    private final OWLClass aspect = df.getOWLClass(IRI.create(NS + "A"));
+
+    private final OWLClass superAspect = df.getOWLClass(IRI.create(NS + "Super"));
+
+    private OWLOntology onto;
+
+    private AspectStore aspectStore;
+
+    private BuiltInTestInvoker invoker;
+
+    @BeforeAll
+    static void useHeadlessAspectStore() {
+        AspectManagerProviders.setProvider(new HeadlessAspectManagerProvider());
+    }
+
+    @AfterAll
+    static void resetAspectStore() {
+        AspectManagerProviders.setProvider(null);
+    }
+
+    @BeforeEach
+    void createOntology() throws OWLOntologyCreationException {
+        OWLOntologyManager man = OWLManager.createOWLOntologyManager();
+        onto = man.createOntology(IRI.create(NS));
+        man.addAxiom(onto, df.getOWLObjectPropertyAssertionAxiom(r, a, b));
+        man.addAxiom(onto, df.getOWLSubClassOfAxiom(aspect, superAspect));
+        aspectStore = AspectManagerProviders.getAspectStore(man);
+        assertTrue(aspectStore.isIndexed());
+        invoker = new BuiltInTestInvoker(onto);
+        SWRLBuiltInLibraryImpl.setBufferedWrites(onto, true);
+    }
+
+    @AfterEach
+    void releaseOntology() {
+        SWRLBuiltInLibraryImpl.release(onto);
+    }
+
+    @Test
+    void readsAspectsOfPendingAssertions() throws Exception {
+        var minted = invoker.unbound();
+        assertTrue(invoker.invoke("createOPA", invoker.argument(s), invoker.argument(a), invoker.argument(b), minted));
+        OWLClass mintedAspect = boundClass(minted);
+        var pendingOPA = df.getOWLObjectPropertyAssertionAxiom(s, a, b);
+        assertFalse(onto.containsAxiom(pendingOPA));
+
+        assertTrue(invoker.invoke("opa", invoker.argument(mintedAspect), invoker.argument(s), invoker.argument(a), invoker.argument(b)));
+        var aspects = invoker.unbound();
+        assertTrue(invoker.invoke("opa", aspects, invoker.argument(s), invoker.argument(a), invoker.argument(b)));
+        assertEquals(Set.of(mintedAspect), values(aspects));
+        var objects = invoker.unbound();
+        assertTrue(invoker.invoke("aspectOPA", invoker.argument(mintedAspect), invoker.argument(s), invoker.argument(a), objects));
+        assertEquals(Set.of(b), values(objects));
+
+        // re-firing is recognized as a duplicate before the flush
+        assertTrue(invoker.invoke("createOPA", invoker.argument(s), invoker.argument(a), invoker.argument(b), invoker.unbound()));
+        assertEquals(1, invoker.getLibrary().getSuppressedDuplicateCount());
+    }
+
+    @Test
+    void readsPendingAspectsOfAssertedAssertions() throws Exception {
+        var opa = df.getOWLObjectPropertyAssertionAxiom(r, a, b);
+        assertTrue(invoker.invoke("createOPA", invoker.argument(r), invoker.argument(a), invoker.argument(b), invoker.argument(aspect)));
+        assertTrue(aspectStore.getAssertedAspects(onto, opa).isEmpty());
+
+        assertTrue(invoker.invoke("opa", invoker.argument(aspect), invoker.argument(r), invoker.argument(a), invoker.argument(b)));
+        assertTrue(invoker.invoke("opaSub", invoker.argument(superAspect), invoker.argument(r), invoker.argument(a), invoker.argument(b)));
+        var subjects = invoker.unbound();
+        assertTrue(invoker.invoke("aspectOPA", invoker.argument(aspect), invoker.argument(r), subjects, invoker.argument(b)));
+        assertEquals(Set.of(a), values(subjects));
+
+        assertTrue(invoker.invoke("createOPA", invoker.argument(r), invoker.argument(a), invoker.argument(b), invoker.argument(aspect)));
+        assertEquals(1, invoker.getLibrary().getSuppressedDuplicateCount());
+
+        invoker.getLibrary().flush();
+        assertEquals(Set.of(aspect), aspectStore.getAssertedAspects(onto, opa));
+        assertTrue(invoker.invoke("opa", invoker.argument(aspect), invoker.argument(r), invoker.argument(a), invoker.argument(b)));
+    }
+
+    @Test
+    void flushesPendingWritesOnReset() throws Exception {
+        var minted = invoker.unbound();
+        assertTrue(invoker.invoke("createOPA", invoker.argument(s), invoker.argument(a), invoker.argument(b), minted));
+        OWLClass mintedAspect = boundClass(minted);
+        assertTrue(invoker.invoke("createNegativeOPA", invoker.argument(r), invoker.argument(b), invoker.argument(a), invoker.argument(aspect)));
+        var pendingOPA = df.getOWLObjectPropertyAssertionAxiom(s, a, b);
+        var pendingNOPA = df.getOWLNegativeObjectPropertyAssertionAxiom(r, b, a);
+        assertFalse(onto.containsAxiom(pendingOPA));
+        assertFalse(onto.containsAxiom(pendingNOPA));
+
+        // the rule engine resets the library after evaluating the rules
+        invoker.reset();
+        assertTrue(onto.containsAxiom(df.getOWLDeclarationAxiom(mintedAspect)));
+        assertTrue(onto.containsAxiom(pendingOPA));
+        assertTrue(onto.containsAxiom(pendingNOPA));
+        assertEquals(Set.of(mintedAspect), aspectStore.getAssertedAspects(onto, pendingOPA));
+        assertEquals(Set.of(aspect), aspectStore.getAssertedAspects(onto, pendingNOPA));
+
+        // nothing left to flush, and the mode stays on for the next evaluation
+        invoker.reset();
+        assertTrue(SWRLBuiltInLibraryImpl.isBufferedWrites(onto));
+        var next = df.getOWLObjectPropertyAssertionAxiom(s, b, a);
+        assertTrue(invoker.invoke("createOPA", invoker.argument(s), invoker.argument(b), invoker.argument(a), invoker.argument(aspect)));
+        assertFalse(onto.containsAxiom(next));
+        invoker.reset();
+        assertTrue(onto.containsAxiom(next));
+    }
+}
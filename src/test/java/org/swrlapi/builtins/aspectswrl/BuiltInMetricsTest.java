@@ -0,0 +1,129 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.swrlapi.exceptions.SWRLBuiltInException;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the counts and histograms {@link BuiltInMetrics} records for built-in invocations, tagged by built-in and
+ * rule. Each test invokes the built-ins from rules of its own, since the metrics are JVM-wide.
+ *
+ * @author ralph
+ */
+class BuiltInMetricsTest {
+
+    private static final String NS = "http://example.org/metrics#";
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    private final OWLObjectProperty r = df.getOWLObjectProperty(IRI.create(NS + "r"));
+
+    private final OWLNamedIndividual a = df.getOWLNamedIndividual(IRI.create(NS + "a"));
+
+    private final OWLNamedIndividual b = df.getOWLNamedIndividual(IRI.create(NS + "b"));
+
+    private final OWLClass aspect = df.getOWLClass(IRI.create(NS + "A"));
+
+    private final BuiltInMetrics metrics = BuiltInMetrics.getInstance();
+
+    private OWLOntology onto;
+
+    private BuiltInTestInvoker invoker;
+
+    @BeforeAll
+    static void useHeadlessAspectStore() {
+        AspectManagerProviders.setProvider(new HeadlessAspectManagerProvider());
+    }
+
+    @AfterAll
+    static void resetAspectStore() {
+        AspectManagerProviders.setProvider(null);
+    }
+
+    @BeforeEach
+    void createOntology() throws OWLOntologyCreationException {
+        onto = OWLManager.createOWLOntologyManager().createOntology(IRI.create(NS));
+        invoker = new BuiltInTestInvoker(onto);
+    }
+
+    @AfterEach
+    void releaseOntology() {
+        metrics.setEnabled(true);
+        SWRLBuiltInLibraryImpl.release(onto);
+    }
+
+    private BuiltInMetricsSnapshot snapshot(String builtIn, String rule) {
+        return metrics.getSnapshots().stream()
+                .filter(snapshot -> snapshot.getBuiltIn().equals(builtIn) && snapshot.getRule().equals(rule))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No metrics for " + builtIn + " in " + rule));
+    }
+
+    @Test
+    void countsOutcomesPerBuiltInAndRule() throws Exception {
+        assertTrue(invoker.invokeInRule("counts", "createOPA", invoker.argument(r), invoker.argument(a), invoker.argument(b), invoker.argument(aspect)));
+        assertTrue(invoker.invokeInRule("counts", "opa", invoker.argument(aspect), invoker.argument(r), invoker.argument(a), invoker.argument(b)));
+        assertFalse(invoker.invokeInRule("counts", "opa", invoker.argument(aspect), invoker.argument(r), invoker.argument(b), invoker.argument(a)));
+        assertThrows(SWRLBuiltInException.class, () -> invoker.invokeInRule("counts", "opa", invoker.argument(aspect), invoker.argument(r)));
+        assertTrue(invoker.invokeInRule("other", "opa", invoker.argument(aspect), invoker.argument(r), invoker.argument(a), invoker.argument(b)));
+
+        var opa = snapshot("opa", "counts");
+        assertEquals(3, opa.getInvocations());
+        assertEquals(1, opa.getSatisfied());
+        assertEquals(1, opa.getUnsatisfied());
+        assertEquals(1, opa.getErrors());
+        assertEquals(3, Arrays.stream(opa.getLatencyHistogram()).sum());
+        assertTrue(opa.getLatencyP50Nanos() <= opa.getLatencyP99Nanos());
+        assertEquals(0, opa.getAxiomsWritten());
+        assertEquals(1, snapshot("opa", "other").getInvocations());
+
+        // the declaration is not written, since the aspect is bound
+        var createOPA = snapshot("createOPA", "counts");
+        assertEquals(1, createOPA.getInvocations());
+        assertEquals(1, createOPA.getAxiomsWritten());
+        assertEquals(1, createOPA.getAspectsWritten());
+        assertTrue(metrics.getTotalInvocations() >= 5);
+    }
+
+    @Test
+    void recordsMultiValueResultSizes() throws Exception {
+        OWLClass other = df.getOWLClass(IRI.create(NS + "B"));
+        assertTrue(invoker.invokeInRule("sizes", "createOPA", invoker.argument(r), invoker.argument(a), invoker.argument(b), invoker.argument(aspect)));
+        assertTrue(invoker.invokeInRule("sizes", "createOPA", invoker.argument(r), invoker.argument(a), invoker.argument(b), invoker.argument(other)));
+        assertTrue(invoker.invokeInRule("sizes", "opa", invoker.unbound(), invoker.argument(r), invoker.argument(a), invoker.argument(b)));
+        // an assertion without aspects binds an empty result
+        onto.getOWLOntologyManager().addAxiom(onto, df.getOWLObjectPropertyAssertionAxiom(r, b, a));
+        invoker.invokeInRule("sizes", "opa", invoker.unbound(), invoker.argument(r), invoker.argument(b), invoker.argument(a));
+
+        var opa = snapshot("opa", "sizes");
+        assertEquals(2, opa.getTotalMultiValueResultSize());
+        long[] sizes = opa.getMultiValueResultSizeHistogram();
+        assertEquals(1, sizes[0]); // no aspects
+        assertEquals(1, sizes[2]); // two aspects
+    }
+
+    @Test
+    void recordsNothingWhileDisabled() throws Exception {
+        assertTrue(invoker.invokeInRule("toggled", "createOPA", invoker.argument(r), invoker.argument(a), invoker.argument(b), invoker.argument(aspect)));
+        metrics.setEnabled(false);
+        assertTrue(invoker.invokeInRule("toggled", "opa", invoker.argument(aspect), invoker.argument(r), invoker.argument(a), invoker.argument(b)));
+        assertTrue(metrics.getSnapshots().stream().noneMatch(snapshot -> snapshot.getRule().equals("toggled") && snapshot.getBuiltIn().equals("opa")));
+        assertEquals(1, snapshot("createOPA", "toggled").getInvocations());
+
+        metrics.setEnabled(true);
+        metrics.reset();
+        var reset = snapshot("createOPA", "toggled");
+        assertEquals(0, reset.getInvocations());
+        assertEquals(0, reset.getAxiomsWritten());
+        assertEquals(0, Arrays.stream(reset.getLatencyHistogram()).sum());
+    }
+}
@@ -0,0 +1,153 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.semanticweb.owlapi.model.*;
+import org.swrlapi.bridge.SWRLBuiltInBridge;
+import org.swrlapi.builtins.SWRLBuiltInLibrary;
+import org.swrlapi.builtins.arguments.*;
+import org.swrlapi.exceptions.SWRLBuiltInException;
+import org.swrlapi.factory.SWRLAPIFactory;
+import org.swrlapi.factory.SWRLAPIInternalFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+/**
+ * Invokes the built-ins of a {@link SWRLBuiltInLibraryImpl} directly, the way the rule engine does, so that tests can
+ * check their results without a rule engine. The built-in bridge handed to the library only provides the ontology and
+ * the argument factory.
+ *
+ * @author ralph
+ */
+class BuiltInTestInvoker {
+
+    private final SWRLBuiltInLibraryImpl library = new SWRLBuiltInLibraryImpl();
+
+    private final OWLOntology onto;
+
+    private final SWRLBuiltInBridge bridge;
+
+    private final SWRLBuiltInArgumentFactory argumentFactory;
+
+    private int variableCount = 0;
+
+    BuiltInTestInvoker(OWLOntology onto) {
+        this.onto = onto;
+        String namespace = onto.getOntologyID().getOntologyIRI().map(IRI::toString).orElse("http://example.org/test") + "#";
+        this.argumentFactory = SWRLAPIInternalFactory.createSWRLBuiltInArgumentFactory(SWRLAPIFactory.createIRIResolver(namespace));
+        this.bridge = (SWRLBuiltInBridge) Proxy.newProxyInstance(SWRLBuiltInLibrary.class.getClassLoader(), new Class<?>[] { SWRLBuiltInBridge.class }, (proxy, method, args) -> {
+            if (method.getReturnType() == OWLOntology.class) {
+                return onto;
+            } else if (method.getReturnType() == SWRLBuiltInArgumentFactory.class) {
+                return argumentFactory;
+            } else if (method.getName().equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (method.getName().equals("equals")) {
+                return proxy == args[0];
+            } else if (method.getName().equals("toString")) {
+                return "test built-in bridge";
+            }
+            throw new UnsupportedOperationException("Not available in tests: " + method.getName());
+        });
+    }
+
+    SWRLBuiltInLibraryImpl getLibrary() {
+        return library;
+    }
+
+    OWLOntology getOntology() {
+        return onto;
+    }
+
+    boolean invoke(String builtInName, SWRLBuiltInArgument... arguments) throws SWRLBuiltInException {
+        return invokeInRule("test", builtInName, arguments);
+    }
+
+    /**
+     * Invokes the built-in as if from the rule of the given name, which tags its metrics.
+     */
+    boolean invokeInRule(String ruleName, String builtInName, SWRLBuiltInArgument... arguments) throws SWRLBuiltInException {
+        Method method;
+        try {
+            method = SWRLBuiltInLibraryImpl.class.getMethod(builtInName, List.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("No such built-in: " + builtInName, e);
+        }
+        return library.invokeBuiltInMethod(method, bridge, ruleName, SWRLBuiltInLibraryImpl.PREFIX, builtInName, 0, false, new ArrayList<>(Arrays.asList(arguments)));
+    }
+
+    /**
+     * Resets the library, as the rule engine does before and after evaluating rules.
+     */
+    void reset() {
+        library.invokeResetMethod(bridge);
+    }
+
+    SWRLBuiltInArgument unbound() {
+        return argumentFactory.getUnboundVariableBuiltInArgument(IRI.create("http://example.org/test#v" + variableCount++));
+    }
+
+    SWRLBuiltInArgument argument(OWLClass cls) {
+        return argumentFactory.getClassBuiltInArgument(cls);
+    }
+
+    SWRLBuiltInArgument argument(OWLClassExpression ce) {
+        return argumentFactory.getClassExpressionBuiltInArgument(ce);
+    }
+
+    SWRLBuiltInArgument argument(OWLObjectProperty op) {
+        return argumentFactory.getObjectPropertyBuiltInArgument(op);
+    }
+
+    SWRLBuiltInArgument argument(OWLNamedIndividual individual) {
+        return argumentFactory.getNamedIndividualBuiltInArgument(individual);
+    }
+
+    SWRLBuiltInArgument argument(boolean b) {
+        return argumentFactory.getLiteralBuiltInArgument(b);
+    }
+
+    SWRLBuiltInArgument argument(int i) {
+        return argumentFactory.getLiteralBuiltInArgument(i);
+    }
+
+    /**
+     * @return the values the built-in bound to the given (formerly unbound) variable argument: the entities or
+     * literals of a multi-value result, or of a single result
+     */
+    static Set<OWLObject> values(SWRLBuiltInArgument variable) {
+        var result = variable.asVariable().getBuiltInResult();
+        if (result.isEmpty()) {
+            return Collections.emptySet();
+        }
+        List<SWRLBuiltInArgument> arguments = result.get() instanceof SWRLMultiValueVariableBuiltInArgument
+                ? ((SWRLMultiValueVariableBuiltInArgument) result.get()).getArguments()
+                : List.of(result.get());
+        Set<OWLObject> values = new HashSet<>();
+        for (SWRLBuiltInArgument argument : arguments) {
+            if (argument instanceof SWRLClassBuiltInArgument) {
+                values.add(((SWRLClassBuiltInArgument) argument).getOWLClass());
+            } else if (argument instanceof SWRLNamedIndividualBuiltInArgument) {
+                values.add(((SWRLNamedIndividualBuiltInArgument) argument).getOWLNamedIndividual());
+            } else if (argument instanceof SWRLObjectPropertyBuiltInArgument) {
+                values.add(((SWRLObjectPropertyBuiltInArgument) argument).getOWLObjectProperty());
+            } else if (argument instanceof SWRLLiteralBuiltInArgument) {
+                values.add(((SWRLLiteralBuiltInArgument) argument).getLiteral());
+            } else {
+                throw new IllegalArgumentException("Unexpected result " + argument);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the single class bound to the given variable argument
+     */
+    static OWLClass boundClass(SWRLBuiltInArgument variable) {
+        var values = values(variable);
+        if (values.size() != 1) {
+            throw new IllegalStateException("Expected a single bound class, got " + values);
+        }
+        return (OWLClass) values.iterator().next();
+    }
+}
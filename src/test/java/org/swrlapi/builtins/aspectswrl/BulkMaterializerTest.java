@@ -0,0 +1,202 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.swrlapi.builtins.aspectswrl.BuiltInTestInvoker.values;
+
+/**
+ * Tests that {@link BulkMaterializer} computes the same results and writes the same axioms and aspect assertions as
+ * invoking the opa and createOPA built-ins for each matching assertion, on two ontologies with the same assertions.
+ *
+ * @author ralph
+ */
+class BulkMaterializerTest {
+
+    private static final String NS = "http://example.org/bulk#";
+
+    private static final int INDIVIDUALS = 20;
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    private final OWLObjectProperty r = df.getOWLObjectProperty(IRI.create(NS + "r"));
+
+    private final OWLObjectProperty s = df.getOWLObjectProperty(IRI.create(NS + "s"));
+
+    private final OWLClass aspect = df.getOWLClass(IRI.create(NS + "A"));
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    /**
+     * Ontology the built-ins are invoked on one assertion at a time
+     */
+    private OWLOntology perCall;
+
+    /**
+     * Ontology with the same assertions, materialized in bulk
+     */
+    private OWLOntology bulk;
+
+    private BuiltInTestInvoker invoker;
+
+    @BeforeAll
+    static void useHeadlessAspectStore() {
+        AspectManagerProviders.setProvider(new HeadlessAspectManagerProvider());
+    }
+
+    @AfterAll
+    static void resetAspectStore() {
+        AspectManagerProviders.setProvider(null);
+    }
+
+    @BeforeEach
+    void createOntologies() throws OWLOntologyCreationException {
+        perCall = createOntology();
+        bulk = createOntology();
+        invoker = new BuiltInTestInvoker(perCall);
+    }
+
+    @AfterEach
+    void releaseOntologies() {
+        SWRLBuiltInLibraryImpl.release(perCall);
+        SWRLBuiltInLibraryImpl.release(bulk);
+        pool.shutdown();
+    }
+
+    private OWLNamedIndividual i(int n) {
+        return df.getOWLNamedIndividual(IRI.create(NS + "i" + n));
+    }
+
+    private OWLOntology createOntology() throws OWLOntologyCreationException {
+        OWLOntologyManager man = OWLManager.createOWLOntologyManager();
+        OWLOntology onto = man.createOntology(IRI.create(NS));
+        for (int n = 0; n < INDIVIDUALS; n++) {
+            man.addAxiom(onto, df.getOWLObjectPropertyAssertionAxiom(r, i(n), i((n * 3 + 1) % INDIVIDUALS)));
+            man.addAxiom(onto, df.getOWLObjectPropertyAssertionAxiom(r, i(n), i((n + 2) % INDIVIDUALS)));
+            man.addAxiom(onto, df.getOWLObjectPropertyAssertionAxiom(s, i(n), i(n)));
+        }
+        return onto;
+    }
+
+    private static boolean even(OWLIndividual individual) {
+        return Integer.parseInt(individual.asOWLNamedIndividual().getIRI().getShortForm().substring(1)) % 2 == 0;
+    }
+
+    /**
+     * Invokes createOPA for each assertion of r in the per-call ontology whose subject satisfies the filter.
+     */
+    private void createPerCall(OWLClass boundAspect, boolean evenSubjectsOnly) throws Exception {
+        // copied, since createOPA adds declarations to the ontology
+        for (OWLObjectPropertyAssertionAxiom ax : new ArrayList<>(perCall.getAxioms(AxiomType.OBJECT_PROPERTY_ASSERTION))) {
+            if (!ax.getProperty().equals(r) || evenSubjectsOnly && !even(ax.getSubject())) {
+                continue;
+            }
+            var aspectArg = boundAspect != null ? invoker.argument(boundAspect) : invoker.unbound();
+            assertTrue(invoker.invoke("createOPA", invoker.argument(r), invoker.argument(ax.getSubject().asOWLNamedIndividual()), invoker.argument(ax.getObject().asOWLNamedIndividual()), aspectArg));
+        }
+    }
+
+    /**
+     * @return the aspects opa finds for each assertion of r in the per-call ontology that holds in some aspect
+     */
+    private Map<OWLObjectPropertyAssertionAxiom, Set<OWLClass>> opaPerCall() throws Exception {
+        Map<OWLObjectPropertyAssertionAxiom, Set<OWLClass>> contextualizations = new HashMap<>();
+        for (OWLObjectPropertyAssertionAxiom ax : perCall.getAxioms(AxiomType.OBJECT_PROPERTY_ASSERTION)) {
+            if (!ax.getProperty().equals(r)) {
+                continue;
+            }
+            var aspects = invoker.unbound();
+            if (invoker.invoke("opa", aspects, invoker.argument(r), invoker.argument(ax.getSubject().asOWLNamedIndividual()), invoker.argument(ax.getObject().asOWLNamedIndividual()))) {
+                Set<OWLClass> classes = new HashSet<>();
+                values(aspects).forEach(aspect -> classes.add((OWLClass) aspect));
+                contextualizations.put(ax, classes);
+            }
+        }
+        return contextualizations;
+    }
+
+    private static Map<OWLAxiom, Set<OWLClass>> assertedAspects(OWLOntology onto) {
+        var store = AspectManagerProviders.getAspectStore(onto.getOWLOntologyManager());
+        Map<OWLAxiom, Set<OWLClass>> aspects = new HashMap<>();
+        for (OWLObjectPropertyAssertionAxiom ax : onto.getAxioms(AxiomType.OBJECT_PROPERTY_ASSERTION)) {
+            var asserted = store.getAssertedAspects(onto, ax);
+            if (!asserted.isEmpty()) {
+                aspects.put(ax, asserted);
+            }
+        }
+        return aspects;
+    }
+
+    @Test
+    void createsSameAspectsAsBuiltIn() throws Exception {
+        createPerCall(null, false);
+        var materializer = new BulkMaterializer(bulk, pool);
+        var result = materializer.createOPA(MaterializationPattern.forProperty(r));
+
+        assertEquals(2 * INDIVIDUALS, result.getMatched());
+        assertEquals(2 * INDIVIDUALS, result.getAxiomsWritten());
+        assertEquals(2 * INDIVIDUALS, result.getAspectsWritten());
+        assertEquals(0, result.getSuppressedDuplicates());
+        assertEquals(perCall.getAxioms(), bulk.getAxioms());
+        assertEquals(assertedAspects(perCall), assertedAspects(bulk));
+        assertEquals(opaPerCall(), result.getContextualizations());
+
+        // materializing again only finds duplicates, like re-firing the built-in
+        var again = materializer.createOPA(MaterializationPattern.forProperty(r));
+        assertEquals(2 * INDIVIDUALS, again.getSuppressedDuplicates());
+        assertEquals(0, again.getAxiomsWritten());
+        assertEquals(0, again.getAspectsWritten());
+        assertEquals(result.getContextualizations(), again.getContextualizations());
+        assertEquals(perCall.getAxioms(), bulk.getAxioms());
+    }
+
+    @Test
+    void contextualizesUnderBoundAspectLikeBuiltIn() throws Exception {
+        createPerCall(aspect, true);
+        var pattern = MaterializationPattern.forProperty(r)
+                .withSubjects(BulkMaterializerTest::even)
+                .withAspect(MaterializationPattern.AspectPolicy.bound(aspect));
+        var result = new BulkMaterializer(bulk, pool).createOPA(pattern);
+
+        assertEquals(INDIVIDUALS, result.getMatched());
+        assertEquals(0, result.getAxiomsWritten());
+        assertEquals(INDIVIDUALS, result.getAspectsWritten());
+        assertEquals(perCall.getAxioms(), bulk.getAxioms());
+        assertEquals(assertedAspects(perCall), assertedAspects(bulk));
+        result.getContextualizations().values().forEach(aspects -> assertEquals(Set.of(aspect), aspects));
+    }
+
+    @Test
+    void findsSameAspectsAsBuiltIn() throws Exception {
+        // the same mix of minted and bound aspects on both ontologies
+        createPerCall(null, true);
+        createPerCall(aspect, false);
+        var materializer = new BulkMaterializer(bulk, pool);
+        materializer.createOPA(MaterializationPattern.forProperty(r).withSubjects(BulkMaterializerTest::even));
+        materializer.createOPA(MaterializationPattern.forProperty(r).withAspect(MaterializationPattern.AspectPolicy.bound(aspect)));
+
+        var found = materializer.opa(MaterializationPattern.forProperty(r));
+        assertEquals(2 * INDIVIDUALS, found.getMatched());
+        assertEquals(opaPerCall(), found.getContextualizations());
+
+        var inAspect = materializer.opa(MaterializationPattern.forProperty(r).withObjects(BulkMaterializerTest::even).withAspect(MaterializationPattern.AspectPolicy.bound(aspect)));
+        for (var entry : inAspect.getContextualizations().entrySet()) {
+            assertTrue(even(entry.getKey().getObject()));
+            assertEquals(Set.of(aspect), entry.getValue());
+            assertTrue(invoker.invoke("opa", invoker.argument(aspect), invoker.argument(r), invoker.argument(entry.getKey().getSubject().asOWLNamedIndividual()), invoker.argument(entry.getKey().getObject().asOWLNamedIndividual())));
+        }
+        assertEquals(inAspect.getMatched(), inAspect.getContextualizations().size());
+
+        // no assertion of s holds in an aspect
+        assertTrue(materializer.opa(MaterializationPattern.forProperty(s)).getContextualizations().isEmpty());
+    }
+}
@@ -0,0 +1,190 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests writing a {@link ChangeJournal} through an ontology context and replaying it onto a fresh ontology, including
+ * the handling of a torn last record.
+ *
+ * @author ralph
+ */
+class ChangeJournalTest {
+
+    private static final String NS = "http://example.org/journal#";
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    private final OWLObjectProperty r = df.getOWLObjectProperty(IRI.create(NS + "r"));
+
+    private final OWLObjectProperty before = df.getOWLObjectProperty(IRI.create(NS + "before"));
+
+    private final List<OWLOntology> ontologies = new ArrayList<>();
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void useHeadlessAspectStore() {
+        AspectManagerProviders.setProvider(new HeadlessAspectManagerProvider());
+    }
+
+    @AfterAll
+    static void resetAspectStore() {
+        AspectManagerProviders.setProvider(null);
+    }
+
+    @AfterEach
+    void releaseOntologies() {
+        ontologies.forEach(SWRLBuiltInLibraryImpl::release);
+    }
+
+    private OWLOntology newOntology() throws OWLOntologyCreationException {
+        OWLOntology onto = OWLManager.createOWLOntologyManager().createOntology(IRI.create(NS));
+        ontologies.add(onto);
+        return onto;
+    }
+
+    private OWLNamedIndividual i(String name) {
+        return df.getOWLNamedIndividual(IRI.create(NS + name));
+    }
+
+    private OWLClass c(String name) {
+        return df.getOWLClass(IRI.create(NS + name));
+    }
+
+    /**
+     * Writes the axioms the built-ins write, and an aspect assertion for the given assertion, through the context of
+     * the given ontology.
+     */
+    private Set<OWLAxiom> write(OWLOntology onto, OWLObjectPropertyAssertionAxiom joinPointAxiom, OWLClass aspect) {
+        Set<OWLAxiom> axioms = new LinkedHashSet<>();
+        axioms.add(df.getOWLDeclarationAxiom(aspect));
+        axioms.add(df.getOWLDeclarationAxiom(joinPointAxiom.getSubject().asOWLNamedIndividual()));
+        axioms.add(joinPointAxiom);
+        axioms.add(df.getOWLNegativeObjectPropertyAssertionAxiom(r, joinPointAxiom.getObject(), joinPointAxiom.getSubject()));
+        axioms.add(df.getOWLEquivalentClassesAxiom(c("T" + aspect.getIRI().getShortForm()), df.getOWLObjectUnionOf(df.getOWLObjectOneOf(i("t0")), df.getOWLObjectHasValue(before, i("t0")))));
+        axioms.add(df.getOWLEquivalentClassesAxiom(c("U" + aspect.getIRI().getShortForm()), df.getOWLObjectHasValue(before, i("t1"))));
+        List<OWLAxiomChange> changes = new ArrayList<>();
+        axioms.forEach(ax -> changes.add(new AddAxiom(onto, ax)));
+        OntologyContext context = OntologyContext.get(onto);
+        context.applyChanges(changes, false);
+        context.addAspect(joinPointAxiom, aspect, false);
+        return axioms;
+    }
+
+    private static Set<OWLClass> aspects(OWLOntology onto, OWLAxiom joinPointAxiom) {
+        return AspectManagerProviders.getAspectStore(onto.getOWLOntologyManager()).getAssertedAspects(onto, joinPointAxiom);
+    }
+
+    @Test
+    void replaysWrittenRecords() throws Exception {
+        Path file = dir.resolve("journal");
+        OWLOntology onto = newOntology();
+        var opa = df.getOWLObjectPropertyAssertionAxiom(r, i("a"), i("b"));
+        try (ChangeJournal journal = ChangeJournal.open(file, 10)) {
+            SWRLBuiltInLibraryImpl.setJournal(onto, journal);
+            write(onto, opa, c("A"));
+            // buffered writes are journaled when they are flushed
+            SWRLBuiltInLibraryImpl.setBufferedWrites(onto, true);
+            var context = OntologyContext.get(onto);
+            var buffered = df.getOWLObjectPropertyAssertionAxiom(r, i("b"), i("c"));
+            context.applyChanges(List.of(new AddAxiom(onto, buffered)), true);
+            context.addAspect(buffered, c("B"), true);
+            SWRLBuiltInLibraryImpl.flush(onto);
+            SWRLBuiltInLibraryImpl.setJournal(onto, null);
+        }
+
+        OWLOntology replayed = newOntology();
+        assertEquals(9, ChangeJournal.replay(file, replayed));
+        assertEquals(onto.getAxioms(), replayed.getAxioms());
+        assertEquals(Set.of(c("A")), aspects(replayed, opa));
+        assertEquals(Set.of(c("B")), aspects(replayed, df.getOWLObjectPropertyAssertionAxiom(r, i("b"), i("c"))));
+        // replayed aspects are visible through the indexes
+        assertTrue(OntologyContext.get(replayed).hasAspect(opa, c("A"), Imports.EXCLUDED));
+    }
+
+    @Test
+    void cutsOffTornRecordOnOpen() throws Exception {
+        Path file = dir.resolve("torn");
+        OWLOntology onto = newOntology();
+        var first = df.getOWLObjectPropertyAssertionAxiom(r, i("a"), i("b"));
+        try (ChangeJournal journal = ChangeJournal.open(file, 10)) {
+            SWRLBuiltInLibraryImpl.setJournal(onto, journal);
+            write(onto, first, c("A"));
+        }
+        long complete = Files.size(file);
+        Files.write(file, ("A P " + NS + "r " + NS + "a").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        // replay skips the torn record
+        assertEquals(7, ChangeJournal.replay(file, newOntology()));
+
+        // reopening cuts it off, so that new records start on a line of their own
+        var second = df.getOWLObjectPropertyAssertionAxiom(r, i("c"), i("d"));
+        try (ChangeJournal journal = ChangeJournal.open(file, 10)) {
+            assertEquals(complete, Files.size(file));
+            SWRLBuiltInLibraryImpl.setJournal(onto, journal);
+            write(onto, second, c("C"));
+        }
+        String content = Files.readString(file, StandardCharsets.UTF_8);
+        assertTrue(content.endsWith("\n"));
+        assertEquals(14, content.lines().count());
+
+        OWLOntology replayed = newOntology();
+        assertEquals(14, ChangeJournal.replay(file, replayed));
+        assertEquals(onto.getAxioms(), replayed.getAxioms());
+        assertEquals(Set.of(c("A")), aspects(replayed, first));
+        assertEquals(Set.of(c("C")), aspects(replayed, second));
+    }
+
+    @Test
+    void cutsOffJournalWithoutCompleteRecord() throws Exception {
+        Path file = dir.resolve("partial");
+        Files.writeString(file, "P " + NS + "r", StandardCharsets.UTF_8);
+        try (ChangeJournal journal = ChangeJournal.open(file)) {
+            assertEquals(0, Files.size(file));
+        }
+        assertEquals(0, ChangeJournal.replay(file, newOntology()));
+    }
+
+    @Test
+    void rejectsMalformedRecords() throws Exception {
+        Path file = dir.resolve("malformed");
+        Files.writeString(file, "X " + NS + "a\n", StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> ChangeJournal.replay(file, newOntology()));
+        Files.writeString(file, "P " + NS + "r\n", StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> ChangeJournal.replay(file, newOntology()));
+    }
+
+    @Test
+    void rejectsReplayOntoOntologyWithAttachedJournal() throws Exception {
+        Path file = dir.resolve("attached");
+        OWLOntology onto = newOntology();
+        try (ChangeJournal journal = ChangeJournal.open(file, 10)) {
+            SWRLBuiltInLibraryImpl.setJournal(onto, journal);
+            write(onto, df.getOWLObjectPropertyAssertionAxiom(r, i("a"), i("b")), c("A"));
+            journal.commit();
+            long size = Files.size(file);
+            assertThrows(IllegalStateException.class, () -> ChangeJournal.replay(file, onto));
+            journal.commit();
+            assertEquals(size, Files.size(file));
+            SWRLBuiltInLibraryImpl.setJournal(onto, null);
+        }
+        assertEquals(7, ChangeJournal.replay(file, onto));
+    }
+}
@@ -0,0 +1,142 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.swrlapi.builtins.aspectswrl.BuiltInTestInvoker.boundClass;
+
+/**
+ * Tests that {@link EntityMinter} mints the same IRIs for the same inputs, reports a minted entity as fresh until its
+ * declaration is applied or pending, however often it is minted, and that its memo stays bounded. Also tests that the
+ * built-ins count the creations they skip as suppressed duplicates.
+ *
+ * @author ralph
+ */
+class EntityMinterTest {
+
+    private static final String NS = "http://example.org/minter#";
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    private final OWLObjectProperty r = df.getOWLObjectProperty(IRI.create(NS + "r"));
+
+    private final OWLNamedIndividual a = df.getOWLNamedIndividual(IRI.create(NS + "a"));
+
+    private final OWLNamedIndividual b = df.getOWLNamedIndividual(IRI.create(NS + "b"));
+
+    private final OWLObjectProperty before = df.getOWLObjectProperty(IRI.create(NS + "before"));
+
+    private final OWLNamedIndividual t0 = df.getOWLNamedIndividual(IRI.create(NS + "t0"));
+
+    private final Set<OWLAxiom> pending = new HashSet<>();
+
+    private OWLOntology onto;
+
+    @BeforeAll
+    static void useHeadlessAspectStore() {
+        AspectManagerProviders.setProvider(new HeadlessAspectManagerProvider());
+    }
+
+    @AfterAll
+    static void resetAspectStore() {
+        AspectManagerProviders.setProvider(null);
+    }
+
+    @BeforeEach
+    void createOntology() throws OWLOntologyCreationException {
+        onto = OWLManager.createOWLOntologyManager().createOntology(IRI.create(NS));
+    }
+
+    @AfterEach
+    void releaseOntology() {
+        SWRLBuiltInLibraryImpl.release(onto);
+    }
+
+    @Test
+    void mintsSameIrisForSameInputs() throws OWLOntologyCreationException {
+        OWLOntology sameIRI = OWLManager.createOWLOntologyManager().createOntology(IRI.create(NS));
+        var minter = new EntityMinter(onto, pending::contains);
+        var other = new EntityMinter(sameIRI, pending::contains);
+        OWLClass minted = minter.mint(EntityType.CLASS, "createOPA", r, a, b).getEntity();
+        assertEquals(minted, other.mint(EntityType.CLASS, "createOPA", r, a, b).getEntity());
+        assertTrue(minted.getIRI().toString().startsWith(NS + "#createOPA-"));
+
+        assertNotEquals(minted, minter.mint(EntityType.CLASS, "createOPA", r, b, a).getEntity());
+        assertNotEquals(minted, minter.mint(EntityType.CLASS, "createNegativeOPA", r, a, b).getEntity());
+        assertNotEquals(minter.mint(EntityType.CLASS, "temporal", r, a, true).getEntity(), minter.mint(EntityType.CLASS, "temporal", r, a, false).getEntity());
+        assertNotEquals(minter.mintUnique(EntityType.NAMED_INDIVIDUAL, "temporal-instant"), minter.mintUnique(EntityType.NAMED_INDIVIDUAL, "temporal-instant"));
+    }
+
+    @Test
+    void staysFreshUntilDeclared() {
+        var minter = new EntityMinter(onto, pending::contains);
+        var minted = minter.mint(EntityType.CLASS, "createOPA", r, a, b);
+        assertTrue(minted.isFresh());
+
+        // a memo hit does not make the entity declared
+        var again = minter.mint(EntityType.CLASS, "createOPA", r, a, b);
+        assertEquals(minted.getEntity(), again.getEntity());
+        assertTrue(again.isFresh());
+
+        pending.add(df.getOWLDeclarationAxiom(minted.getEntity()));
+        assertFalse(minter.mint(EntityType.CLASS, "createOPA", r, a, b).isFresh());
+
+        pending.clear();
+        onto.getOWLOntologyManager().addAxiom(onto, df.getOWLDeclarationAxiom(minted.getEntity()));
+        assertFalse(minter.mint(EntityType.CLASS, "createOPA", r, a, b).isFresh());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedIris() {
+        var minter = new EntityMinter(onto, pending::contains, 64);
+        var first = minter.mint(EntityType.CLASS, "createOPA", r, a, b).getEntity();
+        for (int i = 0; i < 1000; i++) {
+            minter.mint(EntityType.CLASS, "createOPA", r, a, df.getOWLNamedIndividual(IRI.create(NS + "i" + i)));
+            assertTrue(minter.memoSize() <= 64);
+        }
+        assertTrue(minter.memoSize() > 0);
+
+        // an evicted entity is minted to the same IRI again
+        var evicted = minter.mint(EntityType.CLASS, "createOPA", r, a, b);
+        assertEquals(first, evicted.getEntity());
+        assertTrue(evicted.isFresh());
+    }
+
+    @Test
+    void countsSuppressedDuplicates() throws Exception {
+        var invoker = new BuiltInTestInvoker(onto);
+        var first = invoker.unbound();
+        assertTrue(invoker.invoke("createOPA", invoker.argument(r), invoker.argument(a), invoker.argument(b), first));
+        int axioms = onto.getAxiomCount();
+        assertEquals(0, invoker.getLibrary().getSuppressedDuplicateCount());
+
+        // a re-fired rule gets the same aspect back and writes nothing
+        var second = invoker.unbound();
+        assertTrue(invoker.invoke("createOPA", invoker.argument(r), invoker.argument(a), invoker.argument(b), second));
+        assertEquals(boundClass(first), boundClass(second));
+        assertEquals(axioms, onto.getAxiomCount());
+        assertEquals(1, invoker.getLibrary().getSuppressedDuplicateCount());
+
+        var temporal = invoker.unbound();
+        assertTrue(invoker.invoke("temporal", temporal, invoker.argument(before), invoker.argument(t0), invoker.argument(true)));
+        axioms = onto.getAxiomCount();
+        var again = invoker.unbound();
+        assertTrue(invoker.invoke("temporal", again, invoker.argument(before), invoker.argument(t0), invoker.argument(true)));
+        assertEquals(boundClass(temporal), boundClass(again));
+        assertEquals(axioms, onto.getAxiomCount());
+        assertEquals(2, invoker.getLibrary().getSuppressedDuplicateCount());
+
+        // a different assertion is no duplicate
+        assertTrue(invoker.invoke("createOPA", invoker.argument(r), invoker.argument(b), invoker.argument(a), invoker.unbound()));
+        assertEquals(2, invoker.getLibrary().getSuppressedDuplicateCount());
+    }
+}
@@ -0,0 +1,204 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link HierarchyIndex} against a plain reachability search over the told SubClassOf axioms, both when it is
+ * built from scratch and when it is updated incrementally, and over an imports closure.
+ *
+ * @author ralph
+ */
+class HierarchyIndexTest {
+
+    private static final String NS = "http://example.org/hierarchy#";
+
+    private static final int CLASSES = 60;
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    private OWLOntologyManager man;
+
+    private OWLOntology onto;
+
+    private final List<HierarchyIndex> indexes = new ArrayList<>();
+
+    @BeforeEach
+    void createOntology() throws OWLOntologyCreationException {
+        man = OWLManager.createOWLOntologyManager();
+        onto = man.createOntology(IRI.create(NS));
+    }
+
+    @AfterEach
+    void disposeIndexes() {
+        indexes.forEach(HierarchyIndex::dispose);
+    }
+
+    private HierarchyIndex newIndex() {
+        var index = new HierarchyIndex(onto, Imports.EXCLUDED);
+        indexes.add(index);
+        return index;
+    }
+
+    private OWLClass c(int i) {
+        return df.getOWLClass(IRI.create(NS + "C" + i));
+    }
+
+    /**
+     * @return random SubClassOf axioms between the classes, including cycles
+     */
+    private List<OWLSubClassOfAxiom> randomAxioms(long seed, int count) {
+        Random random = new Random(seed);
+        List<OWLSubClassOfAxiom> axioms = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int sub = random.nextInt(CLASSES);
+            // mostly downward edges, with the occasional edge closing a cycle
+            int sup = random.nextInt(10) == 0 ? random.nextInt(CLASSES) : random.nextInt(sub + 1);
+            axioms.add(df.getOWLSubClassOfAxiom(c(sub), c(sup)));
+        }
+        return axioms;
+    }
+
+    /**
+     * Checks the index against the reachability closure of the SubClassOf axioms of the ontology.
+     */
+    private void assertMatchesOntology(HierarchyIndex index) {
+        Map<OWLClass, Set<OWLClass>> parents = new HashMap<>();
+        for (OWLSubClassOfAxiom ax : onto.getAxioms(AxiomType.SUBCLASS_OF)) {
+            parents.computeIfAbsent(ax.getSubClass().asOWLClass(), c -> new HashSet<>()).add(ax.getSuperClass().asOWLClass());
+        }
+        for (int i = 0; i < CLASSES; i++) {
+            Set<OWLClass> expected = new HashSet<>();
+            Deque<OWLClass> queue = new ArrayDeque<>(parents.getOrDefault(c(i), Collections.emptySet()));
+            while (!queue.isEmpty()) {
+                OWLClass sup = queue.poll();
+                if (expected.add(sup)) {
+                    queue.addAll(parents.getOrDefault(sup, Collections.emptySet()));
+                }
+            }
+            assertEquals(expected, index.getSuperClasses(c(i)), "superclasses of " + c(i));
+            for (int j = 0; j < CLASSES; j++) {
+                assertEquals(i == j || expected.contains(c(j)), index.isSubClassOf(c(i), c(j)), c(i) + " ⊑ " + c(j));
+            }
+        }
+    }
+
+    @Test
+    void rebuildsFromOntology() {
+        man.addAxioms(onto, new HashSet<>(randomAxioms(1, 150)));
+        assertMatchesOntology(newIndex());
+    }
+
+    @Test
+    void mergesAddedAxioms() {
+        var index = newIndex();
+        assertFalse(index.isSubClassOf(c(1), c(0)));
+        var axioms = randomAxioms(2, 200);
+        for (int i = 0; i < axioms.size(); i++) {
+            man.addAxiom(onto, axioms.get(i));
+            if (i % 25 == 0) {
+                assertMatchesOntology(index);
+            }
+        }
+        assertMatchesOntology(index);
+        // agrees with an index built from scratch
+        assertMatchesOntology(newIndex());
+    }
+
+    @Test
+    void mergesAxiomsAddedAheadOfTheOntology() {
+        var index = newIndex();
+        man.addAxioms(onto, new HashSet<>(randomAxioms(3, 50)));
+        for (OWLSubClassOfAxiom ax : randomAxioms(4, 50)) {
+            index.addAxiom(ax);
+            man.addAxiom(onto, ax);
+        }
+        assertMatchesOntology(index);
+    }
+
+    @Test
+    void rebuildsAfterRemovals() {
+        var index = newIndex();
+        var axioms = randomAxioms(5, 150);
+        man.addAxioms(onto, new HashSet<>(axioms));
+        assertMatchesOntology(index);
+        for (int i = 0; i < axioms.size(); i += 3) {
+            man.removeAxiom(onto, axioms.get(i));
+        }
+        assertMatchesOntology(index);
+        man.addAxioms(onto, new HashSet<>(randomAxioms(6, 30)));
+        assertMatchesOntology(index);
+    }
+
+    @Test
+    void joinsChainsIncrementally() {
+        var index = newIndex();
+        man.addAxiom(onto, df.getOWLSubClassOfAxiom(c(0), c(1)));
+        man.addAxiom(onto, df.getOWLSubClassOfAxiom(c(2), c(3)));
+        assertFalse(index.isSubClassOf(c(0), c(3)));
+        man.addAxiom(onto, df.getOWLSubClassOfAxiom(c(1), c(2)));
+        assertTrue(index.isSubClassOf(c(0), c(3)));
+        assertEquals(Set.of(c(1), c(2), c(3)), index.getSuperClasses(c(0)));
+
+        // closing the cycle makes every class its own superclass
+        man.addAxiom(onto, df.getOWLSubClassOfAxiom(c(3), c(0)));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Set.of(c(0), c(1), c(2), c(3)), index.getSuperClasses(c(i)));
+        }
+    }
+
+    @Test
+    void relatesClassesEquivalentToTheSameExpression() {
+        var index = newIndex();
+        OWLObjectProperty before = df.getOWLObjectProperty(IRI.create(NS + "before"));
+        OWLNamedIndividual t = df.getOWLNamedIndividual(IRI.create(NS + "t"));
+        OWLClassExpression hasValue = df.getOWLObjectHasValue(before, t);
+        man.addAxiom(onto, df.getOWLEquivalentClassesAxiom(c(0), hasValue));
+        index.addAxiom(df.getOWLEquivalentClassesAxiom(c(1), hasValue));
+        assertTrue(index.isSubClassOf(c(0), c(1)));
+        assertTrue(index.isSubClassOf(c(1), c(0)));
+        assertTrue(index.isSubClassOf(c(0), hasValue));
+        assertEquals(Set.of(c(0), c(1)), index.getSuperClasses(c(0)));
+    }
+
+    @Test
+    void coversImportsClosure() throws OWLOntologyCreationException {
+        OWLOntology imported = man.createOntology(IRI.create(NS + "imported"));
+        man.addAxiom(imported, df.getOWLSubClassOfAxiom(c(1), c(2)));
+        man.addAxiom(onto, df.getOWLSubClassOfAxiom(c(0), c(1)));
+        var closureIndex = new HierarchyIndex(onto, Imports.INCLUDED);
+        indexes.add(closureIndex);
+        var ontologyIndex = newIndex();
+        assertFalse(closureIndex.isSubClassOf(c(0), c(2)));
+
+        man.applyChange(new AddImport(onto, df.getOWLImportsDeclaration(imported.getOntologyID().getOntologyIRI().get())));
+        assertTrue(closureIndex.isSubClassOf(c(0), c(2)));
+        assertFalse(ontologyIndex.isSubClassOf(c(0), c(2)));
+
+        // changes of the imported ontology are merged as well
+        man.addAxiom(imported, df.getOWLSubClassOfAxiom(c(2), c(3)));
+        assertTrue(closureIndex.isSubClassOf(c(0), c(3)));
+        assertEquals(Set.of(c(1), c(2), c(3)), closureIndex.getSuperClasses(c(0)));
+        man.removeAxiom(imported, df.getOWLSubClassOfAxiom(c(1), c(2)));
+        assertFalse(closureIndex.isSubClassOf(c(0), c(2)));
+        assertEquals(Set.of(c(1)), closureIndex.getSuperClasses(c(0)));
+        assertEquals(Set.of(c(1)), ontologyIndex.getSuperClasses(c(0)));
+    }
+
+    @Test
+    void unitesSortedArrays() {
+        int[] a = { 1, 4, 7 };
+        assertSame(a, HierarchyIndex.union(a, new int[] { 4, 7 }));
+        assertSame(a, HierarchyIndex.union(a, new int[0]));
+        assertArrayEquals(new int[] { 0, 1, 4, 5, 7, 9 }, HierarchyIndex.union(a, new int[] { 0, 4, 5, 9 }));
+        assertArrayEquals(new int[] { 2 }, HierarchyIndex.union(new int[0], new int[] { 2 }));
+    }
+}
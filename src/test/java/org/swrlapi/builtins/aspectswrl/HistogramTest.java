@@ -0,0 +1,65 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the power-of-two buckets of {@link Histogram} and the quantile bounds derived from them.
+ *
+ * @author ralph
+ */
+class HistogramTest {
+
+    @Test
+    void countsValuesInPowerOfTwoBuckets() {
+        var histogram = new Histogram();
+        for (long value : new long[] { 0, -5, 1, 2, 3, 4, 7, 8, 1023, 1024, 1L << 62, Long.MAX_VALUE }) {
+            histogram.record(value);
+        }
+        long[] counts = histogram.getCounts();
+        assertEquals(Histogram.BUCKETS, counts.length);
+        assertEquals(2, counts[0]); // 0, and -5 counted as 0
+        assertEquals(1, counts[1]); // 1
+        assertEquals(2, counts[2]); // 2, 3
+        assertEquals(2, counts[3]); // 4, 7
+        assertEquals(1, counts[4]); // 8
+        assertEquals(1, counts[10]); // 1023
+        assertEquals(1, counts[11]); // 1024
+        assertEquals(2, counts[63]); // 2^62 and above
+        assertEquals(12, Arrays.stream(counts).sum());
+
+        histogram.reset();
+        assertEquals(0, Arrays.stream(histogram.getCounts()).sum());
+        histogram.record(3);
+        histogram.record(-2);
+        histogram.record(1024);
+        assertEquals(1027, histogram.getSum());
+        histogram.reset();
+        assertEquals(0, Arrays.stream(histogram.getCounts()).sum());
+        assertEquals(0, histogram.getSum());
+    }
+
+    @Test
+    void boundsQuantilesByBucket() {
+        long[] counts = new long[Histogram.BUCKETS];
+        assertEquals(0, Histogram.quantileUpperBound(counts, 0.5));
+
+        counts[2] = 50; // [2, 4)
+        counts[5] = 49; // [16, 32)
+        counts[10] = 1; // [512, 1024)
+        assertEquals(3, Histogram.quantileUpperBound(counts, 0));
+        assertEquals(3, Histogram.quantileUpperBound(counts, 0.5));
+        assertEquals(31, Histogram.quantileUpperBound(counts, 0.51));
+        assertEquals(31, Histogram.quantileUpperBound(counts, 0.99));
+        assertEquals(1023, Histogram.quantileUpperBound(counts, 1));
+
+        counts[0] = 1000;
+        assertEquals(0, Histogram.quantileUpperBound(counts, 0.5));
+
+        counts[63] = 10000;
+        assertEquals(Long.MAX_VALUE, Histogram.quantileUpperBound(counts, 0.99));
+    }
+}
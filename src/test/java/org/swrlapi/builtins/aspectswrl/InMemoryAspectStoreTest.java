@@ -0,0 +1,112 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that {@link InMemoryAspectStore} answers aspect assertions of packed object property assertions and of other
+ * join point axioms alike, and reports each new assertion once.
+ *
+ * @author ralph
+ */
+class InMemoryAspectStoreTest {
+
+    private static final String NS = "http://example.org/store#";
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    private final OWLObjectProperty r = df.getOWLObjectProperty(IRI.create(NS + "r"));
+
+    private final OWLNamedIndividual a = df.getOWLNamedIndividual(IRI.create(NS + "a"));
+
+    private final OWLNamedIndividual b = df.getOWLNamedIndividual(IRI.create(NS + "b"));
+
+    private final OWLClass aspect = df.getOWLClass(IRI.create(NS + "A"));
+
+    private final OWLClass other = df.getOWLClass(IRI.create(NS + "B"));
+
+    private final InMemoryAspectStore store = new InMemoryAspectStore();
+
+    private final List<String> events = new ArrayList<>();
+
+    private OWLOntology onto;
+
+    @BeforeEach
+    void createOntology() throws OWLOntologyCreationException {
+        onto = OWLManager.createOWLOntologyManager().createOntology(IRI.create(NS));
+        store.addListener(new AspectStoreListener() {
+            @Override
+            public void aspectAdded(OWLOntology o, OWLAxiom joinPointAxiom, List<OWLClass> aspectPath, OWLClass added) {
+                events.add("added " + added.getIRI().getShortForm() + " " + aspectPath.size());
+            }
+
+            @Override
+            public void aspectsChanged(OWLOntology o) {
+                events.add("changed");
+            }
+        });
+    }
+
+    @Test
+    void keepsPackedAssertions() {
+        var opa = df.getOWLObjectPropertyAssertionAxiom(r, a, b);
+        assertTrue(store.isIndexed());
+        assertFalse(store.hasAspect(onto, opa, aspect));
+        store.addAspect(onto, opa, aspect);
+        store.addAspect(onto, opa, aspect);
+        store.addAspect(onto, opa, other);
+        assertEquals(Set.of(aspect, other), store.getAssertedAspects(onto, opa));
+        assertTrue(store.hasAspect(onto, opa, aspect));
+        assertFalse(store.hasAspect(onto, df.getOWLObjectPropertyAssertionAxiom(r, b, a), aspect));
+        assertEquals(List.of("added A 0", "added B 0"), events);
+    }
+
+    @Test
+    void keepsOtherAssertionsByPath() {
+        var opa = df.getOWLObjectPropertyAssertionAxiom(r, a, b);
+        var ca = df.getOWLClassAssertionAxiom(other, a);
+        store.addAspect(onto, ca, aspect);
+        store.addAspect(onto, opa, aspect);
+        store.addNestedAspect(onto, opa, List.of(aspect), other);
+        assertEquals(Set.of(aspect), store.getAssertedAspects(onto, ca));
+        assertTrue(store.hasAspect(onto, ca, aspect));
+        assertEquals(Set.of(aspect), store.getAssertedAspects(onto, opa));
+        assertEquals(Set.of(other), store.getNestedAspects(onto, opa, List.of(aspect)));
+        assertEquals(List.of("added A 0", "added A 0", "added B 1"), events);
+    }
+
+    @Test
+    void keepsAssertionsPerOntologyInstance() throws OWLOntologyCreationException {
+        var opa = df.getOWLObjectPropertyAssertionAxiom(r, a, b);
+        OWLOntology sameIRI = OWLManager.createOWLOntologyManager().createOntology(IRI.create(NS));
+        assertEquals(onto, sameIRI);
+        store.addAspect(onto, opa, aspect);
+        assertTrue(store.getAssertedAspects(sameIRI, opa).isEmpty());
+        store.addAspect(sameIRI, opa, other);
+        assertEquals(Set.of(aspect), store.getAssertedAspects(onto, opa));
+
+        // the assertions follow the ontology to its new ID
+        onto.getOWLOntologyManager().applyChange(new SetOntologyID(onto, IRI.create(NS + "renamed")));
+        assertEquals(Set.of(aspect), store.getAssertedAspects(onto, opa));
+        assertTrue(store.hasAspect(onto, opa, aspect));
+    }
+
+    @Test
+    void dropsAssertionsOfClearedOntology() throws OWLOntologyCreationException {
+        var opa = df.getOWLObjectPropertyAssertionAxiom(r, a, b);
+        OWLOntology kept = OWLManager.createOWLOntologyManager().createOntology(IRI.create(NS + "kept"));
+        store.addAspect(onto, opa, aspect);
+        store.addAspect(kept, opa, other);
+        store.clear(onto);
+        assertEquals(Collections.emptySet(), store.getAssertedAspects(onto, opa));
+        assertFalse(store.hasAspect(onto, opa, aspect));
+        assertEquals(Set.of(other), store.getAssertedAspects(kept, opa));
+        assertEquals("changed", events.get(events.size() - 1));
+    }
+}
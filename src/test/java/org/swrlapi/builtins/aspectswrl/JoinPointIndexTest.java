@@ -0,0 +1,95 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that {@link JoinPointIndex} follows the object property assertions added to and removed from its ontology,
+ * including assertions of the same triple by several axioms.
+ *
+ * @author ralph
+ */
+class JoinPointIndexTest {
+
+    private static final String NS = "http://example.org/joinpoints#";
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    private final OWLObjectProperty r = df.getOWLObjectProperty(IRI.create(NS + "r"));
+
+    private final OWLNamedIndividual a = df.getOWLNamedIndividual(IRI.create(NS + "a"));
+
+    private final OWLNamedIndividual b = df.getOWLNamedIndividual(IRI.create(NS + "b"));
+
+    private OWLOntologyManager man;
+
+    private OWLOntology onto;
+
+    private JoinPointIndex index;
+
+    @BeforeEach
+    void createOntology() throws OWLOntologyCreationException {
+        man = OWLManager.createOWLOntologyManager();
+        onto = man.createOntology(IRI.create(NS));
+        man.addAxiom(onto, df.getOWLObjectPropertyAssertionAxiom(r, a, b));
+        index = new JoinPointIndex(onto);
+    }
+
+    @AfterEach
+    void disposeIndex() {
+        index.dispose();
+    }
+
+    @Test
+    void indexesExistingAssertions() {
+        assertEquals(df.getOWLObjectPropertyAssertionAxiom(r, a, b), index.getObjectPropertyAssertion(r, a, b));
+        assertNull(index.getObjectPropertyAssertion(r, b, a));
+        assertNull(index.getNegativeObjectPropertyAssertion(r, a, b));
+        assertEquals(1, index.getObjectPropertyAssertions().size());
+    }
+
+    @Test
+    void followsAddedAndRemovedAssertions() {
+        var opa = df.getOWLObjectPropertyAssertionAxiom(r, b, a);
+        var nopa = df.getOWLNegativeObjectPropertyAssertionAxiom(r, b, b);
+        man.addAxiom(onto, opa);
+        man.addAxiom(onto, nopa);
+        assertEquals(opa, index.getObjectPropertyAssertion(r, b, a));
+        assertEquals(nopa, index.getNegativeObjectPropertyAssertion(r, b, b));
+        assertNull(index.getObjectPropertyAssertion(r, b, b));
+        assertEquals(2, index.getObjectPropertyAssertions().size());
+
+        man.removeAxiom(onto, opa);
+        man.removeAxiom(onto, nopa);
+        assertNull(index.getObjectPropertyAssertion(r, b, a));
+        assertNull(index.getNegativeObjectPropertyAssertion(r, b, b));
+        assertEquals(Set.of(df.getOWLObjectPropertyAssertionAxiom(r, a, b)), Set.copyOf(index.getObjectPropertyAssertions()));
+    }
+
+    @Test
+    void keepsTripleAssertedByAnotherAxiom() {
+        var plain = df.getOWLObjectPropertyAssertionAxiom(r, a, b);
+        var annotated = plain.getAnnotatedAxiom(Set.of(df.getOWLAnnotation(df.getRDFSComment(), df.getOWLLiteral("duplicate"))));
+        man.addAxiom(onto, annotated);
+        man.removeAxiom(onto, plain);
+        assertEquals(annotated, index.getObjectPropertyAssertion(r, a, b));
+        man.removeAxiom(onto, annotated);
+        assertNull(index.getObjectPropertyAssertion(r, a, b));
+    }
+
+    @Test
+    void ignoresChangesOfOtherOntologies() throws OWLOntologyCreationException {
+        OWLOntology other = man.createOntology(IRI.create(NS + "other"));
+        man.addAxiom(other, df.getOWLObjectPropertyAssertionAxiom(r, b, a));
+        assertNull(index.getObjectPropertyAssertion(r, b, a));
+        man.removeAxiom(other, df.getOWLObjectPropertyAssertionAxiom(r, a, b));
+        assertNotNull(index.getObjectPropertyAssertion(r, a, b));
+    }
+}
@@ -0,0 +1,144 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.swrlapi.exceptions.SWRLBuiltInException;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.swrlapi.builtins.aspectswrl.BuiltInTestInvoker.values;
+
+/**
+ * Tests the nesting depths the nest built-in answers from {@link NestingIndex}, and that nestings forming a cycle are
+ * reported without sending the closure into a loop.
+ *
+ * @author ralph
+ */
+class NestingIndexTest {
+
+    private static final String NS = "http://example.org/nesting#";
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    private final OWLObjectProperty r = df.getOWLObjectProperty(IRI.create(NS + "r"));
+
+    private final OWLObjectPropertyAssertionAxiom first = df.getOWLObjectPropertyAssertionAxiom(r, df.getOWLNamedIndividual(IRI.create(NS + "a")), df.getOWLNamedIndividual(IRI.create(NS + "b")));
+
+    private final OWLObjectPropertyAssertionAxiom second = df.getOWLObjectPropertyAssertionAxiom(r, df.getOWLNamedIndividual(IRI.create(NS + "b")), df.getOWLNamedIndividual(IRI.create(NS + "c")));
+
+    private final OWLClass A = df.getOWLClass(IRI.create(NS + "A"));
+
+    private final OWLClass B = df.getOWLClass(IRI.create(NS + "B"));
+
+    private final OWLClass C = df.getOWLClass(IRI.create(NS + "C"));
+
+    private final OWLClass D = df.getOWLClass(IRI.create(NS + "D"));
+
+    private OWLOntology onto;
+
+    private InMemoryAspectStore store;
+
+    private BuiltInTestInvoker invoker;
+
+    @BeforeAll
+    static void useHeadlessAspectStore() {
+        AspectManagerProviders.setProvider(new HeadlessAspectManagerProvider());
+    }
+
+    @AfterAll
+    static void resetAspectStore() {
+        AspectManagerProviders.setProvider(null);
+    }
+
+    /**
+     * Asserts the nestings D → A → B → C: B for the assertion of A for the first assertion and C for the assertion of
+     * B in it, and A for the assertion of D for the second assertion.
+     */
+    @BeforeEach
+    void createOntology() throws OWLOntologyCreationException {
+        OWLOntologyManager man = OWLManager.createOWLOntologyManager();
+        onto = man.createOntology(IRI.create(NS));
+        man.addAxiom(onto, first);
+        man.addAxiom(onto, second);
+        store = (InMemoryAspectStore) AspectManagerProviders.getAspectStore(man);
+        store.addAspect(onto, first, A);
+        store.addNestedAspect(onto, first, List.of(A), B);
+        store.addNestedAspect(onto, first, List.of(A, B), C);
+        store.addAspect(onto, second, D);
+        store.addNestedAspect(onto, second, List.of(D), A);
+        invoker = new BuiltInTestInvoker(onto);
+    }
+
+    @AfterEach
+    void releaseOntology() {
+        SWRLBuiltInLibraryImpl.release(onto);
+    }
+
+    private Set<Integer> depths(OWLClass outer, OWLClass inner) throws Exception {
+        var depth = invoker.unbound();
+        assertTrue(invoker.invoke("nest", invoker.argument(outer), invoker.argument(inner), depth));
+        Set<Integer> depths = new HashSet<>();
+        values(depth).forEach(literal -> depths.add(Integer.parseInt(((OWLLiteral) literal).getLiteral())));
+        return depths;
+    }
+
+    @Test
+    void answersNestingDepths() throws Exception {
+        assertTrue(invoker.invoke("nest", invoker.argument(A), invoker.argument(B)));
+        assertTrue(invoker.invoke("nest", invoker.argument(A), invoker.argument(C)));
+        assertFalse(invoker.invoke("nest", invoker.argument(C), invoker.argument(A)));
+        assertFalse(invoker.invoke("nest", invoker.argument(A), invoker.argument(A)));
+
+        assertFalse(invoker.invoke("nest", invoker.argument(A), invoker.argument(C), invoker.argument(1)));
+        assertTrue(invoker.invoke("nest", invoker.argument(A), invoker.argument(C), invoker.argument(2)));
+        assertEquals(Set.of(1), depths(A, B));
+        assertEquals(Set.of(2), depths(A, C));
+        assertEquals(Set.of(3), depths(D, C));
+
+        var inner = invoker.unbound();
+        assertTrue(invoker.invoke("nest", invoker.argument(A), inner));
+        assertEquals(Set.of(B, C), values(inner));
+        inner = invoker.unbound();
+        assertTrue(invoker.invoke("nest", invoker.argument(D), inner, invoker.argument(2)));
+        assertEquals(Set.of(A, B), values(inner));
+        var outer = invoker.unbound();
+        assertTrue(invoker.invoke("nest", outer, invoker.argument(C)));
+        assertEquals(Set.of(A, B, D), values(outer));
+    }
+
+    @Test
+    void followsAddedNestings() throws Exception {
+        assertFalse(invoker.invoke("nest", invoker.argument(C), invoker.argument(D)));
+        store.addNestedAspect(onto, first, List.of(A, B, C), D);
+        assertTrue(invoker.invoke("nest", invoker.argument(C), invoker.argument(D)));
+        assertEquals(Set.of(3), depths(A, D));
+    }
+
+    @Test
+    void reportsCycles() throws Exception {
+        // D for the assertion of B closes the cycle D → A → B → D; C hangs off it
+        store.addAspect(onto, second, B);
+        store.addNestedAspect(onto, second, List.of(B), D);
+        assertEquals(Set.of(A, B, D), OntologyContext.get(onto).getNestingIndex().getCyclic());
+
+        assertTrue(invoker.invoke("nest", invoker.argument(A), invoker.argument(A)));
+        assertEquals(Set.of(3), depths(A, A));
+        assertEquals(Set.of(1), depths(B, D));
+        assertFalse(invoker.invoke("nest", invoker.argument(C), invoker.argument(C)));
+        var inner = invoker.unbound();
+        assertTrue(invoker.invoke("nest", invoker.argument(B), inner));
+        assertEquals(Set.of(A, B, C, D), values(inner));
+    }
+
+    @Test
+    void rejectsSeveralUnboundArguments() {
+        assertThrows(SWRLBuiltInException.class, () -> invoker.invoke("nest", invoker.unbound(), invoker.unbound()));
+        assertThrows(SWRLBuiltInException.class, () -> invoker.invoke("nest", invoker.argument(A), invoker.unbound(), invoker.unbound()));
+    }
+}
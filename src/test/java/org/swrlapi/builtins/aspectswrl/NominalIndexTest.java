@@ -0,0 +1,134 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.swrlapi.builtins.aspectswrl.BuiltInTestInvoker.values;
+
+/**
+ * Tests that {@link NominalIndex}, and hence the ooo built-in, follows the enumeration classes defined and undefined
+ * by EquivalentClasses axioms.
+ *
+ * @author ralph
+ */
+class NominalIndexTest {
+
+    private static final String NS = "http://example.org/nominals#";
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    private final OWLNamedIndividual a = df.getOWLNamedIndividual(IRI.create(NS + "a"));
+
+    private final OWLNamedIndividual b = df.getOWLNamedIndividual(IRI.create(NS + "b"));
+
+    private final OWLNamedIndividual c = df.getOWLNamedIndividual(IRI.create(NS + "c"));
+
+    private final OWLClass abc = df.getOWLClass(IRI.create(NS + "ABC"));
+
+    private final OWLClass ab = df.getOWLClass(IRI.create(NS + "AB"));
+
+    private OWLOntologyManager man;
+
+    private OWLOntology onto;
+
+    private BuiltInTestInvoker invoker;
+
+    @BeforeAll
+    static void useHeadlessAspectStore() {
+        AspectManagerProviders.setProvider(new HeadlessAspectManagerProvider());
+    }
+
+    @AfterAll
+    static void resetAspectStore() {
+        AspectManagerProviders.setProvider(null);
+    }
+
+    @BeforeEach
+    void createOntology() throws OWLOntologyCreationException {
+        man = OWLManager.createOWLOntologyManager();
+        onto = man.createOntology(IRI.create(NS));
+        man.addAxiom(onto, df.getOWLEquivalentClassesAxiom(abc, df.getOWLObjectOneOf(a, b, c)));
+        invoker = new BuiltInTestInvoker(onto);
+    }
+
+    @AfterEach
+    void releaseOntology() {
+        SWRLBuiltInLibraryImpl.release(onto);
+    }
+
+    private Set<OWLObject> members(OWLClass cls) throws Exception {
+        var members = invoker.unbound();
+        invoker.invoke("ooo", members, invoker.argument(cls));
+        return values(members);
+    }
+
+    private Set<OWLObject> classes(OWLNamedIndividual individual) throws Exception {
+        var classes = invoker.unbound();
+        invoker.invoke("ooo", invoker.argument(individual), classes);
+        return values(classes);
+    }
+
+    @Test
+    void followsAddedAndRemovedEnumerations() throws Exception {
+        assertTrue(invoker.invoke("ooo", invoker.argument(c), invoker.argument(abc)));
+        assertFalse(invoker.invoke("ooo", invoker.argument(c), invoker.argument(ab)));
+        assertEquals(Set.of(a, b, c), members(abc));
+        assertEquals(Set.of(abc), classes(a));
+
+        var definition = df.getOWLEquivalentClassesAxiom(ab, df.getOWLObjectOneOf(a, b));
+        man.addAxiom(onto, definition);
+        assertTrue(invoker.invoke("ooo", invoker.argument(a), invoker.argument(ab)));
+        assertFalse(invoker.invoke("ooo", invoker.argument(c), invoker.argument(ab)));
+        assertEquals(Set.of(a, b), members(ab));
+        assertEquals(Set.of(abc, ab), classes(a));
+        assertEquals(Set.of(abc), classes(c));
+
+        man.removeAxiom(onto, definition);
+        assertFalse(invoker.invoke("ooo", invoker.argument(a), invoker.argument(ab)));
+        assertTrue(members(ab).isEmpty());
+        assertEquals(Set.of(abc), classes(a));
+    }
+
+    @Test
+    void intersectsSeveralEnumerationsOfAClass() throws Exception {
+        var narrowing = df.getOWLEquivalentClassesAxiom(abc, df.getOWLObjectOneOf(b, c));
+        man.addAxiom(onto, narrowing);
+        assertEquals(Set.of(b, c), members(abc));
+        assertFalse(invoker.invoke("ooo", invoker.argument(a), invoker.argument(abc)));
+        assertTrue(classes(a).isEmpty());
+
+        man.removeAxiom(onto, narrowing);
+        assertEquals(Set.of(a, b, c), members(abc));
+        assertTrue(invoker.invoke("ooo", invoker.argument(a), invoker.argument(abc)));
+    }
+
+    @Test
+    void keepsEnumerationAssertedByAnotherAxiom() throws Exception {
+        var plain = df.getOWLEquivalentClassesAxiom(abc, df.getOWLObjectOneOf(a, b, c));
+        var annotated = plain.getAnnotatedAxiom(Set.of(df.getOWLAnnotation(df.getRDFSComment(), df.getOWLLiteral("duplicate"))));
+        man.addAxiom(onto, annotated);
+        man.removeAxiom(onto, plain);
+        assertEquals(Set.of(a, b, c), members(abc));
+        man.removeAxiom(onto, annotated);
+        assertTrue(members(abc).isEmpty());
+        assertFalse(invoker.invoke("ooo", invoker.argument(a), invoker.argument(abc)));
+    }
+
+    @Test
+    void answersAnonymousEnumerations() throws Exception {
+        OWLObjectOneOf oneOf = df.getOWLObjectOneOf(a, c);
+        assertTrue(invoker.invoke("ooo", invoker.argument(a), invoker.argument(oneOf)));
+        assertFalse(invoker.invoke("ooo", invoker.argument(b), invoker.argument(oneOf)));
+        var members = invoker.unbound();
+        assertTrue(invoker.invoke("ooo", members, invoker.argument(oneOf)));
+        assertEquals(Set.of(a, c), values(members));
+    }
+}
@@ -0,0 +1,185 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link PackedAspectTable} against an ordinary map, in particular that entries stay reachable when others are
+ * removed by backward shift deletion, and that lookups concurrent with updates see consistent entries.
+ *
+ * @author ralph
+ */
+class PackedAspectTableTest {
+
+    private static final String NS = "http://example.org/packed#";
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    private static PackedAspectTable newTable() {
+        return new PackedAspectTable(new IriDictionary(), new IriDictionary(), new IriDictionary());
+    }
+
+    private static void assertMatches(Map<List<Integer>, int[]> expected, PackedAspectTable table, int properties, int individuals) {
+        assertEquals(expected.size(), table.size());
+        for (int p = 0; p < properties; p++) {
+            for (int s = 0; s < individuals; s++) {
+                for (int o = 0; o < individuals; o++) {
+                    assertSame(expected.get(List.of(p, s, o)), table.get(p, s, o), p + " " + s + " " + o);
+                }
+            }
+        }
+    }
+
+    @Test
+    void matchesMapUnderRandomUpdates() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            var table = newTable();
+            Map<List<Integer>, int[]> expected = new HashMap<>();
+            // a small key space, so that the table is kept dense and removals hit long probe sequences
+            for (int step = 0; step < 2000; step++) {
+                int p = random.nextInt(3);
+                int s = random.nextInt(6);
+                int o = random.nextInt(6);
+                if (random.nextInt(3) == 0) {
+                    assertSame(expected.remove(List.of(p, s, o)), table.remove(p, s, o));
+                } else {
+                    int[] aspects = { random.nextInt(10) };
+                    expected.put(List.of(p, s, o), aspects);
+                    table.put(p, s, o, aspects);
+                }
+                if (step % 100 == 0) {
+                    assertMatches(expected, table, 3, 6);
+                }
+            }
+            assertMatches(expected, table, 3, 6);
+        }
+    }
+
+    @Test
+    void keepsClustersReachableAfterRemovals() {
+        var table = newTable();
+        Map<List<Integer>, int[]> expected = new HashMap<>();
+        // 36 entries in 64 slots: above half load, so most entries share a cluster with others
+        for (int s = 0; s < 6; s++) {
+            for (int o = 0; o < 6; o++) {
+                int[] aspects = { s, o };
+                expected.put(List.of(0, s, o), aspects);
+                table.put(0, s, o, aspects);
+            }
+        }
+        List<List<Integer>> order = new ArrayList<>(expected.keySet());
+        Collections.shuffle(order, new Random(1));
+        for (List<Integer> key : order) {
+            assertSame(expected.remove(key), table.remove(key.get(0), key.get(1), key.get(2)));
+            assertNull(table.remove(key.get(0), key.get(1), key.get(2)));
+            assertMatches(expected, table, 1, 6);
+        }
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void keepsIdsThatDoNotFitInOverflow() {
+        var table = newTable();
+        int[] aspects = { 1 };
+        table.put(1 << 16, 2, 3, aspects);
+        table.put(1, 1 << 24, 3, aspects);
+        table.put(1, 2, 3, aspects);
+        assertEquals(2, table.overflowSize());
+        assertSame(aspects, table.get(1 << 16, 2, 3));
+        assertSame(aspects, table.get(1, 1 << 24, 3));
+        assertNull(table.get(1 << 16, 2, 4));
+        assertSame(aspects, table.remove(1 << 16, 2, 3));
+        assertEquals(2, table.size());
+        table.clear();
+        assertEquals(0, table.size());
+        assertNull(table.get(1, 2, 3));
+    }
+
+    @Test
+    void addsAspectsOnce() {
+        var table = newTable();
+        assertTrue(table.add(0, 1, 2, 5));
+        assertFalse(table.add(0, 1, 2, 5));
+        assertTrue(table.add(0, 1, 2, 6));
+        assertArrayEquals(new int[] { 5, 6 }, table.get(0, 1, 2));
+        assertTrue(table.add(1 << 16, 1, 2, 5));
+        assertFalse(table.add(1 << 16, 1, 2, 5));
+        assertArrayEquals(new int[] { 5 }, table.get(1 << 16, 1, 2));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    void internsPropertiesApartFromIndividuals() {
+        var table = newTable();
+        OWLObjectProperty r = df.getOWLObjectProperty(IRI.create(NS + "r"));
+        OWLNamedIndividual a = df.getOWLNamedIndividual(IRI.create(NS + "a"));
+        OWLClass aspect = df.getOWLClass(IRI.create(NS + "A"));
+        int individuals = (1 << 16) + 10;
+        for (int i = 0; i < individuals; i++) {
+            var opa = df.getOWLObjectPropertyAssertionAxiom(r, a, df.getOWLNamedIndividual(IRI.create(NS + "i" + i)));
+            table.put(opa, table.toIds(Set.of(aspect)));
+        }
+        // a property interned after that many individuals still fits into a packed key
+        OWLObjectProperty s = df.getOWLObjectProperty(IRI.create(NS + "s"));
+        var opa = df.getOWLObjectPropertyAssertionAxiom(s, a, a);
+        table.put(opa, table.toIds(Set.of(aspect)));
+        assertEquals(0, table.overflowSize());
+        assertEquals(individuals + 1, table.size());
+        assertEquals(Set.of(aspect), table.toClasses(table.get(opa)));
+        assertNull(table.get(df.getOWLObjectPropertyAssertionAxiom(s, a, df.getOWLNamedIndividual(IRI.create(NS + "i0")))));
+    }
+
+    @Test
+    void lookupsSeeEntriesWhileOthersAreUpdated() throws Exception {
+        var table = newTable();
+        int[] stable = { 7 };
+        for (int s = 0; s < 100; s++) {
+            table.put(0, s, s, stable);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 3; t++) {
+                readers.add(executor.submit(() -> {
+                    while (!done.get()) {
+                        for (int s = 0; s < 100; s++) {
+                            assertSame(stable, table.get(0, s, s));
+                        }
+                    }
+                }));
+            }
+            // grows the table repeatedly and removes entries next to the stable ones, so that they are shifted back
+            Random random = new Random(2);
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < 2000; i++) {
+                    table.put(1, random.nextInt(200), random.nextInt(200), new int[] { i });
+                }
+                for (int s = 0; s < 200; s++) {
+                    for (int o = 0; o < 200; o++) {
+                        table.remove(1, s, o);
+                    }
+                }
+            }
+            done.set(true);
+            for (Future<?> reader : readers) {
+                reader.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+        assertEquals(100, table.size());
+    }
+}
@@ -0,0 +1,211 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.formats.FunctionalSyntaxDocumentFormat;
+import org.semanticweb.owlapi.model.*;
+import org.swrlapi.core.SWRLRuleEngine;
+import org.swrlapi.factory.SWRLAPIFactory;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Evaluates rules using the AspectSWRL built-ins with many Drools rule engines in parallel, one per ontology, and
+ * checks that they infer exactly what the same rule engines infer one after the other. The ontologies share the
+ * context registry, the minters' namespaces and the metrics, and half of them use buffered writes. Every ontology IRI
+ * is used by several ontologies in separate managers, as with tenants loading the same ontology.
+ *
+ * @author ralph
+ */
+class ParallelRuleEvaluationTest {
+
+    private static final String NS = "http://example.org/parallel#";
+
+    private static final int ONTOLOGIES = 16;
+
+    private static final int THREADS = 8;
+
+    private static final int IRIS = 4;
+
+    private static final int INDIVIDUALS = 200;
+
+    private static final int OPAS_PER_INDIVIDUAL = 3;
+
+    private static final int ASPECTS = 4;
+
+    private static final int INSTANTS = 20;
+
+    private static final Map<String, String> RULES = Map.of(
+            "opa", "r(?i1, ?i2) ^ aspectswrl:opa(A0, r, ?i1, ?i2) -> Tagged(?i1)",
+            "aspectOPA", "r(?i1, ?i2) ^ aspectswrl:aspectOPA(A1, ?op, ?i1, ?i2) -> Linked(?i2)",
+            "createOPA", "r(?i1, ?i2) ^ aspectswrl:createOPA(s, ?i2, ?i1, ?a) -> Created(?i2)",
+            "temporal", "before(?t1, ?t2) ^ aspectswrl:temporal(?a, before, ?t1, true) -> ");
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    @BeforeAll
+    static void useHeadlessAspectStore() {
+        AspectManagerProviders.setProvider(new HeadlessAspectManagerProvider());
+    }
+
+    @AfterAll
+    static void resetAspectStore() {
+        AspectManagerProviders.setProvider(null);
+    }
+
+    @Test
+    void parallelEvaluationEqualsSequentialEvaluation() throws Exception {
+        List<Result> sequential = new ArrayList<>();
+        for (int i = 0; i < ONTOLOGIES; i++) {
+            sequential.add(evaluate(i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (int i = 0; i < ONTOLOGIES; i++) {
+                int seed = i;
+                futures.add(executor.submit(() -> evaluate(seed)));
+            }
+            for (int i = 0; i < ONTOLOGIES; i++) {
+                Result parallel = futures.get(i).get(5, TimeUnit.MINUTES);
+                assertEquals(sequential.get(i).axioms, parallel.axioms, "axioms of ontology " + i);
+                assertEquals(sequential.get(i).aspects, parallel.aspects, "aspects of ontology " + i);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // the rules did infer something
+        Result first = sequential.get(0);
+        for (String cls : List.of("Tagged", "Linked", "Created")) {
+            OWLClass c = df.getOWLClass(IRI.create(NS + cls));
+            assertTrue(first.axioms.stream().anyMatch(ax -> ax.getAxiomType() == AxiomType.CLASS_ASSERTION && ((OWLClassAssertionAxiom) ax).getClassExpression().equals(c)), cls);
+        }
+        OWLObjectProperty s = df.getOWLObjectProperty(IRI.create(NS + "s"));
+        assertTrue(first.aspects.keySet().stream().anyMatch(ax -> ((OWLObjectPropertyAssertionAxiom) ax).getProperty().equals(s)));
+    }
+
+    @Test
+    void contextsAreKeptPerOntologyInstance() throws Exception {
+        OWLOntology first = OWLManager.createOWLOntologyManager().createOntology(IRI.create(NS));
+        OWLOntology second = OWLManager.createOWLOntologyManager().createOntology(IRI.create(NS));
+        try {
+            assertEquals(first, second);
+            var context = OntologyContext.get(first);
+            assertNotSame(context, OntologyContext.get(second));
+            SWRLBuiltInLibraryImpl.setBufferedWrites(first, true);
+            assertFalse(SWRLBuiltInLibraryImpl.isBufferedWrites(second));
+
+            // the context follows the ontology to its new ID
+            first.getOWLOntologyManager().applyChange(new SetOntologyID(first, IRI.create(NS + "renamed")));
+            assertSame(context, OntologyContext.get(first));
+            assertTrue(SWRLBuiltInLibraryImpl.isBufferedWrites(first));
+        } finally {
+            SWRLBuiltInLibraryImpl.release(first);
+            SWRLBuiltInLibraryImpl.release(second);
+        }
+    }
+
+    /**
+     * Generates the ontology for the given seed, evaluates all rules over it with a new rule engine and releases it.
+     */
+    private Result evaluate(int seed) throws Exception {
+        OWLOntology onto = generate(seed);
+        boolean buffered = seed % 2 == 1;
+        SWRLBuiltInLibraryImpl.setBufferedWrites(onto, buffered);
+        try {
+            SWRLRuleEngine ruleEngine = SWRLAPIFactory.createSWRLRuleEngine(onto);
+            for (var rule : RULES.entrySet()) {
+                ruleEngine.createSWRLRule(rule.getKey(), rule.getValue());
+            }
+            ruleEngine.infer();
+            SWRLBuiltInLibraryImpl.flush(onto);
+
+            AspectStore aspectStore = AspectManagerProviders.getAspectStore(onto.getOWLOntologyManager());
+            Map<OWLAxiom, Set<OWLClass>> aspects = new HashMap<>();
+            for (OWLObjectPropertyAssertionAxiom ax : onto.getAxioms(AxiomType.OBJECT_PROPERTY_ASSERTION)) {
+                var asserted = aspectStore.getAssertedAspects(onto, ax);
+                if (!asserted.isEmpty()) {
+                    aspects.put(ax, Set.copyOf(asserted));
+                }
+            }
+            return new Result(Set.copyOf(onto.getAxioms()), aspects);
+        } finally {
+            SWRLBuiltInLibraryImpl.release(onto);
+        }
+    }
+
+    private OWLOntology generate(int seed) throws OWLOntologyCreationException {
+        Random random = new Random(seed);
+        OWLOntologyManager man = OWLManager.createOWLOntologyManager();
+        OWLOntology onto = man.createOntology(IRI.create("http://example.org/parallel/" + seed % IRIS));
+
+        FunctionalSyntaxDocumentFormat format = new FunctionalSyntaxDocumentFormat();
+        format.setDefaultPrefix(NS);
+        format.setPrefix(SWRLBuiltInLibraryImpl.PREFIX + ":", SWRLBuiltInLibraryImpl.NAMESPACE);
+        man.setOntologyFormat(onto, format);
+
+        Set<OWLAxiom> axioms = new HashSet<>();
+        OWLObjectProperty r = df.getOWLObjectProperty(IRI.create(NS + "r"));
+        OWLObjectProperty s = df.getOWLObjectProperty(IRI.create(NS + "s"));
+        OWLObjectProperty before = df.getOWLObjectProperty(IRI.create(NS + "before"));
+        for (OWLEntity entity : List.of(r, s, before)) {
+            axioms.add(df.getOWLDeclarationAxiom(entity));
+        }
+        for (String cls : List.of("Tagged", "Linked", "Created")) {
+            axioms.add(df.getOWLDeclarationAxiom(df.getOWLClass(IRI.create(NS + cls))));
+        }
+        OWLClass[] aspectClasses = new OWLClass[ASPECTS];
+        for (int i = 0; i < ASPECTS; i++) {
+            aspectClasses[i] = df.getOWLClass(IRI.create(NS + "A" + i));
+            axioms.add(df.getOWLDeclarationAxiom(aspectClasses[i]));
+        }
+
+        Map<OWLAxiom, OWLClass> aspects = new HashMap<>();
+        for (int i = 0; i < INDIVIDUALS; i++) {
+            axioms.add(df.getOWLDeclarationAxiom(individual(i)));
+            for (int j = 0; j < OPAS_PER_INDIVIDUAL; j++) {
+                var opa = df.getOWLObjectPropertyAssertionAxiom(r, individual(i), individual(random.nextInt(INDIVIDUALS)));
+                axioms.add(opa);
+                aspects.put(opa, aspectClasses[random.nextInt(ASPECTS)]);
+            }
+        }
+        for (int i = 0; i < INSTANTS; i++) {
+            OWLNamedIndividual instant = df.getOWLNamedIndividual(IRI.create(NS + "T" + i));
+            axioms.add(df.getOWLDeclarationAxiom(instant));
+            if (i > 0) {
+                axioms.add(df.getOWLObjectPropertyAssertionAxiom(before, df.getOWLNamedIndividual(IRI.create(NS + "T" + (i - 1))), instant));
+            }
+        }
+        man.addAxioms(onto, axioms);
+
+        AspectStore aspectStore = AspectManagerProviders.getAspectStore(man);
+        aspects.forEach((opa, aspect) -> aspectStore.addAspect(onto, opa, aspect));
+        return onto;
+    }
+
+    private OWLNamedIndividual individual(int i) {
+        return df.getOWLNamedIndividual(IRI.create(NS + "I" + i));
+    }
+
+    private static final class Result {
+
+        private final Set<OWLAxiom> axioms;
+
+        private final Map<OWLAxiom, Set<OWLClass>> aspects;
+
+        Result(Set<OWLAxiom> axioms, Map<OWLAxiom, Set<OWLClass>> aspects) {
+            this.axioms = axioms;
+            this.aspects = aspects;
+        }
+    }
+}
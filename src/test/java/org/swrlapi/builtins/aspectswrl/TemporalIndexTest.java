@@ -0,0 +1,210 @@
+package org.swrlapi.builtins.aspectswrl;
+
+import org.junit.jupiter.api.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the accessibility orders of {@link TemporalIndex}, in particular the incremental merging of chains.
+ *
+ * @author ralph
+ */
+class TemporalIndexTest {
+
+    private static final String NS = "http://example.org/temporal#";
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+
+    private OWLIndividual t(int i) {
+        return df.getOWLNamedIndividual(IRI.create(NS + "t" + i));
+    }
+
+    private List<OWLIndividual[]> chain(int from, int to) {
+        List<OWLIndividual[]> edges = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            edges.add(new OWLIndividual[] { t(i), t(i + 1) });
+        }
+        return edges;
+    }
+
+    private static void assertOrdered(TemporalIndex.Order order, OWLIndividual... chain) {
+        for (int i = 0; i < chain.length; i++) {
+            for (int j = 0; j < chain.length; j++) {
+                assertEquals(i < j, order.reaches(chain[i], chain[j]), chain[i] + " → " + chain[j]);
+            }
+        }
+    }
+
+    @Test
+    void buildsChainsAndRejectsBranchesAndCycles() {
+        var order = TemporalIndex.ChainOrder.build(chain(0, 3));
+        assertNotNull(order);
+        assertOrdered(order, t(0), t(1), t(2), t(3));
+        assertEquals(List.of(t(0), t(1)), new ArrayList<>(order.predecessors(t(2))));
+        assertEquals(List.of(t(3)), new ArrayList<>(order.successors(t(2))));
+
+        var branching = chain(0, 2);
+        branching.add(new OWLIndividual[] { t(0), t(5) });
+        assertNull(TemporalIndex.ChainOrder.build(branching));
+
+        var joining = chain(0, 2);
+        joining.add(new OWLIndividual[] { t(5), t(2) });
+        assertNull(TemporalIndex.ChainOrder.build(joining));
+
+        var cyclic = chain(0, 2);
+        cyclic.add(new OWLIndividual[] { t(2), t(0) });
+        assertNull(TemporalIndex.ChainOrder.build(cyclic));
+    }
+
+    @Test
+    void toleratesDuplicateEdges() {
+        var edges = chain(0, 2);
+        edges.add(new OWLIndividual[] { t(0), t(1) });
+        var order = TemporalIndex.ChainOrder.build(edges);
+        assertNotNull(order);
+        assertOrdered(order, t(0), t(1), t(2));
+    }
+
+    @Test
+    void appendsAndPrependsNewIndividuals() {
+        var order = TemporalIndex.ChainOrder.build(chain(1, 2));
+        assertTrue(order.addEdge(t(2), t(3)));
+        assertTrue(order.addEdge(t(0), t(1)));
+        assertOrdered(order, t(0), t(1), t(2), t(3));
+        assertEquals(List.of(t(0), t(1), t(2)), new ArrayList<>(order.predecessors(t(3))));
+    }
+
+    @Test
+    void startsNewChainForUnknownIndividuals() {
+        var order = TemporalIndex.ChainOrder.build(chain(0, 1));
+        assertTrue(order.addEdge(t(5), t(6)));
+        assertOrdered(order, t(5), t(6));
+        assertFalse(order.reaches(t(0), t(6)));
+        assertFalse(order.reaches(t(5), t(1)));
+    }
+
+    @Test
+    void joinsTwoChains() {
+        var edges = chain(0, 2);
+        edges.addAll(chain(3, 5));
+        var order = TemporalIndex.ChainOrder.build(edges);
+        assertFalse(order.reaches(t(0), t(5)));
+
+        assertTrue(order.addEdge(t(2), t(3)));
+        assertOrdered(order, t(0), t(1), t(2), t(3), t(4), t(5));
+        assertEquals(List.of(t(0), t(1), t(2), t(3), t(4)), new ArrayList<>(order.predecessors(t(5))));
+        assertEquals(List.of(t(3), t(4), t(5)), new ArrayList<>(order.successors(t(2))));
+
+        // the joined chain can be extended further at both ends
+        assertTrue(order.addEdge(t(5), t(6)));
+        assertTrue(order.addEdge(t(9), t(0)));
+        assertOrdered(order, t(9), t(0), t(1), t(2), t(3), t(4), t(5), t(6));
+    }
+
+    @Test
+    void acceptsImpliedEdges() {
+        var order = TemporalIndex.ChainOrder.build(chain(0, 3));
+        assertTrue(order.addEdge(t(0), t(2)));
+        assertTrue(order.addEdge(t(1), t(2)));
+        assertOrdered(order, t(0), t(1), t(2), t(3));
+    }
+
+    @Test
+    void rejectsEdgesThatAreNoChainExtension() {
+        var edges = chain(0, 2);
+        edges.addAll(chain(3, 5));
+        var order = TemporalIndex.ChainOrder.build(edges);
+
+        // cycles
+        assertFalse(order.addEdge(t(2), t(0)));
+        assertFalse(order.addEdge(t(1), t(1)));
+        // a is not the tail of its chain
+        assertFalse(order.addEdge(t(1), t(3)));
+        assertFalse(order.addEdge(t(1), t(7)));
+        // b is not the head of its chain
+        assertFalse(order.addEdge(t(2), t(4)));
+        assertFalse(order.addEdge(t(7), t(4)));
+    }
+
+    @Test
+    void closureOrderAddsEdgesTransitively() {
+        var edges = chain(0, 2);
+        edges.add(new OWLIndividual[] { t(0), t(5) });
+        var order = new TemporalIndex.ClosureOrder(edges);
+        assertTrue(order.reaches(t(0), t(2)));
+        assertTrue(order.reaches(t(0), t(5)));
+        assertFalse(order.reaches(t(1), t(5)));
+
+        assertTrue(order.addEdge(t(5), t(6)));
+        assertTrue(order.addEdge(t(2), t(5)));
+        assertTrue(order.reaches(t(1), t(6)));
+        assertTrue(order.reaches(t(0), t(6)));
+        assertEquals(Set.of(t(0), t(1), t(2), t(5)), Set.copyOf(order.predecessors(t(6))));
+    }
+
+    @Test
+    void followsOntologyChanges() throws OWLOntologyCreationException {
+        OWLOntologyManager man = OWLManager.createOWLOntologyManager();
+        OWLOntology onto = man.createOntology(IRI.create(NS));
+        OWLObjectProperty before = df.getOWLObjectProperty(IRI.create(NS + "before"));
+        OWLObjectProperty after = df.getOWLObjectProperty(IRI.create(NS + "after"));
+        man.addAxiom(onto, df.getOWLInverseObjectPropertiesAxiom(before, after));
+        for (OWLIndividual[] edge : chain(0, 2)) {
+            man.addAxiom(onto, df.getOWLObjectPropertyAssertionAxiom(before, edge[0], edge[1]));
+        }
+        var index = new TemporalIndex(onto);
+        try {
+            assertTrue(index.precedes(before, t(0), t(2)));
+            assertTrue(index.precedes(after, t(2), t(0)));
+
+            // merged into the existing orders, through the property and through its inverse
+            man.addAxiom(onto, df.getOWLObjectPropertyAssertionAxiom(after, t(3), t(2)));
+            assertTrue(index.precedes(before, t(0), t(3)));
+            assertTrue(index.precedes(after, t(3), t(1)));
+
+            // not a chain extension, recomputed
+            man.addAxiom(onto, df.getOWLObjectPropertyAssertionAxiom(before, t(1), t(7)));
+            assertTrue(index.precedes(before, t(0), t(7)));
+            assertFalse(index.precedes(before, t(2), t(7)));
+            assertEquals(Set.of(t(2)), index.getBetween(before, t(1), t(3)));
+
+            man.removeAxiom(onto, df.getOWLObjectPropertyAssertionAxiom(before, t(0), t(1)));
+            assertFalse(index.precedes(before, t(0), t(3)));
+            assertTrue(index.precedes(before, t(1), t(3)));
+        } finally {
+            index.dispose();
+        }
+    }
+
+    @Test
+    void keepsDefinitionsAssertedByRemainingAxioms() throws OWLOntologyCreationException {
+        OWLOntologyManager man = OWLManager.createOWLOntologyManager();
+        OWLOntology onto = man.createOntology(IRI.create(NS));
+        OWLObjectProperty before = df.getOWLObjectProperty(IRI.create(NS + "before"));
+        OWLClass aspect = df.getOWLClass(IRI.create(NS + "A"));
+        var definition = new TemporalIndex.TemporalDefinition(before, t(1), false);
+        var plain = df.getOWLEquivalentClassesAxiom(aspect, df.getOWLObjectHasValue(before, t(1)));
+        var annotated = plain.getAnnotatedAxiom(Set.of(df.getOWLAnnotation(df.getRDFSComment(), df.getOWLLiteral("duplicate"))));
+        man.addAxiom(onto, plain);
+        man.addAxiom(onto, annotated);
+        var index = new TemporalIndex(onto);
+        try {
+            assertEquals(Set.of(definition), index.getDefinitions(aspect));
+
+            // still asserted by the annotated axiom
+            man.removeAxiom(onto, plain);
+            assertEquals(Set.of(definition), index.getDefinitions(aspect));
+
+            man.removeAxiom(onto, annotated);
+            assertTrue(index.getDefinitions(aspect).isEmpty());
+        } finally {
+            index.dispose();
+        }
+    }
+}